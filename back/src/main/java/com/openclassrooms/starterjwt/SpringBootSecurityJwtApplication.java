@@ -2,10 +2,17 @@ package com.openclassrooms.starterjwt;
 
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.cache.annotation.EnableCaching;
+import org.springframework.core.Ordered;
 import org.springframework.data.jpa.repository.config.EnableJpaAuditing;
+import org.springframework.scheduling.annotation.EnableScheduling;
 
 @SpringBootApplication
 @EnableJpaAuditing
+// caching wraps the transaction so evictions happen after commit
+@EnableCaching(order = Ordered.HIGHEST_PRECEDENCE)
+// relays the outbox events
+@EnableScheduling
 public class SpringBootSecurityJwtApplication {
 	public static void main(String[] args) {
 		SpringApplication.run(SpringBootSecurityJwtApplication.class, args);
@@ -22,6 +22,7 @@ import com.openclassrooms.starterjwt.payload.response.MessageResponse;
 import com.openclassrooms.starterjwt.repository.UserRepository;
 import com.openclassrooms.starterjwt.security.jwt.JwtUtils;
 import com.openclassrooms.starterjwt.security.services.UserDetailsImpl;
+import com.openclassrooms.starterjwt.security.services.UserDetailsServiceImpl;
 
 @CrossOrigin(origins = "*", maxAge = 3600)
 @RestController
@@ -31,15 +32,18 @@ public class AuthController {
     private final JwtUtils jwtUtils;
     private final PasswordEncoder passwordEncoder;
     private final UserRepository userRepository;
+    private final UserDetailsServiceImpl userDetailsService;
 
     AuthController(AuthenticationManager authenticationManager,
             PasswordEncoder passwordEncoder,
             JwtUtils jwtUtils,
-            UserRepository userRepository) {
+            UserRepository userRepository,
+            UserDetailsServiceImpl userDetailsService) {
         this.authenticationManager = authenticationManager;
         this.jwtUtils = jwtUtils;
         this.passwordEncoder = passwordEncoder;
         this.userRepository = userRepository;
+        this.userDetailsService = userDetailsService;
     }
 
     @PostMapping("/login")
@@ -49,14 +53,16 @@ public class AuthController {
                 new UsernamePasswordAuthenticationToken(loginRequest.getEmail(), loginRequest.getPassword()));
 
         SecurityContextHolder.getContext().setAuthentication(authentication);
-        String jwt = jwtUtils.generateJwtToken(authentication);
         UserDetailsImpl userDetails = (UserDetailsImpl) authentication.getPrincipal();
 
         boolean isAdmin = false;
         User user = this.userRepository.findByEmail(userDetails.getUsername()).orElse(null);
         if (user != null) {
             isAdmin = user.isAdmin();
+            // the principal may come from the users cache, behind a revocation made on another node
+            userDetails = userDetails.withTokenVersion(user.getTokenVersion());
         }
+        String jwt = jwtUtils.generateJwtToken(userDetails);
 
         return ResponseEntity.ok(new JwtResponse(jwt,
                 userDetails.getId(),
@@ -82,6 +88,8 @@ public class AuthController {
                 false);
 
         userRepository.save(user);
+        // a login attempt before sign up cached the email as unknown
+        userDetailsService.evict(user.getEmail());
 
         return ResponseEntity.ok(new MessageResponse("User registered successfully!"));
     }
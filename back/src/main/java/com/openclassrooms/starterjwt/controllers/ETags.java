@@ -0,0 +1,70 @@
+package com.openclassrooms.starterjwt.controllers;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.Objects;
+import java.util.stream.Collectors;
+
+import org.springframework.util.DigestUtils;
+
+import com.openclassrooms.starterjwt.repository.projection.CollectionVersion;
+
+final class ETags {
+
+    private ETags() {
+    }
+
+    static String forResource(String type, Long id, LocalDateTime updatedAt) {
+        return "\"" + type + "-" + id + "-" + toMillis(updatedAt) + "\"";
+    }
+
+    /**
+     * @param query the parameters selecting what part of the collection is returned (cursor, size, range...):
+     *              each page or range gets its own tag
+     */
+    static String forCollection(String type, CollectionVersion version, Object... query) {
+        String tag = type + "-" + version.getCount() + "-" + toMillis(version.getLastUpdatedAt());
+        if (Arrays.stream(query).anyMatch(Objects::nonNull)) {
+            // digested: the parameters come from the client and may hold any character
+            String normalized = Arrays.stream(query).map(ETags::normalize).collect(Collectors.joining("&"));
+            tag += "-" + DigestUtils.md5DigestAsHex(normalized.getBytes(StandardCharsets.UTF_8));
+        }
+
+        return "\"" + tag + "\"";
+    }
+
+    /**
+     * If-None-Match uses the weak comparison: a W/ prefix sent by the client is ignored.
+     */
+    static boolean matches(String ifNoneMatch, String eTag) {
+        if (ifNoneMatch == null) {
+            return false;
+        }
+
+        for (String candidate : ifNoneMatch.split(",")) {
+            String tag = candidate.trim();
+            if (tag.startsWith("W/")) {
+                tag = tag.substring(2);
+            }
+            if (tag.equals("*") || tag.equals(eTag)) {
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    private static String normalize(Object parameter) {
+        if (parameter == null) {
+            return "";
+        }
+        return parameter instanceof Date ? String.valueOf(((Date) parameter).getTime()) : parameter.toString();
+    }
+
+    private static long toMillis(LocalDateTime dateTime) {
+        return dateTime == null ? 0 : dateTime.toInstant(ZoneOffset.UTC).toEpochMilli();
+    }
+}
@@ -1,16 +1,41 @@
 package com.openclassrooms.starterjwt.controllers;
 
 
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.openclassrooms.starterjwt.dto.EnrollmentResultDto;
 import com.openclassrooms.starterjwt.dto.SessionDto;
+import com.openclassrooms.starterjwt.dto.WaitlistPositionDto;
+import com.openclassrooms.starterjwt.idempotency.IdempotencyStore;
 import com.openclassrooms.starterjwt.mapper.SessionMapper;
+import com.openclassrooms.starterjwt.mapper.SessionSummaryMapper;
 import com.openclassrooms.starterjwt.models.Session;
+import com.openclassrooms.starterjwt.pagination.KeysetPage;
+import com.openclassrooms.starterjwt.repository.ParticipationKey;
+import com.openclassrooms.starterjwt.security.services.UserDetailsImpl;
+import com.openclassrooms.starterjwt.services.EnrollmentService;
+import com.openclassrooms.starterjwt.services.EnrollmentStatus;
+import com.openclassrooms.starterjwt.services.ParticipationCommand;
+import com.openclassrooms.starterjwt.services.ParticipationCommandQueue;
+import com.openclassrooms.starterjwt.services.ParticipationStatus;
 import com.openclassrooms.starterjwt.services.SessionService;
 import lombok.extern.log4j.Log4j2;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
+import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 import javax.validation.Valid;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.Date;
 import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
 
 @CrossOrigin(origins = "*", maxAge = 3600)
 @RestController
@@ -18,17 +43,33 @@ import java.util.List;
 @Log4j2
 public class SessionController {
     private final SessionMapper sessionMapper;
+    private final SessionSummaryMapper sessionSummaryMapper;
     private final SessionService sessionService;
+    private final EnrollmentService enrollmentService;
+    private final ParticipationCommandQueue participationCommandQueue;
+    private final IdempotencyStore idempotencyStore;
+    private final ObjectMapper objectMapper;
 
 
     public SessionController(SessionService sessionService,
-                             SessionMapper sessionMapper) {
+                             EnrollmentService enrollmentService,
+                             ParticipationCommandQueue participationCommandQueue,
+                             IdempotencyStore idempotencyStore,
+                             SessionMapper sessionMapper,
+                             SessionSummaryMapper sessionSummaryMapper,
+                             ObjectMapper objectMapper) {
         this.sessionMapper = sessionMapper;
+        this.sessionSummaryMapper = sessionSummaryMapper;
         this.sessionService = sessionService;
+        this.enrollmentService = enrollmentService;
+        this.participationCommandQueue = participationCommandQueue;
+        this.idempotencyStore = idempotencyStore;
+        this.objectMapper = objectMapper;
     }
 
     @GetMapping("/{id}")
-    public ResponseEntity<?> findById(@PathVariable("id") String id) {
+    public ResponseEntity<?> findById(@PathVariable("id") String id,
+                                      @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch) {
         try {
             Session session = this.sessionService.getById(Long.valueOf(id));
 
@@ -36,27 +77,104 @@ public class SessionController {
                 return ResponseEntity.notFound().build();
             }
 
-            return ResponseEntity.ok().body(this.sessionMapper.toDto(session));
+            String eTag = ETags.forResource("session", session.getId(), session.getUpdatedAt());
+            if (ETags.matches(ifNoneMatch, eTag)) {
+                return ResponseEntity.status(HttpStatus.NOT_MODIFIED).eTag(eTag).build();
+            }
+
+            return ResponseEntity.ok().eTag(eTag).body(this.sessionMapper.toDto(session));
         } catch (NumberFormatException e) {
             return ResponseEntity.badRequest().build();
         }
     }
 
     @GetMapping()
-    public ResponseEntity<?> findAll() {
-        List<Session> sessions = this.sessionService.findAll();
+    public ResponseEntity<?> findAll(@RequestParam(value = "cursor", required = false) String cursor,
+                                     @RequestParam(value = "size", required = false) Integer size,
+                                     @RequestParam(value = "from", required = false)
+                                     @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME, fallbackPatterns = {"yyyy-MM-dd'T'HH:mm:ssXXX", "yyyy-MM-dd"}) Date from,
+                                     @RequestParam(value = "to", required = false)
+                                     @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME, fallbackPatterns = {"yyyy-MM-dd'T'HH:mm:ssXXX", "yyyy-MM-dd"}) Date to,
+                                     @RequestParam(value = "upcoming", required = false) Boolean upcoming,
+                                     @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch) {
+        if (Boolean.TRUE.equals(upcoming)) {
+            if (from != null) {
+                return ResponseEntity.badRequest().build();
+            }
+            // relative to now: sessions leave the list as they start without any write, so no ETag
+            KeysetPage<Session> page = this.sessionService.findPage(cursor, size, new Date(), to);
+
+            return ResponseEntity.ok().body(new KeysetPage<>(this.sessionMapper.toDto(page.getItems()), page.getNextCursor()));
+        }
+
+        String eTag = ETags.forCollection("sessions", this.sessionService.getCollectionVersion(), cursor, size, from, to);
+        if (ETags.matches(ifNoneMatch, eTag)) {
+            return ResponseEntity.status(HttpStatus.NOT_MODIFIED).eTag(eTag).build();
+        }
+
+        if (cursor == null && size == null && from == null && to == null) {
+            List<Session> sessions = this.sessionService.findAll();
+
+            return ResponseEntity.ok().eTag(eTag).body(this.sessionMapper.toDto(sessions));
+        }
+
+        KeysetPage<Session> page = this.sessionService.findPage(cursor, size, from, to);
+
+        return ResponseEntity.ok().eTag(eTag).body(new KeysetPage<>(this.sessionMapper.toDto(page.getItems()), page.getNextCursor()));
+    }
+
+    @GetMapping("/search")
+    public ResponseEntity<?> search(@RequestParam("q") String query,
+                                    @RequestParam(value = "size", required = false) Integer size) {
+        List<Session> sessions = this.sessionService.search(query, size);
 
         return ResponseEntity.ok().body(this.sessionMapper.toDto(sessions));
     }
 
+    /**
+     * Writes every session as a JSON array while it is read from the database,
+     * without holding the whole collection in memory.
+     */
+    @GetMapping("/export")
+    public ResponseEntity<StreamingResponseBody> export() {
+        StreamingResponseBody body = outputStream -> {
+            try (JsonGenerator generator = this.objectMapper.getFactory().createGenerator(outputStream)) {
+                generator.writeStartArray();
+                this.sessionService.forEachChunk(sessions -> {
+                    try {
+                        for (Session session : sessions) {
+                            generator.writeObject(this.sessionMapper.toDto(session));
+                        }
+                        generator.flush();
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                });
+                generator.writeEndArray();
+            }
+        };
+
+        return ResponseEntity.ok().contentType(MediaType.APPLICATION_JSON).body(body);
+    }
+
+    @GetMapping("/summary")
+    public ResponseEntity<?> findAllSummaries() {
+        UserDetailsImpl userDetails = (UserDetailsImpl) SecurityContextHolder.getContext().getAuthentication().getPrincipal();
+
+        return ResponseEntity.ok().body(this.sessionSummaryMapper.toDto(this.sessionService.findAllSummaries(userDetails.getId())));
+    }
+
     @PostMapping()
-    public ResponseEntity<?> create(@Valid @RequestBody SessionDto sessionDto) {
+    public ResponseEntity<?> create(@Valid @RequestBody SessionDto sessionDto,
+                                    @RequestHeader(value = IdempotencyStore.HEADER, required = false) String idempotencyKey) {
         log.info(sessionDto);
 
-        Session session = this.sessionService.create(this.sessionMapper.toEntity(sessionDto));
+        return this.idempotencyStore.execute(idempotencyKey, List.of("create", sessionDto), () -> {
+            Session session = this.sessionService.create(this.sessionMapper.toEntity(sessionDto));
 
-        log.info(session);
-        return ResponseEntity.ok().body(this.sessionMapper.toDto(session));
+            log.info(session);
+            return ResponseEntity.ok().body(this.sessionMapper.toDto(session));
+        });
     }
 
     @PutMapping("{id}")
@@ -87,11 +205,48 @@ public class SessionController {
     }
 
     @PostMapping("{id}/participate/{userId}")
-    public ResponseEntity<?> participate(@PathVariable("id") String id, @PathVariable("userId") String userId) {
+    public ResponseEntity<?> participate(@PathVariable("id") String id, @PathVariable("userId") String userId,
+                                         @RequestHeader(value = IdempotencyStore.HEADER, required = false) String idempotencyKey) {
         try {
-            this.sessionService.participate(Long.parseLong(id), Long.parseLong(userId));
+            long sessionId = Long.parseLong(id);
+            long participantId = Long.parseLong(userId);
 
-            return ResponseEntity.ok().build();
+            return this.idempotencyStore.execute(idempotencyKey, List.of("participate", sessionId, participantId), () -> {
+                if (this.participationCommandQueue.isEnabled()) {
+                    // 202: written by the participation writer shortly
+                    this.participationCommandQueue.submit(ParticipationCommand.join(sessionId, participantId));
+                    return ResponseEntity.accepted().build();
+                }
+
+                ParticipationStatus status = this.sessionService.participate(sessionId, participantId);
+
+                // 202: the request is recorded, the seat comes later through the waitlist
+                return status == ParticipationStatus.WAITLISTED ? ResponseEntity.accepted().build() : ResponseEntity.ok().build();
+            });
+        } catch (NumberFormatException e) {
+            return ResponseEntity.badRequest().build();
+        }
+    }
+
+    /**
+     * Enrolls many users in the session, the body being the user ids. Answers a status per user id.
+     */
+    @PostMapping("{id}/participate")
+    public ResponseEntity<?> participateAll(@PathVariable("id") String id, @RequestBody List<Long> userIds) {
+        try {
+            return ResponseEntity.ok().body(toReport(this.enrollmentService.enrollUsers(Long.parseLong(id), userIds)));
+        } catch (NumberFormatException e) {
+            return ResponseEntity.badRequest().build();
+        }
+    }
+
+    /**
+     * Enrolls the user in many sessions, the body being the session ids. Answers a status per session id.
+     */
+    @PostMapping("participate/{userId}")
+    public ResponseEntity<?> participateInAll(@PathVariable("userId") String userId, @RequestBody List<Long> sessionIds) {
+        try {
+            return ResponseEntity.ok().body(toReport(this.enrollmentService.enrollInSessions(Long.parseLong(userId), sessionIds)));
         } catch (NumberFormatException e) {
             return ResponseEntity.badRequest().build();
         }
@@ -100,6 +255,11 @@ public class SessionController {
     @DeleteMapping("{id}/participate/{userId}")
     public ResponseEntity<?> noLongerParticipate(@PathVariable("id") String id, @PathVariable("userId") String userId) {
         try {
+            if (this.participationCommandQueue.isEnabled()) {
+                this.participationCommandQueue.submit(ParticipationCommand.leave(Long.parseLong(id), Long.parseLong(userId)));
+                return ResponseEntity.accepted().build();
+            }
+
             this.sessionService.noLongerParticipate(Long.parseLong(id), Long.parseLong(userId));
 
             return ResponseEntity.ok().build();
@@ -107,4 +267,21 @@ public class SessionController {
             return ResponseEntity.badRequest().build();
         }
     }
+
+    @GetMapping("{id}/waitlist/{userId}")
+    public ResponseEntity<?> findWaitlistPosition(@PathVariable("id") String id, @PathVariable("userId") String userId) {
+        try {
+            long position = this.sessionService.getWaitlistPosition(Long.parseLong(id), Long.parseLong(userId));
+
+            return ResponseEntity.ok().body(new WaitlistPositionDto(Long.parseLong(id), Long.parseLong(userId), position));
+        } catch (NumberFormatException e) {
+            return ResponseEntity.badRequest().build();
+        }
+    }
+
+    private static List<EnrollmentResultDto> toReport(Map<ParticipationKey, EnrollmentStatus> statuses) {
+        return statuses.entrySet().stream()
+                .map(status -> new EnrollmentResultDto(status.getKey().getSessionId(), status.getKey().getUserId(), status.getValue()))
+                .collect(Collectors.toList());
+    }
 }
@@ -1,7 +1,11 @@
 package com.openclassrooms.starterjwt.controllers;
 
+import com.openclassrooms.starterjwt.mapper.SessionSummaryMapper;
 import com.openclassrooms.starterjwt.mapper.UserMapper;
 import com.openclassrooms.starterjwt.models.User;
+import com.openclassrooms.starterjwt.pagination.KeysetPage;
+import com.openclassrooms.starterjwt.repository.projection.SessionSummaryView;
+import com.openclassrooms.starterjwt.services.SessionService;
 import com.openclassrooms.starterjwt.services.UserService;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
@@ -9,6 +13,7 @@ import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.web.bind.annotation.*;
 
+import java.util.Date;
 import java.util.Objects;
 
 @CrossOrigin(origins = "*", maxAge = 3600)
@@ -17,12 +22,18 @@ import java.util.Objects;
 public class UserController {
     private final UserMapper userMapper;
     private final UserService userService;
+    private final SessionService sessionService;
+    private final SessionSummaryMapper sessionSummaryMapper;
 
 
     public UserController(UserService userService,
-                             UserMapper userMapper) {
+                             UserMapper userMapper,
+                             SessionService sessionService,
+                             SessionSummaryMapper sessionSummaryMapper) {
         this.userMapper = userMapper;
         this.userService = userService;
+        this.sessionService = sessionService;
+        this.sessionSummaryMapper = sessionSummaryMapper;
     }
 
     @GetMapping("/{id}")
@@ -40,6 +51,24 @@ public class UserController {
         }
     }
 
+    /**
+     * Pages through the sessions the user participates in, by date. With upcoming=true, past sessions are left out.
+     */
+    @GetMapping("{id}/sessions")
+    public ResponseEntity<?> findSessions(@PathVariable("id") String id,
+                                          @RequestParam(value = "cursor", required = false) String cursor,
+                                          @RequestParam(value = "size", required = false) Integer size,
+                                          @RequestParam(value = "upcoming", required = false) Boolean upcoming) {
+        try {
+            Date from = Boolean.TRUE.equals(upcoming) ? new Date() : null;
+            KeysetPage<SessionSummaryView> page = this.sessionService.findBookedPage(Long.parseLong(id), cursor, size, from, null);
+
+            return ResponseEntity.ok().body(new KeysetPage<>(this.sessionSummaryMapper.toDto(page.getItems()), page.getNextCursor()));
+        } catch (NumberFormatException e) {
+            return ResponseEntity.badRequest().build();
+        }
+    }
+
     @DeleteMapping("{id}")
     public ResponseEntity<?> save(@PathVariable("id") String id) {
         try {
@@ -61,4 +90,29 @@ public class UserController {
             return ResponseEntity.badRequest().build();
         }
     }
+
+    /**
+     * Signs the user out everywhere: the tokens issued so far stop being accepted, a new login is needed.
+     */
+    @DeleteMapping("{id}/tokens")
+    public ResponseEntity<?> revokeTokens(@PathVariable("id") String id) {
+        try {
+            User user = this.userService.findById(Long.valueOf(id));
+
+            if (user == null) {
+                return ResponseEntity.notFound().build();
+            }
+
+            UserDetails userDetails = (UserDetails) SecurityContextHolder.getContext().getAuthentication().getPrincipal();
+
+            if(!Objects.equals(userDetails.getUsername(), user.getEmail())) {
+                return ResponseEntity.status(HttpStatus.UNAUTHORIZED).build();
+            }
+
+            this.userService.revokeTokens(user.getId());
+            return ResponseEntity.ok().build();
+        } catch (NumberFormatException e) {
+            return ResponseEntity.badRequest().build();
+        }
+    }
 }
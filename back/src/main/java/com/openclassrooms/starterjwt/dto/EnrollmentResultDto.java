@@ -0,0 +1,17 @@
+package com.openclassrooms.starterjwt.dto;
+
+import com.openclassrooms.starterjwt.services.EnrollmentStatus;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class EnrollmentResultDto {
+    private Long sessionId;
+
+    private Long userId;
+
+    private EnrollmentStatus status;
+}
@@ -0,0 +1,16 @@
+package com.openclassrooms.starterjwt.exception;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.ResponseStatus;
+
+@ResponseStatus(value= HttpStatus.UNPROCESSABLE_ENTITY)
+public class UnprocessableEntityException extends RuntimeException {
+
+    public UnprocessableEntityException() {
+        super();
+    }
+
+    public UnprocessableEntityException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,117 @@
+package com.openclassrooms.starterjwt.idempotency;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.openclassrooms.starterjwt.exception.BadRequestException;
+import com.openclassrooms.starterjwt.exception.ConflictException;
+import com.openclassrooms.starterjwt.exception.UnprocessableEntityException;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Supplier;
+
+/**
+ * In-memory results of the requests sent with an {@code Idempotency-Key} header, bounded in size and evicted
+ * after a TTL. Keys are scoped to the authenticated user.
+ * <p>
+ * The first request of a key registers a future before running: a replay gets the stored response without
+ * running the action again, a concurrent duplicate waits for the first one to finish. A request that ends with
+ * an exception is not stored and can be retried with the same key.
+ */
+@Component
+public class IdempotencyStore {
+    public static final String HEADER = "Idempotency-Key";
+
+    static final int MAX_KEY_LENGTH = 255;
+
+    private static final Duration MAX_WAIT = Duration.ofSeconds(30);
+
+    private final Cache<String, StoredRequest> requests;
+
+    public IdempotencyStore(@Value("${oc.app.idempotency.max-keys:10000}") long maxKeys,
+                            @Value("${oc.app.idempotency.ttl-minutes:1440}") long ttlMinutes) {
+        this.requests = Caffeine.newBuilder()
+                .maximumSize(maxKeys)
+                .expireAfterWrite(Duration.ofMinutes(ttlMinutes))
+                .build();
+    }
+
+    /**
+     * Runs the action once per key, or right away when there is no key.
+     *
+     * @param fingerprint what identifies the request besides its key (operation, path variables, body),
+     *                    compared with {@code equals} on replays
+     * @throws UnprocessableEntityException when the key was used for a different request
+     * @throws ConflictException            when the first request of the key is still running after the wait
+     */
+    public ResponseEntity<?> execute(String key, Object fingerprint, Supplier<ResponseEntity<?>> action) {
+        if (key == null) {
+            return action.get();
+        }
+        if (key.isBlank() || key.length() > MAX_KEY_LENGTH) {
+            throw new BadRequestException("Invalid " + HEADER);
+        }
+
+        String scopedKey = currentUser() + ":" + key;
+        StoredRequest created = new StoredRequest(fingerprint);
+        StoredRequest stored = this.requests.asMap().putIfAbsent(scopedKey, created);
+        if (stored != null) {
+            if (!stored.fingerprint.equals(fingerprint)) {
+                throw new UnprocessableEntityException(HEADER + " already used for a different request");
+            }
+            return await(stored);
+        }
+
+        try {
+            ResponseEntity<?> response = action.get();
+            created.response.complete(response);
+            return response;
+        } catch (RuntimeException | Error e) {
+            // an Error too: a future left pending would hold the key for the whole TTL
+            this.requests.asMap().remove(scopedKey, created);
+            created.response.completeExceptionally(e);
+            throw e;
+        }
+    }
+
+    private static ResponseEntity<?> await(StoredRequest stored) {
+        try {
+            return stored.response.get(MAX_WAIT.toMillis(), TimeUnit.MILLISECONDS);
+        } catch (ExecutionException e) {
+            // the duplicate fails as the first request did
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw new IllegalStateException("The first request with this " + HEADER + " failed", e.getCause());
+        } catch (TimeoutException e) {
+            throw new ConflictException("A request with this " + HEADER + " is still in progress");
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new ConflictException("A request with this " + HEADER + " is still in progress");
+        }
+    }
+
+    private static String currentUser() {
+        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+
+        return authentication == null ? "" : authentication.getName();
+    }
+
+    private static final class StoredRequest {
+        private final Object fingerprint;
+
+        private final CompletableFuture<ResponseEntity<?>> response = new CompletableFuture<>();
+
+        private StoredRequest(Object fingerprint) {
+            this.fingerprint = fingerprint;
+        }
+    }
+}
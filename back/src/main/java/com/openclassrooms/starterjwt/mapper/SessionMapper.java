@@ -5,6 +5,7 @@ import com.openclassrooms.starterjwt.models.Session;
 import com.openclassrooms.starterjwt.models.User;
 import com.openclassrooms.starterjwt.services.TeacherService;
 import com.openclassrooms.starterjwt.services.UserService;
+import org.mapstruct.Context;
 import org.mapstruct.Mapper;
 import org.mapstruct.Mapping;
 import org.mapstruct.Mappings;
@@ -13,6 +14,7 @@ import org.springframework.stereotype.Component;
 
 import java.util.Arrays;
 import java.util.Collections;
+import java.util.List;
 import java.util.Optional;
 import java.util.stream.Collectors;
 
@@ -25,18 +27,39 @@ public abstract class SessionMapper implements EntityMapper<SessionDto, Session>
     @Autowired
     UserService userService;
 
+    @Override
+    public Session toEntity(SessionDto sessionDto) {
+        if (sessionDto == null) {
+            return null;
+        }
+
+        return toEntity(sessionDto, SessionReferenceContext.load(List.of(sessionDto), this.teacherService, this.userService));
+    }
+
+    @Override
+    public List<Session> toEntity(List<SessionDto> dtoList) {
+        if (dtoList == null) {
+            return null;
+        }
+
+        SessionReferenceContext references = SessionReferenceContext.load(dtoList, this.teacherService, this.userService);
+
+        return dtoList.stream().map(sessionDto -> toEntity(sessionDto, references)).collect(Collectors.toList());
+    }
+
     @Mappings({
             @Mapping(source = "description", target = "description"),
-            @Mapping(target = "teacher", expression = "java(sessionDto.getTeacher_id() != null ? this.teacherService.findById(sessionDto.getTeacher_id()) : null)"),
-            @Mapping(target = "users", expression = "java(Optional.ofNullable(sessionDto.getUsers()).orElseGet(Collections::emptyList).stream().map(user_id -> { User user = this.userService.findById(user_id); if (user != null) { return user; } return null; }).collect(Collectors.toList()))"),
+            @Mapping(target = "teacher", expression = "java(references.teacher(sessionDto.getTeacher_id()))"),
+            @Mapping(target = "users", expression = "java(references.users(sessionDto.getUsers()))"),
+            @Mapping(target = "participantCount", ignore = true),
     })
-    public abstract Session toEntity(SessionDto sessionDto);
+    abstract Session toEntity(SessionDto sessionDto, @Context SessionReferenceContext references);
 
 
     @Mappings({
             @Mapping(source = "description", target = "description"),
             @Mapping(source = "session.teacher.id", target = "teacher_id"),
-            @Mapping(target = "users", expression = "java(Optional.ofNullable(session.getUsers()).orElseGet(Collections::emptyList).stream().map(u -> u.getId()).collect(Collectors.toList()))"),
+            @Mapping(target = "users", expression = "java(Optional.ofNullable(session.getUsers()).orElseGet(Collections::emptySet).stream().map(u -> u.getId()).collect(Collectors.toList()))"),
     })
     public abstract SessionDto toDto(Session session);
 }
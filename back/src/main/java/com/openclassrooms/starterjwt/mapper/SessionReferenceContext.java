@@ -0,0 +1,67 @@
+package com.openclassrooms.starterjwt.mapper;
+
+import com.openclassrooms.starterjwt.dto.SessionDto;
+import com.openclassrooms.starterjwt.models.Teacher;
+import com.openclassrooms.starterjwt.models.User;
+import com.openclassrooms.starterjwt.services.TeacherService;
+import com.openclassrooms.starterjwt.services.UserService;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.Set;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Teachers and users referenced by a batch of {@link SessionDto}s, loaded with one query per
+ * entity type and then served from memory while the batch is mapped.
+ */
+public class SessionReferenceContext {
+    private final Map<Long, Teacher> teachersById;
+    private final Map<Long, User> usersById;
+
+    private SessionReferenceContext(Map<Long, Teacher> teachersById, Map<Long, User> usersById) {
+        this.teachersById = teachersById;
+        this.usersById = usersById;
+    }
+
+    public static SessionReferenceContext load(Collection<SessionDto> sessionDtos, TeacherService teacherService, UserService userService) {
+        List<Long> teacherIds = sessionDtos.stream()
+                .filter(Objects::nonNull)
+                .map(SessionDto::getTeacher_id)
+                .filter(Objects::nonNull)
+                .distinct()
+                .collect(Collectors.toList());
+        List<Long> userIds = sessionDtos.stream()
+                .filter(Objects::nonNull)
+                .flatMap(sessionDto -> userIdsOf(sessionDto).stream())
+                .distinct()
+                .collect(Collectors.toList());
+
+        Map<Long, Teacher> teachersById = teacherIds.isEmpty() ? Collections.emptyMap()
+                : teacherService.findAllById(teacherIds).stream().collect(Collectors.toMap(Teacher::getId, Function.identity()));
+        Map<Long, User> usersById = userIds.isEmpty() ? Collections.emptyMap()
+                : userService.findAllById(userIds).stream().collect(Collectors.toMap(User::getId, Function.identity()));
+
+        return new SessionReferenceContext(teachersById, usersById);
+    }
+
+    public Teacher teacher(Long teacherId) {
+        return teacherId != null ? this.teachersById.get(teacherId) : null;
+    }
+
+    public Set<User> users(List<Long> userIds) {
+        return Optional.ofNullable(userIds).orElseGet(Collections::emptyList).stream()
+                .map(this.usersById::get)
+                .collect(Collectors.toCollection(LinkedHashSet::new));
+    }
+
+    private static List<Long> userIdsOf(SessionDto sessionDto) {
+        return Optional.ofNullable(sessionDto.getUsers()).orElseGet(Collections::emptyList);
+    }
+}
@@ -0,0 +1,23 @@
+package com.openclassrooms.starterjwt.mapper;
+
+import com.openclassrooms.starterjwt.dto.SessionSummaryDto;
+import com.openclassrooms.starterjwt.repository.projection.SessionSummaryView;
+import org.mapstruct.Mapper;
+import org.mapstruct.Mapping;
+import org.mapstruct.Mappings;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+
+@Component
+@Mapper(componentModel = "spring")
+public interface SessionSummaryMapper {
+
+    @Mappings({
+            @Mapping(source = "teacherId", target = "teacher_id"),
+            @Mapping(target = "currentUserParticipates", expression = "java(view.getParticipating() != null && view.getParticipating() > 0)"),
+    })
+    SessionSummaryDto toDto(SessionSummaryView view);
+
+    List<SessionSummaryDto> toDto(List<SessionSummaryView> views);
+}
@@ -0,0 +1,48 @@
+package com.openclassrooms.starterjwt.models;
+
+import com.openclassrooms.starterjwt.outbox.OutboxEventType;
+import lombok.*;
+import lombok.experimental.Accessors;
+import org.springframework.data.annotation.CreatedDate;
+import org.springframework.data.jpa.domain.support.AuditingEntityListener;
+
+import javax.persistence.*;
+import javax.validation.constraints.NotNull;
+import java.time.LocalDateTime;
+
+/**
+ * A session or participation change, written in the transaction of the change and relayed to the sinks in id order.
+ */
+@Entity
+@Table(name = "OUTBOX")
+@EntityListeners(AuditingEntityListener.class)
+@Data
+@Accessors(chain = true)
+@EqualsAndHashCode(of = {"id"})
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@ToString
+public class OutboxEvent {
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @NotNull
+    @Enumerated(EnumType.STRING)
+    private OutboxEventType type;
+
+    @NotNull
+    @Column(name = "session_id")
+    private Long sessionId;
+
+    @Column(name = "user_id")
+    private Long userId;
+
+    // JSON, null when the ids tell everything
+    private String payload;
+
+    @CreatedDate
+    @Column(name = "created_at", updatable = false)
+    private LocalDateTime createdAt;
+}
@@ -0,0 +1,23 @@
+package com.openclassrooms.starterjwt.models;
+
+import lombok.*;
+import lombok.experimental.Accessors;
+
+import javax.persistence.*;
+
+/**
+ * Id of the last outbox event a sink has received.
+ */
+@Entity
+@Table(name = "OUTBOX_OFFSETS")
+@Data
+@Accessors(chain = true)
+@NoArgsConstructor
+@AllArgsConstructor
+public class OutboxOffset {
+    @Id
+    private String sink;
+
+    @Column(name = "last_id")
+    private long lastId;
+}
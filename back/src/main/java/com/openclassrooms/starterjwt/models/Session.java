@@ -8,12 +8,13 @@ import org.springframework.data.annotation.CreatedDate;
 import org.springframework.data.jpa.domain.support.AuditingEntityListener;
 
 import javax.persistence.*;
+import javax.validation.constraints.Min;
 import javax.validation.constraints.NotBlank;
 import javax.validation.constraints.NotNull;
 import javax.validation.constraints.Size;
 import java.time.LocalDateTime;
 import java.util.Date;
-import java.util.List;
+import java.util.Set;
 
 @Entity
 @Table(name = "SESSIONS")
@@ -45,12 +46,21 @@ public class Session {
     @JoinColumn(name = "teacher_id", referencedColumnName = "id")
     private Teacher teacher;
 
-    @ManyToMany(fetch = FetchType.EAGER)
+    // null when the session has no participant limit
+    @Min(1)
+    private Integer capacity;
+
+    // maintained by SessionRepository's seat queries, only written by JPA on insert
+    @Column(name = "participant_count", updatable = false)
+    private int participantCount;
+
+    @ManyToMany(fetch = FetchType.LAZY)
+    @ToString.Exclude
     @JoinTable(
             name = "PARTICIPATE",
             joinColumns = @JoinColumn( name = "session_id" ),
             inverseJoinColumns = @JoinColumn( name = "user_id" ) )
-    private List<User> users;
+    private Set<User> users;
 
     @CreatedDate
     @Column(name = "created_at", updatable = false)
@@ -51,6 +51,10 @@ public class User {
   @NonNull
   private boolean admin;
 
+  // stamped in the issued tokens, raised to revoke them
+  @Column(name = "token_version")
+  private int tokenVersion;
+
   @CreatedDate
   @Column(name = "created_at", updatable = false)
   private LocalDateTime createdAt;
@@ -0,0 +1,60 @@
+package com.openclassrooms.starterjwt.outbox;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.openclassrooms.starterjwt.models.OutboxEvent;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+
+/**
+ * Appends the events as JSON lines to a local file, for development and local consumers.
+ */
+@Component
+@ConditionalOnProperty("oc.app.outbox.file.path")
+public class FileOutboxSink implements OutboxSink {
+    private final Path path;
+
+    private final ObjectMapper objectMapper;
+
+    public FileOutboxSink(@Value("${oc.app.outbox.file.path}") String path, ObjectMapper objectMapper) {
+        this.path = Paths.get(path);
+        this.objectMapper = objectMapper;
+    }
+
+    @Override
+    public String name() {
+        return "file";
+    }
+
+    @Override
+    public void publish(List<OutboxEvent> events) throws IOException {
+        if (this.path.getParent() != null) {
+            Files.createDirectories(this.path.getParent());
+        }
+
+        try (Writer writer = Files.newBufferedWriter(this.path, StandardCharsets.UTF_8, StandardOpenOption.CREATE, StandardOpenOption.APPEND)) {
+            for (OutboxEvent event : events) {
+                ObjectNode line = this.objectMapper.createObjectNode()
+                        .put("id", event.getId())
+                        .put("type", event.getType().name())
+                        .put("sessionId", event.getSessionId())
+                        .put("userId", event.getUserId());
+                line.set("createdAt", this.objectMapper.valueToTree(event.getCreatedAt()));
+                line.set("payload", event.getPayload() == null ? null : this.objectMapper.readTree(event.getPayload()));
+
+                writer.write(this.objectMapper.writeValueAsString(line));
+                writer.write('\n');
+            }
+        }
+    }
+}
@@ -0,0 +1,12 @@
+package com.openclassrooms.starterjwt.outbox;
+
+public enum OutboxEventType {
+    SESSION_CREATED,
+    SESSION_UPDATED,
+    SESSION_DELETED,
+    PARTICIPANT_JOINED,
+    PARTICIPANT_WAITLISTED,
+    PARTICIPANT_PROMOTED,
+    PARTICIPANT_LEFT,
+    WAITLIST_LEFT
+}
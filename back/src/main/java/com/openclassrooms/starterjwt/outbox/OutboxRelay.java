@@ -0,0 +1,118 @@
+package com.openclassrooms.starterjwt.outbox;
+
+import com.openclassrooms.starterjwt.models.OutboxEvent;
+import com.openclassrooms.starterjwt.models.OutboxOffset;
+import com.openclassrooms.starterjwt.repository.OutboxOffsetRepository;
+import com.openclassrooms.starterjwt.repository.OutboxRepository;
+import lombok.extern.log4j.Log4j2;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Publishes the outbox events to every {@link OutboxSink} by batches, in id order. A batch is read in a first
+ * transaction, published outside of any transaction, and the sink's offset moved in a second, short one: no
+ * lock or connection is held while the sink does I/O. Delivery is at least once, a batch being published again
+ * when the application stops before moving the offset, or when several instances relay the same batch.
+ */
+@Component
+@Log4j2
+public class OutboxRelay {
+    private final List<OutboxSink> sinks;
+
+    private final OutboxRepository outboxRepository;
+
+    private final OutboxOffsetRepository outboxOffsetRepository;
+
+    private final TransactionTemplate transactionTemplate;
+
+    private final int batchSize;
+
+    private final Duration gapTimeout;
+
+    public OutboxRelay(List<OutboxSink> sinks,
+                       OutboxRepository outboxRepository,
+                       OutboxOffsetRepository outboxOffsetRepository,
+                       TransactionTemplate transactionTemplate,
+                       @Value("${oc.app.outbox.batch-size:500}") int batchSize,
+                       @Value("${oc.app.outbox.gap-timeout-ms:10000}") long gapTimeoutMs) {
+        this.sinks = sinks;
+        this.outboxRepository = outboxRepository;
+        this.outboxOffsetRepository = outboxOffsetRepository;
+        this.transactionTemplate = transactionTemplate;
+        this.batchSize = batchSize;
+        this.gapTimeout = Duration.ofMillis(gapTimeoutMs);
+    }
+
+    @Scheduled(fixedDelayString = "${oc.app.outbox.relay-interval-ms:1000}")
+    public void relayAll() {
+        for (OutboxSink sink : this.sinks) {
+            try {
+                while (relay(sink) == this.batchSize) {
+                    // a full batch: more events may be waiting
+                }
+            } catch (RuntimeException e) {
+                log.warn("Could not relay outbox events to {}", sink.name(), e);
+            }
+        }
+    }
+
+    /**
+     * Publishes the next batch of events to the sink.
+     *
+     * @return the number of events published
+     */
+    public int relay(OutboxSink sink) {
+        List<OutboxEvent> events = this.transactionTemplate.execute(status -> {
+            OutboxOffset offset = this.outboxOffsetRepository.findById(sink.name())
+                    .orElseGet(() -> this.outboxOffsetRepository.saveAndFlush(new OutboxOffset(sink.name(), 0L)));
+
+            return committedPrefix(offset.getLastId(),
+                    this.outboxRepository.findByIdGreaterThanOrderByIdAsc(offset.getLastId(), PageRequest.of(0, this.batchSize)));
+        });
+        if (events == null || events.isEmpty()) {
+            return 0;
+        }
+
+        try {
+            sink.publish(events);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+
+        long lastId = events.get(events.size() - 1).getId();
+        this.transactionTemplate.executeWithoutResult(status -> this.outboxOffsetRepository.findForUpdate(sink.name())
+                .filter(offset -> offset.getLastId() < lastId)
+                .ifPresent(offset -> offset.setLastId(lastId)));
+
+        return events.size();
+    }
+
+    // Ids are taken at insert time but become visible at commit: a missing id may belong to a transaction still
+    // running, whose event would be skipped for good once the offset moves past it. Stop before such a gap,
+    // unless the event after it is older than the gap timeout, the missing id then being a rollback.
+    private List<OutboxEvent> committedPrefix(long lastId, List<OutboxEvent> events) {
+        LocalDateTime gapDeadline = LocalDateTime.now().minus(this.gapTimeout);
+        List<OutboxEvent> prefix = new ArrayList<>(events.size());
+
+        long expectedId = lastId + 1;
+        for (OutboxEvent event : events) {
+            if (event.getId() != expectedId && event.getCreatedAt().isAfter(gapDeadline)) {
+                break;
+            }
+            prefix.add(event);
+            expectedId = event.getId() + 1;
+        }
+
+        return prefix;
+    }
+}
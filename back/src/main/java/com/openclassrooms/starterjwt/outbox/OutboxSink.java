@@ -0,0 +1,23 @@
+package com.openclassrooms.starterjwt.outbox;
+
+import com.openclassrooms.starterjwt.models.OutboxEvent;
+
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * A destination of the outbox events. Each sink is relayed from its own offset.
+ * Delivery is at least once: a sink must accept events it has already received, identified by their id.
+ */
+public interface OutboxSink {
+
+    /**
+     * Key of the sink's offset, must stay the same across restarts.
+     */
+    String name();
+
+    /**
+     * Publishes the events in order. A failure leaves the offset unchanged: the events come again on the next run.
+     */
+    void publish(List<OutboxEvent> events) throws IOException;
+}
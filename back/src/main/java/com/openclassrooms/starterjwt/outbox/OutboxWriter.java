@@ -0,0 +1,83 @@
+package com.openclassrooms.starterjwt.outbox;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.openclassrooms.starterjwt.models.OutboxEvent;
+import com.openclassrooms.starterjwt.models.Session;
+import com.openclassrooms.starterjwt.repository.OutboxRepository;
+import com.openclassrooms.starterjwt.repository.ParticipationKey;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Appends outbox events. Runs only inside the transaction of the change it records,
+ * so an event exists if and only if the change was committed.
+ */
+@Component
+@Transactional(propagation = Propagation.MANDATORY)
+public class OutboxWriter {
+    private final OutboxRepository outboxRepository;
+
+    private final JdbcTemplate jdbcTemplate;
+
+    private final ObjectMapper objectMapper;
+
+    public OutboxWriter(OutboxRepository outboxRepository, JdbcTemplate jdbcTemplate, ObjectMapper objectMapper) {
+        this.outboxRepository = outboxRepository;
+        this.jdbcTemplate = jdbcTemplate;
+        this.objectMapper = objectMapper;
+    }
+
+    /**
+     * Records the session as it is now, so consumers do not have to read it back.
+     */
+    public void appendSession(OutboxEventType type, Session session) {
+        Map<String, Object> snapshot = new LinkedHashMap<>();
+        snapshot.put("id", session.getId());
+        snapshot.put("name", session.getName());
+        snapshot.put("date", session.getDate());
+        snapshot.put("description", session.getDescription());
+        snapshot.put("teacherId", session.getTeacher() == null ? null : session.getTeacher().getId());
+        snapshot.put("capacity", session.getCapacity());
+
+        try {
+            this.outboxRepository.save(event(type, session.getId(), null).setPayload(this.objectMapper.writeValueAsString(snapshot)));
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    public void append(OutboxEventType type, Long sessionId, Long userId) {
+        this.outboxRepository.save(event(type, sessionId, userId));
+    }
+
+    /**
+     * Appends one event per key with a single JDBC batch, for the bulk enrollments.
+     */
+    public void appendAll(OutboxEventType type, List<ParticipationKey> keys) {
+        if (keys.isEmpty()) {
+            return;
+        }
+
+        Timestamp now = Timestamp.valueOf(LocalDateTime.now());
+        this.jdbcTemplate.batchUpdate("INSERT INTO OUTBOX (type, session_id, user_id, created_at) VALUES (?, ?, ?, ?)",
+                keys, keys.size(), (ps, key) -> {
+                    ps.setString(1, type.name());
+                    ps.setLong(2, key.getSessionId());
+                    ps.setLong(3, key.getUserId());
+                    ps.setTimestamp(4, now);
+                });
+    }
+
+    private static OutboxEvent event(OutboxEventType type, Long sessionId, Long userId) {
+        return OutboxEvent.builder().type(type).sessionId(sessionId).userId(userId).build();
+    }
+}
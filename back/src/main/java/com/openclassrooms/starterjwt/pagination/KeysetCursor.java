@@ -0,0 +1,47 @@
+package com.openclassrooms.starterjwt.pagination;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.Date;
+
+import com.openclassrooms.starterjwt.exception.BadRequestException;
+
+import lombok.AllArgsConstructor;
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
+import lombok.ToString;
+
+/**
+ * Position of the last row of a page in a listing ordered by {@code date, id}.
+ * Clients only see it as an opaque token.
+ */
+@Getter
+@AllArgsConstructor
+@EqualsAndHashCode
+@ToString
+public class KeysetCursor {
+    private static final String SEPARATOR = ":";
+
+    private final Date date;
+
+    private final Long id;
+
+    public String encode() {
+        String raw = this.date.getTime() + SEPARATOR + this.id;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+
+    public static KeysetCursor decode(String token) {
+        try {
+            String raw = new String(Base64.getUrlDecoder().decode(token), StandardCharsets.UTF_8);
+            String[] parts = raw.split(SEPARATOR);
+            if (parts.length != 2) {
+                throw new BadRequestException();
+            }
+
+            return new KeysetCursor(new Date(Long.parseLong(parts[0])), Long.valueOf(parts[1]));
+        } catch (IllegalArgumentException e) {
+            throw new BadRequestException();
+        }
+    }
+}
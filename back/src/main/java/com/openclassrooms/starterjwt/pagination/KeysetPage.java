@@ -0,0 +1,31 @@
+package com.openclassrooms.starterjwt.pagination;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Function;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class KeysetPage<T> {
+    private List<T> items;
+
+    private String nextCursor;
+
+    /**
+     * Builds a page from a query that fetched one row more than {@code size}:
+     * the extra row only tells that a next page exists and is not returned.
+     */
+    public static <T> KeysetPage<T> of(List<T> rows, int size, Function<T, KeysetCursor> cursorOf) {
+        if (rows.size() <= size) {
+            return new KeysetPage<>(rows, null);
+        }
+
+        List<T> items = new ArrayList<>(rows.subList(0, size));
+        return new KeysetPage<>(items, cursorOf.apply(items.get(size - 1)).encode());
+    }
+}
@@ -0,0 +1,163 @@
+package com.openclassrooms.starterjwt.repository;
+
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Set-based reads and JDBC batch writes of the PARTICIPATE and WAITLIST rows, for bulk enrollment.
+ * Every method issues one statement or one batch whatever the number of keys.
+ */
+@Repository
+public class ParticipationBatchRepository {
+    private final JdbcTemplate jdbcTemplate;
+
+    public ParticipationBatchRepository(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    /**
+     * Locks the rows of the given sessions, in primary key order, until the end of the transaction.
+     *
+     * @return the free seats of every existing session, {@link Integer#MAX_VALUE} when the session has no capacity
+     */
+    public Map<Long, Integer> lockSessions(Collection<Long> sessionIds) {
+        Map<Long, Integer> freeSeats = new HashMap<>();
+        this.jdbcTemplate.query("SELECT id, capacity, participant_count FROM SESSIONS WHERE id IN (" + placeholders(sessionIds.size(), "?")
+                        + ") ORDER BY id FOR UPDATE",
+                rs -> {
+                    int capacity = rs.getInt("capacity");
+                    int seats = rs.wasNull() ? Integer.MAX_VALUE : Math.max(0, capacity - rs.getInt("participant_count"));
+                    freeSeats.put(rs.getLong("id"), seats);
+                },
+                sessionIds.toArray());
+
+        return freeSeats;
+    }
+
+    public Set<ParticipationKey> findParticipations(Collection<ParticipationKey> keys) {
+        return findExisting("PARTICIPATE", keys);
+    }
+
+    public Set<ParticipationKey> findWaitlisted(Collection<ParticipationKey> keys) {
+        return findExisting("WAITLIST", keys);
+    }
+
+    public void insertParticipations(List<ParticipationKey> keys) {
+        insert("PARTICIPATE", keys);
+    }
+
+    /**
+     * Queues the users at the end of the waitlists, in list order.
+     */
+    public void enqueue(List<ParticipationKey> keys) {
+        insert("WAITLIST", keys);
+    }
+
+    /**
+     * Users participating in or waiting for the session, read with one query.
+     *
+     * @return empty when the session does not exist
+     */
+    public Optional<Set<Long>> findMembers(Long sessionId) {
+        Set<Long> members = new HashSet<>();
+        boolean exists = Boolean.TRUE.equals(this.jdbcTemplate.query("SELECT s.id, m.user_id FROM SESSIONS s LEFT JOIN "
+                        + "(SELECT session_id, user_id FROM PARTICIPATE UNION ALL SELECT session_id, user_id FROM WAITLIST) m "
+                        + "ON m.session_id = s.id WHERE s.id = ?",
+                rs -> {
+                    boolean found = false;
+                    while (rs.next()) {
+                        found = true;
+                        long userId = rs.getLong("user_id");
+                        if (!rs.wasNull()) {
+                            members.add(userId);
+                        }
+                    }
+                    return found;
+                },
+                sessionId));
+
+        return exists ? Optional.of(members) : Optional.empty();
+    }
+
+    /**
+     * The first users of the session's waitlist who do not participate yet, in queue order.
+     */
+    public List<Long> findWaitlistHeads(Long sessionId, int limit) {
+        return this.jdbcTemplate.queryForList("SELECT w.user_id FROM WAITLIST w WHERE w.session_id = ? "
+                        + "AND NOT EXISTS (SELECT 1 FROM PARTICIPATE p WHERE p.session_id = w.session_id AND p.user_id = w.user_id) "
+                        + "ORDER BY w.id LIMIT ?",
+                Long.class, sessionId, limit);
+    }
+
+    public void deleteParticipations(List<ParticipationKey> keys) {
+        delete("PARTICIPATE", keys);
+    }
+
+    public void dequeue(List<ParticipationKey> keys) {
+        delete("WAITLIST", keys);
+    }
+
+    /**
+     * Adds the given number of seats, negative when seats are released, to participant_count
+     * and bumps updated_at of every given session.
+     */
+    public void addParticipants(Map<Long, Integer> addedBySessionId, LocalDateTime updatedAt) {
+        Timestamp timestamp = Timestamp.valueOf(updatedAt);
+        this.jdbcTemplate.batchUpdate("UPDATE SESSIONS SET participant_count = participant_count + ?, updated_at = ? WHERE id = ?",
+                addedBySessionId.entrySet().stream()
+                        .map(added -> new Object[]{added.getValue(), timestamp, added.getKey()})
+                        .collect(Collectors.toList()));
+    }
+
+    private Set<ParticipationKey> findExisting(String table, Collection<ParticipationKey> keys) {
+        Set<ParticipationKey> existing = new HashSet<>();
+        if (keys.isEmpty()) {
+            return existing;
+        }
+
+        // row constructor IN: a range read on the (session_id, user_id) key
+        this.jdbcTemplate.query("SELECT session_id, user_id FROM " + table + " WHERE (session_id, user_id) IN ("
+                        + placeholders(keys.size(), "(?, ?)") + ")",
+                rs -> {
+                    existing.add(new ParticipationKey(rs.getLong("session_id"), rs.getLong("user_id")));
+                },
+                keys.stream().flatMap(key -> Stream.of(key.getSessionId(), key.getUserId())).toArray());
+
+        return existing;
+    }
+
+    private void insert(String table, List<ParticipationKey> keys) {
+        if (keys.isEmpty()) {
+            return;
+        }
+
+        this.jdbcTemplate.batchUpdate("INSERT INTO " + table + " (session_id, user_id) VALUES (?, ?)",
+                keys.stream().map(key -> new Object[]{key.getSessionId(), key.getUserId()}).collect(Collectors.toList()));
+    }
+
+    private void delete(String table, List<ParticipationKey> keys) {
+        if (keys.isEmpty()) {
+            return;
+        }
+
+        this.jdbcTemplate.batchUpdate("DELETE FROM " + table + " WHERE session_id = ? AND user_id = ?",
+                keys.stream().map(key -> new Object[]{key.getSessionId(), key.getUserId()}).collect(Collectors.toList()));
+    }
+
+    private static String placeholders(int count, String placeholder) {
+        return String.join(", ", Collections.nCopies(count, placeholder));
+    }
+}
@@ -0,0 +1,13 @@
+package com.openclassrooms.starterjwt.repository;
+
+import lombok.Value;
+
+/**
+ * Primary key of a PARTICIPATE row, also identifies a WAITLIST entry.
+ */
+@Value
+public class ParticipationKey {
+    Long sessionId;
+
+    Long userId;
+}
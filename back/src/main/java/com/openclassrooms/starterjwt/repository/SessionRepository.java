@@ -1,9 +1,133 @@
 package com.openclassrooms.starterjwt.repository;
 
 import com.openclassrooms.starterjwt.models.Session;
+import com.openclassrooms.starterjwt.repository.projection.CollectionVersion;
+import com.openclassrooms.starterjwt.repository.projection.SessionSummaryView;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import javax.persistence.QueryHint;
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.Date;
+import java.util.List;
+import java.util.Optional;
+import java.util.stream.Stream;
+
+import static org.hibernate.jpa.QueryHints.HINT_FETCH_SIZE;
+import static org.hibernate.jpa.QueryHints.HINT_READONLY;
+
 @Repository
 public interface SessionRepository  extends JpaRepository<Session, Long> {
+    String BOOKED_SUMMARIES = "SELECT s.id AS id, s.name AS name, s.date AS date, s.description AS description, s.teacher_id AS teacherId, "
+            + "s.participant_count AS participantCount, 1 AS participating "
+            + "FROM PARTICIPATE p JOIN SESSIONS s ON s.id = p.session_id "
+            + "WHERE p.user_id = :userId AND s.date >= :from AND s.date < :to ";
+
+    @Query("select distinct s from Session s left join fetch s.teacher left join fetch s.users order by s.date asc, s.id asc")
+    List<Session> findAllWithParticipants();
+
+    @Query("select s from Session s left join fetch s.teacher left join fetch s.users where s.id = :id")
+    Optional<Session> findWithParticipantsById(@Param("id") Long id);
+
+    @Query("select distinct s from Session s left join fetch s.teacher left join fetch s.users where s.id in :ids")
+    List<Session> findAllWithParticipantsByIdIn(@Param("ids") Collection<Long> ids);
+
+    /**
+     * Streams every session with its teacher, reading rows from the driver by batches of 500.
+     * Must be consumed inside a transaction and closed afterwards.
+     */
+    @QueryHints({@QueryHint(name = HINT_FETCH_SIZE, value = "500"), @QueryHint(name = HINT_READONLY, value = "true")})
+    @Query("select s from Session s left join fetch s.teacher order by s.date asc, s.id asc")
+    Stream<Session> streamAll();
+
+    /**
+     * Initializes the participants of sessions already loaded in the current persistence context.
+     */
+    @Query("select distinct s from Session s left join fetch s.users where s.id in :ids")
+    List<Session> fetchParticipants(@Param("ids") Collection<Long> ids);
+
+    /**
+     * First keyset page of the sessions dated in [from, to), served by the (date, id) index.
+     */
+    @Query("select s from Session s left join fetch s.teacher where s.date >= :from and s.date < :to order by s.date asc, s.id asc")
+    List<Session> findFirstPage(@Param("from") Date from, @Param("to") Date to, Pageable pageable);
+
+    @Query("select s from Session s left join fetch s.teacher where s.date >= :from and s.date < :to "
+            + "and (s.date > :date or (s.date = :date and s.id > :id)) order by s.date asc, s.id asc")
+    List<Session> findPageAfter(@Param("from") Date from, @Param("to") Date to,
+                                @Param("date") Date date, @Param("id") Long id, Pageable pageable);
+
+    @Query(value = "SELECT s.id AS id, s.name AS name, s.date AS date, s.description AS description, s.teacher_id AS teacherId, "
+            + "(SELECT COUNT(*) FROM PARTICIPATE p WHERE p.session_id = s.id) AS participantCount, "
+            + "CASE WHEN EXISTS (SELECT 1 FROM PARTICIPATE p WHERE p.session_id = s.id AND p.user_id = :userId) THEN 1 ELSE 0 END AS participating "
+            + "FROM SESSIONS s ORDER BY s.date, s.id", nativeQuery = true)
+    List<SessionSummaryView> findAllSummaries(@Param("userId") Long userId);
+
+    /**
+     * First keyset page of the sessions the user participates in, dated in [from, to).
+     * Driven by the (user_id, session_id) index of PARTICIPATE: the rows read grow with the user's bookings only.
+     */
+    @Query(value = BOOKED_SUMMARIES + "ORDER BY s.date, s.id", nativeQuery = true)
+    List<SessionSummaryView> findBookedFirstPage(@Param("userId") Long userId, @Param("from") Date from, @Param("to") Date to,
+                                                 Pageable pageable);
+
+    @Query(value = BOOKED_SUMMARIES + "AND (s.date > :date OR (s.date = :date AND s.id > :id)) ORDER BY s.date, s.id", nativeQuery = true)
+    List<SessionSummaryView> findBookedPageAfter(@Param("userId") Long userId, @Param("from") Date from, @Param("to") Date to,
+                                                 @Param("date") Date date, @Param("id") Long id, Pageable pageable);
+
+    @Query("select count(s) as count, max(s.updatedAt) as lastUpdatedAt from Session s")
+    CollectionVersion findCollectionVersion();
+
+    /**
+     * Adds one PARTICIPATE row, unless the user already participates.
+     *
+     * @return the number of rows inserted, 0 when the user already participates
+     */
+    @Modifying
+    @Query(value = "INSERT INTO PARTICIPATE (session_id, user_id) SELECT :sessionId, :userId FROM DUAL "
+            + "WHERE NOT EXISTS (SELECT 1 FROM PARTICIPATE p WHERE p.session_id = :sessionId AND p.user_id = :userId)", nativeQuery = true)
+    int addParticipant(@Param("sessionId") Long sessionId, @Param("userId") Long userId);
+
+    /**
+     * @return the number of rows deleted, 0 when the user does not participate
+     */
+    @Modifying
+    @Query(value = "DELETE FROM PARTICIPATE WHERE session_id = :sessionId AND user_id = :userId", nativeQuery = true)
+    int removeParticipant(@Param("sessionId") Long sessionId, @Param("userId") Long userId);
+
+    /**
+     * Bumps updated_at. The row lock it takes until commit orders the participation changes of the session.
+     *
+     * @return 1, or 0 when the session does not exist
+     */
+    @Modifying
+    @Query("update Session s set s.updatedAt = :updatedAt where s.id = :id")
+    int touch(@Param("id") Long id, @Param("updatedAt") LocalDateTime updatedAt);
+
+    /**
+     * Takes a seat in the session and bumps its updated_at, unless the session is full. The check and
+     * the increment are one conditional UPDATE, so concurrent joins cannot both take the last seat.
+     *
+     * @return 1 when a seat was taken, 0 when the session is full
+     */
+    @Modifying
+    @Query(value = "UPDATE SESSIONS SET participant_count = participant_count + 1, updated_at = :updatedAt "
+            + "WHERE id = :id AND (capacity IS NULL OR participant_count < capacity)", nativeQuery = true)
+    int reserveSeat(@Param("id") Long id, @Param("updatedAt") LocalDateTime updatedAt);
+
+    @Modifying
+    @Query(value = "UPDATE SESSIONS SET participant_count = participant_count - 1, updated_at = :updatedAt "
+            + "WHERE id = :id AND participant_count > 0", nativeQuery = true)
+    int releaseSeat(@Param("id") Long id, @Param("updatedAt") LocalDateTime updatedAt);
+
+    @Modifying(flushAutomatically = true)
+    @Query(value = "UPDATE SESSIONS SET participant_count = (SELECT COUNT(*) FROM PARTICIPATE p WHERE p.session_id = :id) "
+            + "WHERE id = :id", nativeQuery = true)
+    int recountParticipants(@Param("id") Long id);
 }
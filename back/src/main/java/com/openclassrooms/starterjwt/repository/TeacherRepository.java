@@ -1,9 +1,14 @@
 package com.openclassrooms.starterjwt.repository;
 
 import com.openclassrooms.starterjwt.models.Teacher;
+import com.openclassrooms.starterjwt.repository.projection.CollectionVersion;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
 import org.springframework.stereotype.Repository;
 
 @Repository
 public interface TeacherRepository  extends JpaRepository<Teacher, Long> {
+
+    @Query("select count(t) as count, max(t.updatedAt) as lastUpdatedAt from Teacher t")
+    CollectionVersion findCollectionVersion();
 }
@@ -1,9 +1,15 @@
 package com.openclassrooms.starterjwt.repository;
 
+import java.util.Collection;
 import java.util.Optional;
+import java.util.Set;
 
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 
 import com.openclassrooms.starterjwt.models.User;
 
@@ -12,4 +18,26 @@ public interface UserRepository extends JpaRepository<User, Long> {
   Optional<User> findByEmail(String email);
 
   Boolean existsByEmail(String email); 
+
+  @Query("select u.email from User u where u.id = :id")
+  Optional<String> findEmailById(@Param("id") Long id);
+
+  @Query("select u.tokenVersion from User u where u.id = :id")
+  Optional<Integer> findTokenVersionById(@Param("id") Long id);
+
+  /**
+   * Revokes the tokens issued to the user so far, committed on return.
+   *
+   * @return 1, or 0 when the user does not exist
+   */
+  @Transactional
+  @Modifying
+  @Query("update User u set u.tokenVersion = u.tokenVersion + 1 where u.id = :id")
+  int incrementTokenVersion(@Param("id") Long id);
+
+  /**
+   * Validates many ids with one index-only query.
+   */
+  @Query("select u.id from User u where u.id in :ids")
+  Set<Long> findIdsByIdIn(@Param("ids") Collection<Long> ids);
 }
@@ -0,0 +1,44 @@
+package com.openclassrooms.starterjwt.repository;
+
+import com.openclassrooms.starterjwt.models.WaitlistEntry;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.util.Optional;
+
+@Repository
+public interface WaitlistRepository extends JpaRepository<WaitlistEntry, Long> {
+
+    /**
+     * Queues the user at the end of the session's waitlist, unless the user already participates or waits.
+     *
+     * @return the number of rows inserted, 0 when the user already participates or waits
+     */
+    @Modifying
+    @Query(value = "INSERT INTO WAITLIST (session_id, user_id) SELECT :sessionId, :userId FROM DUAL "
+            + "WHERE NOT EXISTS (SELECT 1 FROM PARTICIPATE p WHERE p.session_id = :sessionId AND p.user_id = :userId) "
+            + "AND NOT EXISTS (SELECT 1 FROM WAITLIST w WHERE w.session_id = :sessionId AND w.user_id = :userId)", nativeQuery = true)
+    int enqueue(@Param("sessionId") Long sessionId, @Param("userId") Long userId);
+
+    /**
+     * The next user to promote: one row read from the (session_id, id) index whatever the queue length.
+     */
+    Optional<WaitlistEntry> findFirstBySessionIdOrderByIdAsc(Long sessionId);
+
+    /**
+     * @return the number of rows deleted, 0 when the user is not waiting for the session
+     */
+    @Modifying
+    @Query("delete from WaitlistEntry w where w.sessionId = :sessionId and w.userId = :userId")
+    int dequeue(@Param("sessionId") Long sessionId, @Param("userId") Long userId);
+
+    /**
+     * @return the 1-based position of the user in the session's waitlist, 0 when the user is not waiting
+     */
+    @Query("select count(w) from WaitlistEntry w where w.sessionId = :sessionId and w.id <= "
+            + "(select mine.id from WaitlistEntry mine where mine.sessionId = :sessionId and mine.userId = :userId)")
+    long findPosition(@Param("sessionId") Long sessionId, @Param("userId") Long userId);
+}
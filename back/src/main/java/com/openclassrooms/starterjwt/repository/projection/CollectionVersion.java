@@ -0,0 +1,12 @@
+package com.openclassrooms.starterjwt.repository.projection;
+
+import java.time.LocalDateTime;
+
+/**
+ * Cheap fingerprint of a whole table: any insert, update or delete changes it.
+ */
+public interface CollectionVersion {
+    Long getCount();
+
+    LocalDateTime getLastUpdatedAt();
+}
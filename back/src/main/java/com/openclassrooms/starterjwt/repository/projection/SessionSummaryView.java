@@ -0,0 +1,22 @@
+package com.openclassrooms.starterjwt.repository.projection;
+
+import java.util.Date;
+
+public interface SessionSummaryView {
+    Long getId();
+
+    String getName();
+
+    Date getDate();
+
+    String getDescription();
+
+    Long getTeacherId();
+
+    Long getParticipantCount();
+
+    /**
+     * 1 when the requesting user participates in the session, 0 otherwise.
+     */
+    Integer getParticipating();
+}
@@ -0,0 +1,213 @@
+package com.openclassrooms.starterjwt.search;
+
+import com.openclassrooms.starterjwt.models.Session;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.stream.Collectors;
+
+/**
+ * In-memory inverted index over session names and descriptions.
+ * <p>
+ * Terms are kept sorted so a query term also matches every indexed term it prefixes. Results must
+ * match all query terms and are ranked by TF-IDF, an occurrence in the name counting as
+ * {@link #NAME_BOOST} occurrences in the description.
+ */
+@Component
+public class SessionSearchIndex {
+    static final int NAME_BOOST = 3;
+
+    // a prefix expansion ("vin" -> "vinyasa") scores less than the exact term
+    static final double PREFIX_MATCH_WEIGHT = 0.5;
+
+    private final NavigableMap<String, Map<Long, Integer>> postings = new TreeMap<>();
+    private final Map<Long, IndexedSession> sessions = new HashMap<>();
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+    // sessions deleted while a rebuild is running, so that the rebuild does not bring them back
+    private final Set<Long> removedDuringRebuild = new HashSet<>();
+    private boolean rebuilding;
+
+    public void index(Session session) {
+        IndexedSession indexed = IndexedSession.of(session);
+
+        this.lock.writeLock().lock();
+        try {
+            put(indexed);
+        } finally {
+            this.lock.writeLock().unlock();
+        }
+    }
+
+    public void remove(Long sessionId) {
+        this.lock.writeLock().lock();
+        try {
+            removePostings(sessionId);
+            if (this.rebuilding) {
+                this.removedDuringRebuild.add(sessionId);
+            }
+        } finally {
+            this.lock.writeLock().unlock();
+        }
+    }
+
+    public void startRebuild() {
+        this.lock.writeLock().lock();
+        try {
+            this.rebuilding = true;
+        } finally {
+            this.lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Adds sessions read by a rebuild. Tokenization runs in parallel outside the lock; a session
+     * written or deleted since the rebuild read it is left as is.
+     */
+    public void indexAll(Collection<Session> batch) {
+        List<IndexedSession> indexed = batch.parallelStream().map(IndexedSession::of).collect(Collectors.toList());
+
+        this.lock.writeLock().lock();
+        try {
+            for (IndexedSession session : indexed) {
+                IndexedSession current = this.sessions.get(session.id);
+                boolean stale = current != null && current.isNewerThan(session);
+                if (!stale && !this.removedDuringRebuild.contains(session.id)) {
+                    put(session);
+                }
+            }
+        } finally {
+            this.lock.writeLock().unlock();
+        }
+    }
+
+    public void finishRebuild() {
+        this.lock.writeLock().lock();
+        try {
+            this.rebuilding = false;
+            this.removedDuringRebuild.clear();
+        } finally {
+            this.lock.writeLock().unlock();
+        }
+    }
+
+    public int size() {
+        this.lock.readLock().lock();
+        try {
+            return this.sessions.size();
+        } finally {
+            this.lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Returns the ids of the sessions matching every term of the query, best match first.
+     */
+    public List<Long> search(String query, int limit) {
+        Set<String> queryTerms = new LinkedHashSet<>(SearchTokenizer.tokenize(query));
+        if (queryTerms.isEmpty()) {
+            return List.of();
+        }
+
+        this.lock.readLock().lock();
+        try {
+            Map<Long, Double> scores = null;
+            for (String queryTerm : queryTerms) {
+                Map<Long, Double> termScores = score(queryTerm);
+                if (scores == null) {
+                    scores = termScores;
+                } else {
+                    scores.keySet().retainAll(termScores.keySet());
+                    scores.replaceAll((sessionId, score) -> score + termScores.get(sessionId));
+                }
+
+                if (scores.isEmpty()) {
+                    return List.of();
+                }
+            }
+
+            return scores.entrySet().stream()
+                    .sorted(Map.Entry.<Long, Double>comparingByValue(Comparator.reverseOrder()).thenComparing(Map.Entry.comparingByKey()))
+                    .limit(limit)
+                    .map(Map.Entry::getKey)
+                    .collect(Collectors.toList());
+        } finally {
+            this.lock.readLock().unlock();
+        }
+    }
+
+    private Map<Long, Double> score(String queryTerm) {
+        Map<Long, Double> termScores = new HashMap<>();
+        NavigableMap<String, Map<Long, Integer>> matches = this.postings.subMap(queryTerm, true, queryTerm + Character.MAX_VALUE, false);
+
+        for (Map.Entry<String, Map<Long, Integer>> match : matches.entrySet()) {
+            Map<Long, Integer> frequencies = match.getValue();
+            double idf = Math.log(1 + (double) this.sessions.size() / frequencies.size());
+            double weight = match.getKey().equals(queryTerm) ? 1 : PREFIX_MATCH_WEIGHT;
+
+            // several expansions of the same prefix in a session count once, with the best score
+            frequencies.forEach((sessionId, frequency) ->
+                    termScores.merge(sessionId, (1 + Math.log(frequency)) * idf * weight, Math::max));
+        }
+
+        return termScores;
+    }
+
+    private void put(IndexedSession session) {
+        removePostings(session.id);
+        this.sessions.put(session.id, session);
+        session.frequencies.forEach((term, frequency) ->
+                this.postings.computeIfAbsent(term, t -> new HashMap<>()).put(session.id, frequency));
+    }
+
+    private void removePostings(Long sessionId) {
+        IndexedSession previous = this.sessions.remove(sessionId);
+        if (previous == null) {
+            return;
+        }
+
+        for (String term : previous.frequencies.keySet()) {
+            Map<Long, Integer> frequencies = this.postings.get(term);
+            frequencies.remove(sessionId);
+            if (frequencies.isEmpty()) {
+                this.postings.remove(term);
+            }
+        }
+    }
+
+    private static final class IndexedSession {
+        private final Long id;
+        private final LocalDateTime updatedAt;
+        private final Map<String, Integer> frequencies;
+
+        private IndexedSession(Long id, LocalDateTime updatedAt, Map<String, Integer> frequencies) {
+            this.id = id;
+            this.updatedAt = updatedAt;
+            this.frequencies = frequencies;
+        }
+
+        static IndexedSession of(Session session) {
+            Map<String, Integer> frequencies = new HashMap<>();
+            SearchTokenizer.tokenize(session.getName()).forEach(term -> frequencies.merge(term, NAME_BOOST, Integer::sum));
+            SearchTokenizer.tokenize(session.getDescription()).forEach(term -> frequencies.merge(term, 1, Integer::sum));
+
+            return new IndexedSession(session.getId(), session.getUpdatedAt(), frequencies);
+        }
+
+        boolean isNewerThan(IndexedSession other) {
+            return this.updatedAt != null && other.updatedAt != null && this.updatedAt.isAfter(other.updatedAt);
+        }
+    }
+}
@@ -0,0 +1,36 @@
+package com.openclassrooms.starterjwt.search;
+
+import com.openclassrooms.starterjwt.services.SessionService;
+import lombok.extern.log4j.Log4j2;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+/**
+ * Fills the search index once the application is up, from a streaming scan of the sessions.
+ */
+@Component
+@Log4j2
+public class SessionSearchIndexInitializer {
+    private final SessionService sessionService;
+    private final SessionSearchIndex sessionSearchIndex;
+
+    public SessionSearchIndexInitializer(SessionService sessionService, SessionSearchIndex sessionSearchIndex) {
+        this.sessionService = sessionService;
+        this.sessionSearchIndex = sessionSearchIndex;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void rebuild() {
+        long start = System.currentTimeMillis();
+
+        this.sessionSearchIndex.startRebuild();
+        try {
+            this.sessionService.forEachChunkWithoutParticipants(this.sessionSearchIndex::indexAll);
+        } finally {
+            this.sessionSearchIndex.finishRebuild();
+        }
+
+        log.info("Indexed {} sessions for search in {} ms", this.sessionSearchIndex.size(), System.currentTimeMillis() - start);
+    }
+}
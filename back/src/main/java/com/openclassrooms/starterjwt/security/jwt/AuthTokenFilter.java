@@ -1,6 +1,7 @@
 package com.openclassrooms.starterjwt.security.jwt;
 
 import java.io.IOException;
+import java.util.Optional;
 
 import javax.servlet.FilterChain;
 import javax.servlet.ServletException;
@@ -17,6 +18,8 @@ import org.springframework.security.web.authentication.WebAuthenticationDetailsS
 import org.springframework.util.StringUtils;
 import org.springframework.web.filter.OncePerRequestFilter;
 
+import com.openclassrooms.starterjwt.security.services.TokenVersionService;
+import com.openclassrooms.starterjwt.security.services.UserDetailsImpl;
 import com.openclassrooms.starterjwt.security.services.UserDetailsServiceImpl;
 
 public class AuthTokenFilter extends OncePerRequestFilter {
@@ -26,6 +29,9 @@ public class AuthTokenFilter extends OncePerRequestFilter {
   @Autowired
   private UserDetailsServiceImpl userDetailsService;
 
+  @Autowired
+  private TokenVersionService tokenVersionService;
+
   private static final Logger logger = LoggerFactory.getLogger(AuthTokenFilter.class);
 
   @Override
@@ -33,10 +39,9 @@ public class AuthTokenFilter extends OncePerRequestFilter {
       throws ServletException, IOException {
     try {
       String jwt = parseJwt(request);
-      if (jwt != null && jwtUtils.validateJwtToken(jwt)) {
-        String username = jwtUtils.getUserNameFromJwtToken(jwt);
-
-        UserDetails userDetails = userDetailsService.loadUserByUsername(username);
+      Optional<JwtClaims> claims = jwt == null ? Optional.empty() : jwtUtils.verify(jwt);
+      UserDetails userDetails = claims.isPresent() ? principalOf(claims.get()) : null;
+      if (userDetails != null) {
         UsernamePasswordAuthenticationToken authentication =
             new UsernamePasswordAuthenticationToken(
                 userDetails,
@@ -53,6 +58,26 @@ public class AuthTokenFilter extends OncePerRequestFilter {
     filterChain.doFilter(request, response);
   }
 
+  // the claims carry the principal, only their version is checked against the (cached) current one
+  private UserDetails principalOf(JwtClaims claims) {
+    if (!claims.isSelfContained()) {
+      // issued before the claims were added
+      return userDetailsService.loadUserByUsername(claims.getSubject());
+    }
+
+    if (!tokenVersionService.isCurrent(claims.getUserId(), claims.getTokenVersion())) {
+      logger.error("JWT token is revoked for user {}", claims.getUserId());
+      return null;
+    }
+
+    return UserDetailsImpl.builder()
+        .id(claims.getUserId())
+        .username(claims.getSubject())
+        .admin(claims.getAdmin())
+        .tokenVersion(claims.getTokenVersion())
+        .build();
+  }
+
   private String parseJwt(HttpServletRequest request) {
     String headerAuth = request.getHeader("Authorization");
 
@@ -0,0 +1,31 @@
+package com.openclassrooms.starterjwt.security.jwt;
+
+import java.time.Instant;
+
+import lombok.Value;
+
+/**
+ * Claims of a token whose signature and expiration have been checked.
+ * The user id, admin flag and token version are null in tokens issued before they were added.
+ */
+@Value
+public class JwtClaims {
+  String subject;
+
+  Instant issuedAt;
+
+  Instant expiration;
+
+  Long userId;
+
+  Boolean admin;
+
+  Integer tokenVersion;
+
+  /**
+   * @return whether the principal can be built from the claims alone
+   */
+  public boolean isSelfContained() {
+    return userId != null && admin != null && tokenVersion != null;
+  }
+}
@@ -0,0 +1,257 @@
+package com.openclassrooms.starterjwt.security.jwt;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.security.GeneralSecurityException;
+import java.security.Key;
+import java.security.KeyFactory;
+import java.security.PrivateKey;
+import java.security.PublicKey;
+import java.security.interfaces.ECKey;
+import java.security.interfaces.RSAKey;
+import java.security.spec.KeySpec;
+import java.security.spec.PKCS8EncodedKeySpec;
+import java.security.spec.X509EncodedKeySpec;
+import java.util.Base64;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.regex.Pattern;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import io.jsonwebtoken.SignatureAlgorithm;
+
+/**
+ * Asymmetric keys of the tokens, by key id ({@code kid} header), read from PEM files of a local directory:
+ * {@code <kid>.pub.pem} holds a public key (X.509 {@code PUBLIC KEY}), {@code <kid>.key.pem} a private key
+ * (PKCS#8 {@code PRIVATE KEY}). RSA keys sign with RS256, EC keys with ES256, ES384 or ES512 after their curve.
+ * <p>
+ * Every public key verifies tokens. Tokens are signed with the last kid, in name order, having both files:
+ * nodes that only verify hold the public keys alone. To rotate, add the new public key everywhere, then the
+ * new private key on the signing nodes, and remove the old public key once its tokens have expired.
+ * <p>
+ * The directory is read again every reload interval and the keys are swapped at once, lookups stay in memory.
+ * Disabled, and tokens signed with the HS512 secret, when {@code oc.app.jwt.keys.dir} is not set.
+ */
+@Component
+public class JwtKeySet {
+  private static final Logger logger = LoggerFactory.getLogger(JwtKeySet.class);
+
+  static final String PUBLIC_KEY_SUFFIX = ".pub.pem";
+
+  static final String PRIVATE_KEY_SUFFIX = ".key.pem";
+
+  private static final Pattern KID = Pattern.compile("[A-Za-z0-9._-]+");
+
+  private final Path directory;
+
+  private final List<Runnable> removalListeners = new CopyOnWriteArrayList<>();
+
+  private volatile Keys keys = new Keys(Collections.emptyMap(), null);
+
+  /**
+   * @throws IllegalStateException when the directory is set but holds no valid public key
+   */
+  public JwtKeySet(@Value("${oc.app.jwt.keys.dir:}") String directory) {
+    this.directory = directory.isBlank() ? null : Paths.get(directory);
+    if (this.directory != null) {
+      reload();
+      if (this.keys.getVerificationKeys().isEmpty()) {
+        throw new IllegalStateException("No public key (*" + PUBLIC_KEY_SUFFIX + ") in " + this.directory);
+      }
+    }
+  }
+
+  public boolean isEnabled() {
+    return this.directory != null;
+  }
+
+  /**
+   * @return the key verifying the tokens of this kid, null when unknown
+   */
+  public VerificationKey verificationKey(String kid) {
+    return kid == null ? null : this.keys.getVerificationKeys().get(kid);
+  }
+
+  /**
+   * @return the key to sign new tokens with, null when this node only verifies tokens
+   */
+  public SigningKey signingKey() {
+    return this.keys.getSigningKey();
+  }
+
+  /**
+   * Runs the listener after a reload that removed keys, for what remembers tokens verified with them.
+   */
+  public void onKeysRemoved(Runnable listener) {
+    this.removalListeners.add(listener);
+  }
+
+  @Scheduled(fixedDelayString = "${oc.app.jwt.keys.reload-interval-ms:10000}")
+  public void reload() {
+    if (this.directory == null) {
+      return;
+    }
+
+    Keys previous = this.keys;
+    Map<String, VerificationKey> verificationKeys = new TreeMap<>();
+    Map<String, PrivateKey> privateKeys = new TreeMap<>();
+    try (DirectoryStream<Path> files = Files.newDirectoryStream(this.directory, "*.pem")) {
+      for (Path file : files) {
+        String name = file.getFileName().toString();
+        if (name.endsWith(PUBLIC_KEY_SUFFIX)) {
+          String kid = kidOf(name, PUBLIC_KEY_SUFFIX);
+          PublicKey key = (PublicKey) read(file, kid, "PUBLIC KEY", previous.publicKey(kid));
+          if (key != null) {
+            verificationKeys.put(kid, new VerificationKey(kid, algorithmOf(key), key));
+          }
+        } else if (name.endsWith(PRIVATE_KEY_SUFFIX)) {
+          String kid = kidOf(name, PRIVATE_KEY_SUFFIX);
+          PrivateKey key = (PrivateKey) read(file, kid, "PRIVATE KEY", previous.privateKey(kid));
+          if (key != null) {
+            privateKeys.put(kid, key);
+          }
+        }
+      }
+    } catch (IOException e) {
+      logger.error("Cannot list the JWT keys of {}, keeping the current ones: {}", this.directory, e.getMessage());
+      return;
+    }
+
+    SigningKey signingKey = null;
+    for (Map.Entry<String, PrivateKey> privateKey : privateKeys.entrySet()) {
+      VerificationKey publicKey = verificationKeys.get(privateKey.getKey());
+      if (publicKey != null && publicKey.getAlgorithm() == algorithmOf(privateKey.getValue())) {
+        signingKey = new SigningKey(privateKey.getKey(), publicKey.getAlgorithm(), privateKey.getValue());
+      }
+    }
+
+    this.keys = new Keys(Collections.unmodifiableMap(verificationKeys), signingKey);
+
+    if (!verificationKeys.keySet().equals(previous.getVerificationKeys().keySet())
+        || !kidOf(signingKey).equals(kidOf(previous.getSigningKey()))) {
+      logger.info("JWT keys loaded from {}: {}, signing with {}", this.directory, verificationKeys.keySet(), kidOf(signingKey));
+    }
+    if (!verificationKeys.keySet().containsAll(previous.getVerificationKeys().keySet())) {
+      this.removalListeners.forEach(Runnable::run);
+    }
+  }
+
+  private static String kidOf(String fileName, String suffix) {
+    return fileName.substring(0, fileName.length() - suffix.length());
+  }
+
+  private static String kidOf(SigningKey signingKey) {
+    return signingKey == null ? "none" : signingKey.getKid();
+  }
+
+  // a file being written, or invalid, keeps the key it held before
+  private Key read(Path file, String kid, String type, Key previous) {
+    if (!KID.matcher(kid).matches()) {
+      logger.error("Invalid JWT key id, ignoring {}", file);
+      return null;
+    }
+
+    try {
+      String pem = new String(Files.readAllBytes(file), StandardCharsets.US_ASCII);
+      String begin = "-----BEGIN " + type + "-----";
+      String end = "-----END " + type + "-----";
+      int start = pem.indexOf(begin);
+      int stop = pem.indexOf(end);
+      if (start < 0 || stop < start) {
+        throw new GeneralSecurityException("no " + type + " block");
+      }
+      byte[] der = Base64.getMimeDecoder().decode(pem.substring(start + begin.length(), stop));
+
+      return decode(der, "PUBLIC KEY".equals(type));
+    } catch (IOException | GeneralSecurityException | IllegalArgumentException e) {
+      logger.error("Cannot read the JWT key {}: {}", file, e.getMessage());
+      return previous;
+    }
+  }
+
+  private static Key decode(byte[] der, boolean publicKey) throws GeneralSecurityException {
+    GeneralSecurityException failure = null;
+    for (String keyType : new String[]{"RSA", "EC"}) {
+      try {
+        KeyFactory keyFactory = KeyFactory.getInstance(keyType);
+        KeySpec spec = publicKey ? new X509EncodedKeySpec(der) : new PKCS8EncodedKeySpec(der);
+        Key key = publicKey ? keyFactory.generatePublic(spec) : keyFactory.generatePrivate(spec);
+        if (algorithmOf(key) == null) {
+          throw new GeneralSecurityException("unsupported " + keyType + " key");
+        }
+
+        return key;
+      } catch (GeneralSecurityException e) {
+        failure = e;
+      }
+    }
+
+    throw failure;
+  }
+
+  private static SignatureAlgorithm algorithmOf(Key key) {
+    if (key instanceof RSAKey) {
+      return SignatureAlgorithm.RS256;
+    }
+    if (key instanceof ECKey) {
+      switch (((ECKey) key).getParams().getCurve().getField().getFieldSize()) {
+        case 256:
+          return SignatureAlgorithm.ES256;
+        case 384:
+          return SignatureAlgorithm.ES384;
+        case 521:
+          return SignatureAlgorithm.ES512;
+        default:
+          break;
+      }
+    }
+
+    return null;
+  }
+
+  @lombok.Value
+  public static class VerificationKey {
+    String kid;
+
+    SignatureAlgorithm algorithm;
+
+    PublicKey key;
+  }
+
+  @lombok.Value
+  public static class SigningKey {
+    String kid;
+
+    SignatureAlgorithm algorithm;
+
+    PrivateKey key;
+  }
+
+  @lombok.Value
+  private static class Keys {
+    Map<String, VerificationKey> verificationKeys;
+
+    SigningKey signingKey;
+
+    PublicKey publicKey(String kid) {
+      VerificationKey verificationKey = verificationKeys.get(kid);
+      return verificationKey == null ? null : verificationKey.getKey();
+    }
+
+    PrivateKey privateKey(String kid) {
+      return signingKey != null && signingKey.getKid().equals(kid) ? signingKey.getKey() : null;
+    }
+  }
+}
@@ -1,47 +1,192 @@
 package com.openclassrooms.starterjwt.security.jwt;
 
+import java.nio.charset.StandardCharsets;
+import java.security.Key;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Base64;
 import java.util.Date;
+import java.util.Optional;
+
+import javax.crypto.spec.SecretKeySpec;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.security.core.Authentication;
 import org.springframework.stereotype.Component;
 
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
 import com.openclassrooms.starterjwt.security.services.UserDetailsImpl;
 
 import io.jsonwebtoken.*;
+import io.jsonwebtoken.impl.TextCodec;
 
 @Component
 public class JwtUtils {
   private static final Logger logger = LoggerFactory.getLogger(JwtUtils.class);
 
-  @Value("${oc.app.jwtSecret}")
-  private String jwtSecret;
+  private static final SignatureAlgorithm SECRET_ALGORITHM = SignatureAlgorithm.HS512;
 
-  @Value("${oc.app.jwtExpirationMs}")
-  private int jwtExpirationMs;
+  static final String USER_ID_CLAIM = "uid";
 
-  public String generateJwtToken(Authentication authentication) {
+  static final String ADMIN_CLAIM = "adm";
+
+  static final String TOKEN_VERSION_CLAIM = "ver";
+
+  private final int jwtExpirationMs;
+
+  // decoded once: passing the secret string to jjwt decodes it again on every sign and parse; null without secret
+  private final Key secretKey;
+
+  // asymmetric keys by kid, null or disabled when tokens are signed with the secret
+  private final JwtKeySet keySet;
+
+  // configured once and never changed afterwards, parsing then only reads its state and is safe to share
+  private final JwtParser parser;
+
+  // claims of the tokens already verified, by SHA-256 of the token, each kept until the token expires; null when disabled
+  private final Cache<String, JwtClaims> verifiedTokens;
+
+  public JwtUtils(String jwtSecret, int jwtExpirationMs) {
+    this(jwtSecret, jwtExpirationMs, 0);
+  }
+
+  public JwtUtils(String jwtSecret, int jwtExpirationMs, long verifiedCacheMaxTokens) {
+    this(jwtSecret, jwtExpirationMs, verifiedCacheMaxTokens, null);
+  }
+
+  /**
+   * With a key set, tokens are signed with its private key and tokens signed with the secret, if any, are still
+   * accepted: nodes keep the sessions opened before moving to the key set, and verifying nodes need no secret.
+   *
+   * @throws IllegalStateException when there is neither a secret nor a key set
+   */
+  @Autowired
+  public JwtUtils(@Value("${oc.app.jwtSecret:}") String jwtSecret, @Value("${oc.app.jwtExpirationMs}") int jwtExpirationMs,
+                  @Value("${oc.app.jwt.verified-cache.max-tokens:0}") long verifiedCacheMaxTokens,
+                  JwtKeySet keySet) {
+    this.jwtExpirationMs = jwtExpirationMs;
+    this.keySet = keySet != null && keySet.isEnabled() ? keySet : null;
+    if ((jwtSecret == null || jwtSecret.isBlank()) && this.keySet == null) {
+      throw new IllegalStateException("oc.app.jwtSecret is required when oc.app.jwt.keys.dir is not set");
+    }
+    // the secret is base64, as jjwt reads String keys
+    this.secretKey = jwtSecret == null || jwtSecret.isBlank()
+        ? null : new SecretKeySpec(TextCodec.BASE64.decode(jwtSecret), SECRET_ALGORITHM.getJcaName());
+    this.parser = Jwts.parser().setSigningKeyResolver(new SigningKeyResolverAdapter() {
+      @Override
+      public Key resolveSigningKey(JwsHeader header, Claims claims) {
+        return verificationKey(header);
+      }
+    });
+    this.verifiedTokens = verifiedCacheMaxTokens <= 0 ? null : Caffeine.newBuilder()
+        .maximumSize(verifiedCacheMaxTokens)
+        .expireAfter(new UntilTokenExpiration())
+        .build();
+    if (this.keySet != null && this.verifiedTokens != null) {
+      // a removed key no longer lets its tokens in
+      this.keySet.onKeysRemoved(this.verifiedTokens::invalidateAll);
+    }
+  }
 
-    UserDetailsImpl userPrincipal = (UserDetailsImpl) authentication.getPrincipal();
+  /**
+   * @throws IllegalStateException when the key set holds no private key, on nodes that only verify tokens
+   */
+  public String generateJwtToken(Authentication authentication) {
+    return generateJwtToken((UserDetailsImpl) authentication.getPrincipal());
+  }
 
-    return Jwts.builder()
+  /**
+   * @throws IllegalStateException when the key set holds no private key, on nodes that only verify tokens
+   */
+  public String generateJwtToken(UserDetailsImpl userPrincipal) {
+    JwtBuilder builder = Jwts.builder()
         .setSubject((userPrincipal.getUsername()))
+        .claim(USER_ID_CLAIM, userPrincipal.getId())
+        .claim(ADMIN_CLAIM, userPrincipal.getAdmin())
+        .claim(TOKEN_VERSION_CLAIM, userPrincipal.getTokenVersion())
         .setIssuedAt(new Date())
-        .setExpiration(new Date((new Date()).getTime() + jwtExpirationMs))
-        .signWith(SignatureAlgorithm.HS512, jwtSecret)
+        .setExpiration(new Date((new Date()).getTime() + jwtExpirationMs));
+
+    if (keySet == null) {
+      return builder.signWith(SECRET_ALGORITHM, secretKey).compact();
+    }
+
+    JwtKeySet.SigningKey signingKey = keySet.signingKey();
+    if (signingKey == null) {
+      throw new IllegalStateException("No JWT private key, this node only verifies tokens");
+    }
+    return builder
+        .setHeaderParam(JwsHeader.KEY_ID, signingKey.getKid())
+        .signWith(signingKey.getAlgorithm(), signingKey.getKey())
         .compact();
   }
 
-  public String getUserNameFromJwtToken(String token) {
-    return Jwts.parser().setSigningKey(jwtSecret).parseClaimsJws(token).getBody().getSubject();
+  // the header picks the key, and must name the algorithm of that key: a public key is never used as an HMAC secret
+  private Key verificationKey(JwsHeader<?> header) {
+    String kid = header.getKeyId();
+    if (kid == null) {
+      if (secretKey == null || !SECRET_ALGORITHM.getValue().equals(header.getAlgorithm())) {
+        throw new UnsupportedJwtException("JWT token has no key id");
+      }
+      return secretKey;
+    }
+
+    JwtKeySet.VerificationKey key = keySet == null ? null : keySet.verificationKey(kid);
+    if (key == null) {
+      throw new SignatureException("Unknown JWT key id " + kid);
+    }
+    if (!key.getAlgorithm().getValue().equals(header.getAlgorithm())) {
+      throw new UnsupportedJwtException("JWT algorithm " + header.getAlgorithm() + " does not match key " + kid);
+    }
+    return key.getKey();
   }
 
-  public boolean validateJwtToken(String authToken) {
+  /**
+   * Checks the signature and expiration of the token and reads its claims, with a single parse.
+   * When the verified cache is enabled, a token seen before is only checked against its expiration.
+   *
+   * @return the claims, empty when the token is not valid
+   */
+  public Optional<JwtClaims> verify(String authToken) {
+    if (verifiedTokens == null || authToken == null) {
+      return parse(authToken);
+    }
+
+    String digest = digest(authToken);
+    JwtClaims cached = verifiedTokens.getIfPresent(digest);
+    if (cached != null) {
+      // the cache evicts at its own pace, the expiration of the token decides as jjwt would
+      if (Instant.now().isAfter(cached.getExpiration())) {
+        verifiedTokens.invalidate(digest);
+        logger.error("JWT token is expired: {}", cached.getExpiration());
+        return Optional.empty();
+      }
+      return Optional.of(cached);
+    }
+
+    Optional<JwtClaims> claims = parse(authToken);
+    // a token without expiration would never leave the cache but by size
+    claims.filter(verified -> verified.getExpiration() != null).ifPresent(verified -> verifiedTokens.put(digest, verified));
+    return claims;
+  }
+
+  private Optional<JwtClaims> parse(String authToken) {
     try {
-      Jwts.parser().setSigningKey(jwtSecret).parseClaimsJws(authToken);
-      return true;
+      Claims claims = parser.parseClaimsJws(authToken).getBody();
+
+      return Optional.of(new JwtClaims(claims.getSubject(),
+          claims.getIssuedAt() == null ? null : claims.getIssuedAt().toInstant(),
+          claims.getExpiration() == null ? null : claims.getExpiration().toInstant(),
+          claims.get(USER_ID_CLAIM, Long.class),
+          claims.get(ADMIN_CLAIM, Boolean.class),
+          claims.get(TOKEN_VERSION_CLAIM, Integer.class)));
     } catch (SignatureException e) {
       logger.error("Invalid JWT signature: {}", e.getMessage());
     } catch (MalformedJwtException e) {
@@ -52,8 +197,45 @@ public class JwtUtils {
       logger.error("JWT token is unsupported: {}", e.getMessage());
     } catch (IllegalArgumentException e) {
       logger.error("JWT claims string is empty: {}", e.getMessage());
+    } catch (RequiredTypeException e) {
+      logger.error("Invalid JWT claim: {}", e.getMessage());
+    }
+
+    return Optional.empty();
+  }
+
+  private static String digest(String token) {
+    try {
+      byte[] hash = MessageDigest.getInstance("SHA-256").digest(token.getBytes(StandardCharsets.US_ASCII));
+      return Base64.getEncoder().encodeToString(hash);
+    } catch (NoSuchAlgorithmException e) {
+      // every Java platform provides SHA-256
+      throw new IllegalStateException(e);
+    }
+  }
+
+  private static class UntilTokenExpiration implements Expiry<String, JwtClaims> {
+    @Override
+    public long expireAfterCreate(String digest, JwtClaims claims, long currentTime) {
+      return Math.max(0, Duration.between(Instant.now(), claims.getExpiration()).toNanos());
     }
 
-    return false;
+    @Override
+    public long expireAfterUpdate(String digest, JwtClaims claims, long currentTime, long currentDuration) {
+      return expireAfterCreate(digest, claims, currentTime);
+    }
+
+    @Override
+    public long expireAfterRead(String digest, JwtClaims claims, long currentTime, long currentDuration) {
+      return currentDuration;
+    }
+  }
+
+  public String getUserNameFromJwtToken(String token) {
+    return parser.parseClaimsJws(token).getBody().getSubject();
+  }
+
+  public boolean validateJwtToken(String authToken) {
+    return verify(authToken).isPresent();
   }
 }
@@ -0,0 +1,51 @@
+package com.openclassrooms.starterjwt.security.services;
+
+import java.util.Objects;
+
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.stereotype.Service;
+
+import com.openclassrooms.starterjwt.repository.UserRepository;
+
+/**
+ * Tells whether a token was issued with the current token version of its user. Versions are cached by user id,
+ * deleted users included (as a null entry): a revocation is seen at once on the node that made it,
+ * on the other nodes once their entry expires.
+ */
+@Service
+public class TokenVersionService {
+  public static final String TOKEN_VERSIONS_CACHE = "tokenVersions";
+
+  private final UserRepository userRepository;
+
+  private final Cache cache;
+
+  public TokenVersionService(UserRepository userRepository, CacheManager cacheManager) {
+    this.userRepository = userRepository;
+    this.cache = Objects.requireNonNull(cacheManager.getCache(TOKEN_VERSIONS_CACHE), "Missing cache " + TOKEN_VERSIONS_CACHE);
+  }
+
+  public boolean isCurrent(Long userId, int tokenVersion) {
+    Integer currentVersion = cache.get(userId, () -> userRepository.findTokenVersionById(userId).orElse(null));
+
+    return currentVersion != null && currentVersion == tokenVersion;
+  }
+
+  /**
+   * Rejects every token issued to the user so far.
+   *
+   * @return false when the user does not exist
+   */
+  public boolean revoke(Long userId) {
+    int updated = userRepository.incrementTokenVersion(userId);
+    // after the commit of the increment: a check in between cannot cache the former version again
+    cache.evict(userId);
+
+    return updated == 1;
+  }
+
+  public void evict(Long userId) {
+    cache.evict(userId);
+  }
+}
@@ -12,6 +12,7 @@ import com.fasterxml.jackson.annotation.JsonIgnore;
 import lombok.AllArgsConstructor;
 import lombok.Builder;
 import lombok.Getter;
+import lombok.With;
 
 @Builder
 @AllArgsConstructor
@@ -29,6 +30,9 @@ public class UserDetailsImpl implements UserDetails {
 
   private Boolean admin;
 
+  @With
+  private Integer tokenVersion;
+
   @JsonIgnore
   private String password;  
   
@@ -1,34 +1,65 @@
 package com.openclassrooms.starterjwt.security.services;
 
+import java.util.Objects;
+
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
 import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.security.core.userdetails.UserDetailsService;
 import org.springframework.security.core.userdetails.UsernameNotFoundException;
 import org.springframework.stereotype.Service;
-import org.springframework.transaction.annotation.Transactional;
 
 import com.openclassrooms.starterjwt.models.User;
 import com.openclassrooms.starterjwt.repository.UserRepository;
 
+/**
+ * Resolves the principal of every authenticated request. Lookups are cached by email, unknown emails included
+ * (as a null entry), so a token or login for a missing user does not reach the database either.
+ * Entries expire with the cache spec; {@link #evict(String)} drops one at once when the user changes.
+ */
 @Service
 public class UserDetailsServiceImpl implements UserDetailsService {
+  public static final String USERS_CACHE = "users";
+
   UserRepository userRepository;
 
-  UserDetailsServiceImpl(UserRepository userRepository) {
+  private final Cache cache;
+
+  public UserDetailsServiceImpl(UserRepository userRepository, CacheManager cacheManager) {
     this.userRepository = userRepository;
+    this.cache = Objects.requireNonNull(cacheManager.getCache(USERS_CACHE), "Missing cache " + USERS_CACHE);
   }
 
+  // not transactional: a cache hit must not take a connection, a miss runs the repository's own read transaction
   @Override
-  @Transactional
   public UserDetails loadUserByUsername(String username) throws UsernameNotFoundException {
-    User user = userRepository.findByEmail(username)
-        .orElseThrow(() -> new UsernameNotFoundException("User Not Found with email: " + username));
+    UserDetailsImpl userDetails = cache.get(username, () -> userRepository.findByEmail(username)
+        .map(UserDetailsServiceImpl::toUserDetails)
+        .orElse(null));
+
+    if (userDetails == null) {
+      throw new UsernameNotFoundException("User Not Found with email: " + username);
+    }
+
+    return userDetails;
+  }
+
+  /**
+   * Forgets the cached lookup of the email, to be called once a user is created, deleted or gets a new password.
+   */
+  public void evict(String email) {
+    cache.evict(email);
+  }
 
+  private static UserDetailsImpl toUserDetails(User user) {
     return UserDetailsImpl
             .builder()
             .id(user.getId())
             .username(user.getEmail())
             .lastName(user.getLastName())
             .firstName(user.getFirstName())
+            .admin(user.isAdmin())
+            .tokenVersion(user.getTokenVersion())
             .password(user.getPassword())
             .build();
   }
@@ -0,0 +1,213 @@
+package com.openclassrooms.starterjwt.services;
+
+import com.openclassrooms.starterjwt.exception.BadRequestException;
+import com.openclassrooms.starterjwt.exception.ConflictException;
+import com.openclassrooms.starterjwt.exception.NotFoundException;
+import com.openclassrooms.starterjwt.outbox.OutboxEventType;
+import com.openclassrooms.starterjwt.outbox.OutboxWriter;
+import com.openclassrooms.starterjwt.repository.ParticipationBatchRepository;
+import com.openclassrooms.starterjwt.repository.ParticipationKey;
+import com.openclassrooms.starterjwt.repository.UserRepository;
+import org.springframework.cache.annotation.CacheEvict;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+/**
+ * Enrolls many users in one session, or one user in many sessions, with a fixed number of statements:
+ * the ids are validated by one query each side and the rows are written by JDBC batches.
+ * Seats are handed out in request order, the users left without one are queued on the waitlist.
+ */
+@Service
+public class EnrollmentService {
+    public static final int MAX_IDS = UserService.ID_BATCH_SIZE;
+
+    private final ParticipationBatchRepository participationBatchRepository;
+
+    private final UserRepository userRepository;
+
+    private final OutboxWriter outboxWriter;
+
+    public EnrollmentService(ParticipationBatchRepository participationBatchRepository,
+                             UserRepository userRepository,
+                             OutboxWriter outboxWriter) {
+        this.participationBatchRepository = participationBatchRepository;
+        this.userRepository = userRepository;
+        this.outboxWriter = outboxWriter;
+    }
+
+    /**
+     * @return the status of every distinct user id, in request order
+     */
+    @Transactional
+    @CacheEvict(cacheNames = SessionService.SESSIONS_CACHE, key = "#id")
+    public Map<ParticipationKey, EnrollmentStatus> enrollUsers(Long id, List<Long> userIds) {
+        List<Long> distinctUserIds = distinct(userIds);
+
+        // lock first, see enroll
+        Map<Long, Integer> freeSeats = this.participationBatchRepository.lockSessions(List.of(id));
+        if (freeSeats.isEmpty()) {
+            throw new NotFoundException();
+        }
+        Set<Long> knownUserIds = this.userRepository.findIdsByIdIn(distinctUserIds);
+
+        return enroll(distinctUserIds.stream().map(userId -> new ParticipationKey(id, userId)).collect(Collectors.toList()),
+                freeSeats, knownUserIds);
+    }
+
+    /**
+     * @return the status of every distinct session id, in request order
+     */
+    @Transactional
+    // the enrolled sessions are not known before the call
+    @CacheEvict(cacheNames = SessionService.SESSIONS_CACHE, allEntries = true)
+    public Map<ParticipationKey, EnrollmentStatus> enrollInSessions(Long userId, List<Long> sessionIds) {
+        List<Long> distinctSessionIds = distinct(sessionIds);
+
+        Map<Long, Integer> freeSeats = this.participationBatchRepository.lockSessions(distinctSessionIds);
+        if (!this.userRepository.existsById(userId)) {
+            throw new NotFoundException();
+        }
+
+        return enroll(distinctSessionIds.stream().map(sessionId -> new ParticipationKey(sessionId, userId)).collect(Collectors.toList()),
+                freeSeats, Set.of(userId));
+    }
+
+    /**
+     * Removes many users from the session or from its waitlist. The freed seats go to the head of the waitlist.
+     *
+     * @return the status of every distinct user id, in request order
+     */
+    @Transactional
+    @CacheEvict(cacheNames = SessionService.SESSIONS_CACHE, key = "#id")
+    public Map<ParticipationKey, EnrollmentStatus> unenrollUsers(Long id, List<Long> userIds) {
+        List<ParticipationKey> requested = distinct(userIds).stream()
+                .map(userId -> new ParticipationKey(id, userId))
+                .collect(Collectors.toList());
+
+        if (this.participationBatchRepository.lockSessions(List.of(id)).isEmpty()) {
+            throw new NotFoundException();
+        }
+        Set<ParticipationKey> participating = this.participationBatchRepository.findParticipations(requested);
+        Set<ParticipationKey> waiting = this.participationBatchRepository.findWaitlisted(requested);
+
+        Map<ParticipationKey, EnrollmentStatus> report = new LinkedHashMap<>();
+        List<ParticipationKey> leaving = new ArrayList<>();
+        List<ParticipationKey> leavingWaitlist = new ArrayList<>();
+        for (ParticipationKey key : requested) {
+            if (participating.contains(key)) {
+                leaving.add(key);
+                report.put(key, EnrollmentStatus.LEFT);
+            } else if (waiting.contains(key)) {
+                leavingWaitlist.add(key);
+                report.put(key, EnrollmentStatus.LEFT_WAITLIST);
+            } else {
+                report.put(key, EnrollmentStatus.NOT_ENROLLED);
+            }
+        }
+
+        this.participationBatchRepository.deleteParticipations(leaving);
+        this.participationBatchRepository.dequeue(leavingWaitlist);
+        this.outboxWriter.appendAll(OutboxEventType.PARTICIPANT_LEFT, leaving);
+        this.outboxWriter.appendAll(OutboxEventType.WAITLIST_LEFT, leavingWaitlist);
+        if (!leaving.isEmpty()) {
+            // as for a single cancellation, each freed seat changes hands when someone waits
+            List<ParticipationKey> promoted = promoteWaitlistHeads(id, leaving.size());
+            this.participationBatchRepository.insertParticipations(promoted);
+            this.participationBatchRepository.addParticipants(Map.of(id, promoted.size() - leaving.size()), LocalDateTime.now());
+            this.outboxWriter.appendAll(OutboxEventType.PARTICIPANT_PROMOTED, promoted);
+        }
+
+        return report;
+    }
+
+    // Dequeues heads until the seats are handed out or nobody waits. As in SessionService, a head already
+    // participating (added by a session update) leaves the waitlist without taking a seat.
+    private List<ParticipationKey> promoteWaitlistHeads(Long id, int seats) {
+        List<ParticipationKey> promoted = new ArrayList<>();
+        while (promoted.size() < seats) {
+            List<ParticipationKey> heads = this.participationBatchRepository.findWaitlistHeads(id, seats - promoted.size()).stream()
+                    .map(userId -> new ParticipationKey(id, userId))
+                    .collect(Collectors.toList());
+            if (heads.isEmpty()) {
+                break;
+            }
+
+            Set<ParticipationKey> participating = this.participationBatchRepository.findParticipations(heads);
+            this.participationBatchRepository.dequeue(heads);
+            heads.stream().filter(head -> !participating.contains(head)).forEach(promoted::add);
+        }
+
+        return promoted;
+    }
+
+    // The session rows must be locked before anything else is read: under REPEATABLE READ the first plain
+    // read fixes the snapshot, which then includes every join and cancellation that held the locks before.
+    private Map<ParticipationKey, EnrollmentStatus> enroll(List<ParticipationKey> requested,
+                                                           Map<Long, Integer> freeSeats,
+                                                           Set<Long> knownUserIds) {
+        List<ParticipationKey> candidates = requested.stream()
+                .filter(key -> freeSeats.containsKey(key.getSessionId()) && knownUserIds.contains(key.getUserId()))
+                .collect(Collectors.toList());
+        Set<ParticipationKey> participating = this.participationBatchRepository.findParticipations(candidates);
+        Set<ParticipationKey> waiting = this.participationBatchRepository.findWaitlisted(candidates);
+
+        Map<ParticipationKey, EnrollmentStatus> report = new LinkedHashMap<>();
+        List<ParticipationKey> seated = new ArrayList<>();
+        List<ParticipationKey> queued = new ArrayList<>();
+        Map<Long, Integer> seatsTaken = new HashMap<>();
+        for (ParticipationKey key : requested) {
+            EnrollmentStatus status;
+            if (!freeSeats.containsKey(key.getSessionId())) {
+                status = EnrollmentStatus.UNKNOWN_SESSION;
+            } else if (!knownUserIds.contains(key.getUserId())) {
+                status = EnrollmentStatus.UNKNOWN_USER;
+            } else if (participating.contains(key)) {
+                status = EnrollmentStatus.ALREADY_PARTICIPATING;
+            } else if (waiting.contains(key)) {
+                status = EnrollmentStatus.ALREADY_WAITLISTED;
+            } else if (freeSeats.get(key.getSessionId()) > seatsTaken.getOrDefault(key.getSessionId(), 0)) {
+                seatsTaken.merge(key.getSessionId(), 1, Integer::sum);
+                seated.add(key);
+                status = EnrollmentStatus.PARTICIPATING;
+            } else {
+                queued.add(key);
+                status = EnrollmentStatus.WAITLISTED;
+            }
+            report.put(key, status);
+        }
+
+        try {
+            this.participationBatchRepository.insertParticipations(seated);
+            this.participationBatchRepository.enqueue(queued);
+        } catch (DuplicateKeyException e) {
+            // a session update wrote participants without taking the session lock
+            throw new ConflictException("Participants changed concurrently");
+        }
+        if (!seatsTaken.isEmpty()) {
+            this.participationBatchRepository.addParticipants(seatsTaken, LocalDateTime.now());
+        }
+        this.outboxWriter.appendAll(OutboxEventType.PARTICIPANT_JOINED, seated);
+        this.outboxWriter.appendAll(OutboxEventType.PARTICIPANT_WAITLISTED, queued);
+
+        return report;
+    }
+
+    private static List<Long> distinct(List<Long> ids) {
+        if (ids == null || ids.isEmpty() || ids.size() > MAX_IDS || ids.stream().anyMatch(Objects::isNull)) {
+            throw new BadRequestException("Between 1 and " + MAX_IDS + " ids are expected");
+        }
+
+        return ids.stream().distinct().collect(Collectors.toList());
+    }
+}
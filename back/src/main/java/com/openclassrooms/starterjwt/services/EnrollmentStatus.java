@@ -0,0 +1,16 @@
+package com.openclassrooms.starterjwt.services;
+
+/**
+ * Outcome of one id of a bulk enrollment or unenrollment, see {@link EnrollmentService}.
+ */
+public enum EnrollmentStatus {
+    PARTICIPATING,
+    WAITLISTED,
+    ALREADY_PARTICIPATING,
+    ALREADY_WAITLISTED,
+    UNKNOWN_SESSION,
+    UNKNOWN_USER,
+    LEFT,
+    LEFT_WAITLIST,
+    NOT_ENROLLED
+}
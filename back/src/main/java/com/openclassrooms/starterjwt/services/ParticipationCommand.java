@@ -0,0 +1,28 @@
+package com.openclassrooms.starterjwt.services;
+
+import lombok.Value;
+
+/**
+ * A participate or cancel request queued by {@link ParticipationCommandQueue}.
+ */
+@Value
+public class ParticipationCommand {
+    public enum Type {
+        JOIN,
+        LEAVE
+    }
+
+    Type type;
+
+    Long sessionId;
+
+    Long userId;
+
+    public static ParticipationCommand join(Long sessionId, Long userId) {
+        return new ParticipationCommand(Type.JOIN, sessionId, userId);
+    }
+
+    public static ParticipationCommand leave(Long sessionId, Long userId) {
+        return new ParticipationCommand(Type.LEAVE, sessionId, userId);
+    }
+}
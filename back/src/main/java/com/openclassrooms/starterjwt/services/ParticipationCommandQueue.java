@@ -0,0 +1,286 @@
+package com.openclassrooms.starterjwt.services;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.openclassrooms.starterjwt.exception.BadRequestException;
+import com.openclassrooms.starterjwt.exception.NotFoundException;
+import com.openclassrooms.starterjwt.exception.ServiceUnavailableException;
+import com.openclassrooms.starterjwt.repository.ParticipationBatchRepository;
+import com.openclassrooms.starterjwt.repository.ParticipationKey;
+import lombok.extern.log4j.Log4j2;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+
+/**
+ * Optional write-behind mode of participate and cancel, for bursts of joins at class release.
+ * <p>
+ * A command is checked against an in-memory view of each session's participants and waitlist, queued and
+ * acknowledged without touching the database. A single writer thread drains the queue every flush interval
+ * and applies each session's consecutive joins, or cancellations, as one batch through {@link EnrollmentService}.
+ * The view is updated and the command queued under the session's view entry lock, and the writer keeps queue
+ * order within a session: the commands of a session reach the database in the order they were accepted.
+ * <p>
+ * A batch that fails is retried, with a growing delay, before the later commands of its session: after
+ * max-attempts it is dropped and logged as an error. A command the service rejects (bad request, session not
+ * found) would fail every attempt: it is dropped at once, alone. The commands held for a retry count against the queue
+ * size, so a session failing again and again ends in 503 rather than in an unbounded backlog.
+ * Commands still queued when the process dies are lost, a graceful shutdown flushes them.
+ * The view can lag behind changes made outside the queue, the writer's statements stay the source of truth.
+ */
+@Component
+@Log4j2
+public class ParticipationCommandQueue {
+    private final EnrollmentService enrollmentService;
+
+    private final ParticipationBatchRepository participationBatchRepository;
+
+    private final boolean enabled;
+
+    private final int batchSize;
+
+    private final long flushIntervalMs;
+
+    private final int maxAttempts;
+
+    private final long retryBackoffMs;
+
+    private final int queueSize;
+
+    private final BlockingQueue<ParticipationCommand> queue;
+
+    // commands taken from the queue and not written yet, read by submit for the backpressure
+    private final AtomicInteger heldCommands = new AtomicInteger();
+
+    // session id -> users participating or waiting, as accepted commands will leave them
+    private final Cache<Long, Set<Long>> membersBySession;
+
+    // session id -> commands of a failed batch and those queued after it, only used by the writer
+    private final Map<Long, Retry> retries = new LinkedHashMap<>();
+
+    private ScheduledExecutorService writer;
+
+    public ParticipationCommandQueue(EnrollmentService enrollmentService,
+                                     ParticipationBatchRepository participationBatchRepository,
+                                     @Value("${oc.app.participation.write-behind.enabled:false}") boolean enabled,
+                                     @Value("${oc.app.participation.write-behind.queue-size:10000}") int queueSize,
+                                     @Value("${oc.app.participation.write-behind.batch-size:500}") int batchSize,
+                                     @Value("${oc.app.participation.write-behind.flush-interval-ms:50}") long flushIntervalMs,
+                                     @Value("${oc.app.participation.write-behind.view-size:10000}") long viewSize,
+                                     @Value("${oc.app.participation.write-behind.max-attempts:5}") int maxAttempts,
+                                     @Value("${oc.app.participation.write-behind.retry-backoff-ms:200}") long retryBackoffMs) {
+        this.enrollmentService = enrollmentService;
+        this.participationBatchRepository = participationBatchRepository;
+        this.enabled = enabled;
+        this.batchSize = Math.min(batchSize, EnrollmentService.MAX_IDS);
+        this.flushIntervalMs = flushIntervalMs;
+        this.maxAttempts = maxAttempts;
+        this.retryBackoffMs = retryBackoffMs;
+        this.queueSize = queueSize;
+        this.queue = new ArrayBlockingQueue<>(queueSize);
+        this.membersBySession = Caffeine.newBuilder()
+                .maximumSize(viewSize)
+                .expireAfterAccess(Duration.ofMinutes(10))
+                .build();
+    }
+
+    public boolean isEnabled() {
+        return this.enabled;
+    }
+
+    @PostConstruct
+    public void start() {
+        if (this.enabled) {
+            this.writer = Executors.newSingleThreadScheduledExecutor(runnable -> new Thread(runnable, "participation-writer"));
+            this.writer.scheduleWithFixedDelay(this::flushAll, this.flushIntervalMs, this.flushIntervalMs, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    @PreDestroy
+    public void stop() throws InterruptedException {
+        if (this.writer != null) {
+            this.writer.shutdown();
+            this.writer.awaitTermination(30, TimeUnit.SECONDS);
+            flushAll();
+            // last chance for the batches waiting to be retried
+            flush(true);
+        }
+    }
+
+    /**
+     * Accepts the command for later writing.
+     *
+     * @throws NotFoundException           when the session does not exist
+     * @throws BadRequestException         when the user already participates or waits (join), or neither (leave)
+     * @throws ServiceUnavailableException when the queue, with the commands held for a retry, is full
+     */
+    public void submit(ParticipationCommand command) {
+        this.membersBySession.asMap().compute(command.getSessionId(), (sessionId, members) -> {
+            Set<Long> current = members != null ? members : this.participationBatchRepository.findMembers(sessionId)
+                    .orElseThrow(NotFoundException::new);
+
+            boolean joining = command.getType() == ParticipationCommand.Type.JOIN;
+            if (joining == current.contains(command.getUserId())) {
+                throw new BadRequestException();
+            }
+            if (this.heldCommands.get() + this.queue.size() >= this.queueSize || !this.queue.offer(command)) {
+                throw new ServiceUnavailableException("Participation queue is full");
+            }
+
+            if (joining) {
+                current.add(command.getUserId());
+            } else {
+                current.remove(command.getUserId());
+            }
+            return current;
+        });
+    }
+
+    /**
+     * Writes up to batch-size queued commands, after the failed batches due for a retry,
+     * normally called by the writer thread only.
+     *
+     * @return the number of commands taken from the queue
+     */
+    public int flush() {
+        return flush(false);
+    }
+
+    private int flush(boolean ignoreBackoff) {
+        List<ParticipationCommand> batch = new ArrayList<>(this.batchSize);
+        this.queue.drainTo(batch, this.batchSize);
+        this.heldCommands.addAndGet(batch.size());
+
+        Map<Long, List<ParticipationCommand>> commandsBySession = new LinkedHashMap<>();
+        this.retries.forEach((sessionId, retry) -> commandsBySession.put(sessionId, new ArrayList<>(retry.commands)));
+        batch.forEach(command -> commandsBySession.computeIfAbsent(command.getSessionId(), sessionId -> new ArrayList<>()).add(command));
+
+        long now = System.currentTimeMillis();
+        try {
+            commandsBySession.forEach((sessionId, commands) -> {
+                Retry retry = this.retries.get(sessionId);
+                if (retry != null && !ignoreBackoff && now < retry.nextAttemptAt) {
+                    // the failed batch goes first: the later commands of the session wait with it
+                    retry.commands = commands;
+                    return;
+                }
+
+                List<ParticipationCommand> unwritten = write(sessionId, commands);
+                if (unwritten.isEmpty()) {
+                    this.retries.remove(sessionId);
+                } else {
+                    retryLater(sessionId, unwritten, retry == null ? 1 : retry.attempts + 1, now);
+                }
+            });
+        } finally {
+            this.heldCommands.set(this.retries.values().stream().mapToInt(retry -> retry.commands.size()).sum());
+        }
+
+        return batch.size();
+    }
+
+    private void flushAll() {
+        try {
+            while (flush() > 0) {
+                // drain what was queued meanwhile
+            }
+        } catch (RuntimeException e) {
+            log.error("Participation writer failed", e);
+        }
+    }
+
+    /**
+     * Writes the commands, up to batch-size consecutive commands of the same type making one batch, in queue order.
+     *
+     * @return the commands of the batch that failed and the ones after it, empty when all were written or dropped
+     */
+    private List<ParticipationCommand> write(Long sessionId, List<ParticipationCommand> commands) {
+        int from = 0;
+        int singlesUntil = 0;
+        while (from < commands.size()) {
+            ParticipationCommand.Type type = commands.get(from).getType();
+            int limit = from < singlesUntil ? 1 : this.batchSize;
+            int to = from;
+            while (to < commands.size() && to - from < limit && commands.get(to).getType() == type) {
+                to++;
+            }
+            List<ParticipationCommand> run = commands.subList(from, to);
+            List<Long> userIds = run.stream().map(ParticipationCommand::getUserId).collect(Collectors.toList());
+
+            try {
+                Map<ParticipationKey, EnrollmentStatus> statuses = type == ParticipationCommand.Type.JOIN
+                        ? this.enrollmentService.enrollUsers(sessionId, userIds)
+                        : this.enrollmentService.unenrollUsers(sessionId, userIds);
+                statuses.forEach((key, status) -> {
+                    if (status == EnrollmentStatus.UNKNOWN_USER) {
+                        forget(key);
+                    }
+                });
+            } catch (BadRequestException e) {
+                if (run.size() > 1) {
+                    // one bad command fails the whole batch: write them one by one to drop that one only
+                    singlesUntil = to;
+                    continue;
+                }
+                drop(sessionId, run, e.getMessage());
+            } catch (NotFoundException e) {
+                drop(sessionId, commands.subList(from, commands.size()), "the session no longer exists");
+                return List.of();
+            } catch (RuntimeException e) {
+                log.warn("Could not write {} {} commands of session {}", userIds.size(), type, sessionId, e);
+                return new ArrayList<>(commands.subList(from, commands.size()));
+            }
+            from = to;
+        }
+
+        return List.of();
+    }
+
+    private void retryLater(Long sessionId, List<ParticipationCommand> unwritten, int attempts, long now) {
+        if (attempts >= this.maxAttempts) {
+            this.retries.remove(sessionId);
+            drop(sessionId, unwritten, "after " + attempts + " attempts");
+            return;
+        }
+
+        Retry retry = new Retry();
+        retry.commands = unwritten;
+        retry.attempts = attempts;
+        retry.nextAttemptAt = now + (this.retryBackoffMs << Math.min(attempts - 1, 10));
+        this.retries.put(sessionId, retry);
+    }
+
+    private void drop(Long sessionId, List<ParticipationCommand> commands, String reason) {
+        log.error("Dropped {} participation commands of session {}, {}: {}", commands.size(), sessionId, reason, commands);
+        // the view holds the dropped commands: reload it on next use
+        this.membersBySession.invalidate(sessionId);
+    }
+
+    private void forget(ParticipationKey key) {
+        this.membersBySession.asMap().computeIfPresent(key.getSessionId(), (sessionId, members) -> {
+            members.remove(key.getUserId());
+            return members;
+        });
+    }
+
+    private static final class Retry {
+        private List<ParticipationCommand> commands;
+        private int attempts;
+        private long nextAttemptAt;
+    }
+}
@@ -1,78 +1,423 @@
 package com.openclassrooms.starterjwt.services;
 
 import com.openclassrooms.starterjwt.exception.BadRequestException;
+import com.openclassrooms.starterjwt.exception.ConflictException;
 import com.openclassrooms.starterjwt.exception.NotFoundException;
 import com.openclassrooms.starterjwt.models.Session;
 import com.openclassrooms.starterjwt.models.User;
+import com.openclassrooms.starterjwt.models.WaitlistEntry;
+import com.openclassrooms.starterjwt.outbox.OutboxEventType;
+import com.openclassrooms.starterjwt.outbox.OutboxWriter;
+import com.openclassrooms.starterjwt.pagination.KeysetCursor;
+import com.openclassrooms.starterjwt.pagination.KeysetPage;
 import com.openclassrooms.starterjwt.repository.SessionRepository;
 import com.openclassrooms.starterjwt.repository.UserRepository;
+import com.openclassrooms.starterjwt.repository.WaitlistRepository;
+import com.openclassrooms.starterjwt.repository.projection.CollectionVersion;
+import com.openclassrooms.starterjwt.repository.projection.SessionSummaryView;
+import com.openclassrooms.starterjwt.search.SessionSearchIndex;
+import org.springframework.cache.annotation.CacheEvict;
+import org.springframework.cache.annotation.Cacheable;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 
+import javax.persistence.EntityManager;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.Set;
+import java.util.function.Consumer;
+import java.util.function.Function;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 @Service
 public class SessionService {
+    public static final int DEFAULT_PAGE_SIZE = 20;
+
+    public static final int MAX_PAGE_SIZE = 100;
+
+    public static final String SESSIONS_CACHE = "sessions";
+
+    public static final int EXPORT_CHUNK_SIZE = 500;
+
+    // MySQL DATETIME bounds, used when a date range is open on one side
+    static final Date MIN_DATE = Date.from(Instant.parse("1000-01-01T00:00:00Z"));
+
+    static final Date MAX_DATE = Date.from(Instant.parse("9999-12-31T23:59:59Z"));
+
     private final SessionRepository sessionRepository;
 
     private final UserRepository userRepository;
 
-    public SessionService(SessionRepository sessionRepository, UserRepository userRepository) {
+    private final WaitlistRepository waitlistRepository;
+
+    private final EntityManager entityManager;
+
+    private final SessionSearchIndex sessionSearchIndex;
+
+    private final OutboxWriter outboxWriter;
+
+    public SessionService(SessionRepository sessionRepository,
+                          UserRepository userRepository,
+                          WaitlistRepository waitlistRepository,
+                          EntityManager entityManager,
+                          SessionSearchIndex sessionSearchIndex,
+                          OutboxWriter outboxWriter) {
         this.sessionRepository = sessionRepository;
         this.userRepository = userRepository;
+        this.waitlistRepository = waitlistRepository;
+        this.entityManager = entityManager;
+        this.sessionSearchIndex = sessionSearchIndex;
+        this.outboxWriter = outboxWriter;
     }
 
+    @Transactional
+    @CacheEvict(cacheNames = SESSIONS_CACHE, key = "#result.id")
     public Session create(Session session) {
-        return this.sessionRepository.save(session);
+        session.setParticipantCount(checkCapacity(session.getCapacity(), session.getUsers()));
+        Session created = this.sessionRepository.save(session);
+        afterCommit(() -> this.sessionSearchIndex.index(created));
+        this.outboxWriter.appendSession(OutboxEventType.SESSION_CREATED, created);
+
+        return created;
     }
 
+    @Transactional
+    @CacheEvict(cacheNames = SESSIONS_CACHE, key = "#id")
     public void delete(Long id) {
         this.sessionRepository.deleteById(id);
+        afterCommit(() -> this.sessionSearchIndex.remove(id));
+        this.outboxWriter.append(OutboxEventType.SESSION_DELETED, id, null);
     }
 
+    @Transactional(readOnly = true)
     public List<Session> findAll() {
-        return this.sessionRepository.findAll();
+        return this.sessionRepository.findAllWithParticipants();
+    }
+
+    /**
+     * Hands every session, participants loaded, to the consumer by chunks of {@link #EXPORT_CHUNK_SIZE}.
+     * The persistence context is cleared after each chunk so memory does not grow with the table:
+     * the sessions of a chunk must not be used once the consumer returns.
+     */
+    @Transactional(readOnly = true)
+    public void forEachChunk(Consumer<List<Session>> chunkConsumer) {
+        scanChunks(chunkConsumer, true);
+    }
+
+    /**
+     * Same as {@link #forEachChunk(Consumer)}, participants not loaded: for consumers of the session's own columns.
+     */
+    @Transactional(readOnly = true)
+    public void forEachChunkWithoutParticipants(Consumer<List<Session>> chunkConsumer) {
+        scanChunks(chunkConsumer, false);
+    }
+
+    private void scanChunks(Consumer<List<Session>> chunkConsumer, boolean withParticipants) {
+        try (Stream<Session> sessions = this.sessionRepository.streamAll()) {
+            Iterator<Session> iterator = sessions.iterator();
+            List<Session> chunk = new ArrayList<>(EXPORT_CHUNK_SIZE);
+
+            while (iterator.hasNext()) {
+                chunk.add(iterator.next());
+
+                if (chunk.size() == EXPORT_CHUNK_SIZE || !iterator.hasNext()) {
+                    if (withParticipants) {
+                        this.sessionRepository.fetchParticipants(chunk.stream().map(Session::getId).collect(Collectors.toList()));
+                    }
+                    chunkConsumer.accept(chunk);
+                    this.entityManager.clear();
+                    chunk = new ArrayList<>(EXPORT_CHUNK_SIZE);
+                }
+            }
+        }
+    }
+
+    /**
+     * Returns a keyset page of the sessions dated in [from, to), either bound being optional.
+     */
+    @Transactional(readOnly = true)
+    public KeysetPage<Session> findPage(String cursor, Integer size, Date from, Date to) {
+        int pageSize = pageSize(size);
+        Date lowerBound = lowerBound(from, to);
+        Date upperBound = upperBound(to);
+
+        // fetch one extra row to know whether a next page exists
+        Pageable limit = PageRequest.of(0, pageSize + 1);
+        List<Session> sessions;
+        if (cursor == null) {
+            sessions = this.sessionRepository.findFirstPage(lowerBound, upperBound, limit);
+        } else {
+            KeysetCursor after = KeysetCursor.decode(cursor);
+            sessions = this.sessionRepository.findPageAfter(lowerBound, upperBound, after.getDate(), after.getId(), limit);
+        }
+
+        KeysetPage<Session> page = KeysetPage.of(sessions, pageSize, session -> new KeysetCursor(session.getDate(), session.getId()));
+        if (!page.getItems().isEmpty()) {
+            this.sessionRepository.fetchParticipants(page.getItems().stream().map(Session::getId).collect(Collectors.toList()));
+        }
+
+        return page;
+    }
+
+    /**
+     * Returns a keyset page of the sessions the user participates in, dated in [from, to).
+     */
+    public KeysetPage<SessionSummaryView> findBookedPage(Long userId, String cursor, Integer size, Date from, Date to) {
+        int pageSize = pageSize(size);
+        Date lowerBound = lowerBound(from, to);
+        Date upperBound = upperBound(to);
+        if (!this.userRepository.existsById(userId)) {
+            throw new NotFoundException();
+        }
+
+        Pageable limit = PageRequest.of(0, pageSize + 1);
+        List<SessionSummaryView> sessions;
+        if (cursor == null) {
+            sessions = this.sessionRepository.findBookedFirstPage(userId, lowerBound, upperBound, limit);
+        } else {
+            KeysetCursor after = KeysetCursor.decode(cursor);
+            sessions = this.sessionRepository.findBookedPageAfter(userId, lowerBound, upperBound, after.getDate(), after.getId(), limit);
+        }
+
+        return KeysetPage.of(sessions, pageSize, session -> new KeysetCursor(session.getDate(), session.getId()));
+    }
+
+    public List<SessionSummaryView> findAllSummaries(Long userId) {
+        return this.sessionRepository.findAllSummaries(userId);
+    }
+
+    /**
+     * Returns the sessions whose name or description match the query, most relevant first.
+     */
+    @Transactional(readOnly = true)
+    public List<Session> search(String query, Integer size) {
+        List<Long> ids = this.sessionSearchIndex.search(query, pageSize(size));
+        if (ids.isEmpty()) {
+            return List.of();
+        }
+
+        Map<Long, Session> sessionsById = this.sessionRepository.findAllWithParticipantsByIdIn(ids).stream()
+                .collect(Collectors.toMap(Session::getId, Function.identity()));
+
+        return ids.stream().map(sessionsById::get).filter(Objects::nonNull).collect(Collectors.toList());
+    }
+
+    public CollectionVersion getCollectionVersion() {
+        return this.sessionRepository.findCollectionVersion();
     }
 
+    @Cacheable(cacheNames = SESSIONS_CACHE, key = "#id", unless = "#result == null")
     public Session getById(Long id) {
-        return this.sessionRepository.findById(id).orElse(null);
+        return this.sessionRepository.findWithParticipantsById(id).orElse(null);
     }
 
+    /**
+     * Copies the new state onto the managed session. Participants are diffed against the loaded set
+     * so only the PARTICIPATE rows of users who joined or left are written.
+     */
+    @Transactional
+    @CacheEvict(cacheNames = SESSIONS_CACHE, key = "#id")
     public Session update(Long id, Session session) {
-        session.setId(id);
-        return this.sessionRepository.save(session);
+        Session existing = this.sessionRepository.findWithParticipantsById(id).orElseThrow(NotFoundException::new);
+        Set<User> participants = session.getUsers() == null ? Set.of() : session.getUsers();
+        int participantCount = checkCapacity(session.getCapacity(), participants);
+        boolean capacityRaised = existing.getCapacity() != null
+                && (session.getCapacity() == null || session.getCapacity() > existing.getCapacity());
+
+        existing.setName(session.getName())
+                .setDate(session.getDate())
+                .setDescription(session.getDescription())
+                .setTeacher(session.getTeacher())
+                .setCapacity(session.getCapacity())
+                // @UpdateTimestamp ignores collection-only changes, which still change the representation
+                .setUpdatedAt(LocalDateTime.now());
+        boolean participantsRemoved = existing.getUsers().retainAll(participants);
+        boolean participantsChanged = existing.getUsers().addAll(participants) || participantsRemoved;
+        if (participantsChanged) {
+            this.sessionRepository.recountParticipants(id);
+            existing.setParticipantCount(participantCount);
+        }
+        if ((participantsRemoved || capacityRaised) && this.waitlistRepository.findFirstBySessionIdOrderByIdAsc(id).isPresent()) {
+            // the freed seats go to the waitlist first, in order, as on cancellation
+            this.entityManager.flush();
+            promoteIntoFreeSeats(id);
+            this.entityManager.refresh(existing);
+        }
+        afterCommit(() -> this.sessionSearchIndex.index(existing));
+        this.outboxWriter.appendSession(OutboxEventType.SESSION_UPDATED, existing);
+
+        return existing;
     }
 
-    public void participate(Long id, Long userId) {
-        Session session = this.sessionRepository.findById(id).orElse(null);
-        User user = this.userRepository.findById(userId).orElse(null);
-        if (session == null || user == null) {
+    /**
+     * Adds the user to the session, or to the end of its waitlist when the session is full.
+     * The seat is taken first: the session row lock it holds until commit orders concurrent joins
+     * of one session, and the PARTICIPATE insert never waits on a lock held by another join.
+     */
+    @Transactional
+    @CacheEvict(cacheNames = SESSIONS_CACHE, key = "#id")
+    public ParticipationStatus participate(Long id, Long userId) {
+        if (!this.sessionRepository.existsById(id) || !this.userRepository.existsById(userId)) {
             throw new NotFoundException();
         }
 
-        boolean alreadyParticipate = session.getUsers().stream().anyMatch(o -> o.getId().equals(userId));
-        if(alreadyParticipate) {
-            throw new BadRequestException();
+        // also bumps updated_at: participants are part of the session representation
+        if (this.sessionRepository.reserveSeat(id, LocalDateTime.now()) == 0) {
+            // full: hold the session row, then look again as a cancellation may have freed a seat meanwhile
+            this.sessionRepository.touch(id, LocalDateTime.now());
+            if (this.sessionRepository.reserveSeat(id, LocalDateTime.now()) == 0) {
+                if (this.waitlistRepository.enqueue(id, userId) == 0) {
+                    throw new BadRequestException();
+                }
+                this.outboxWriter.append(OutboxEventType.PARTICIPANT_WAITLISTED, id, userId);
+
+                return ParticipationStatus.WAITLISTED;
+            }
         }
 
-        session.getUsers().add(user);
+        int inserted;
+        try {
+            inserted = this.sessionRepository.addParticipant(id, userId);
+        } catch (DataIntegrityViolationException e) {
+            // the primary key caught a duplicate the NOT EXISTS guard did not see
+            inserted = 0;
+        }
+        if (inserted == 0) {
+            // rolls back the seat taken above
+            throw new BadRequestException();
+        }
+        this.outboxWriter.append(OutboxEventType.PARTICIPANT_JOINED, id, userId);
 
-        this.sessionRepository.save(session);
+        return ParticipationStatus.PARTICIPATING;
     }
 
+    /**
+     * Removes the user from the session and hands the freed seat to the head of the waitlist,
+     * or removes the user from the waitlist.
+     */
+    @Transactional
+    @CacheEvict(cacheNames = SESSIONS_CACHE, key = "#id")
     public void noLongerParticipate(Long id, Long userId) {
-        Session session = this.sessionRepository.findById(id).orElse(null);
-        if (session == null) {
+        // same lock order as participate: session row first, so cancellations of a session promote one at a time
+        if (this.sessionRepository.touch(id, LocalDateTime.now()) == 0) {
             throw new NotFoundException();
         }
 
-        boolean alreadyParticipate = session.getUsers().stream().anyMatch(o -> o.getId().equals(userId));
-        if(!alreadyParticipate) {
+        if (this.sessionRepository.removeParticipant(id, userId) == 1) {
+            this.outboxWriter.append(OutboxEventType.PARTICIPANT_LEFT, id, userId);
+            promoteOrReleaseSeat(id);
+        } else if (this.waitlistRepository.dequeue(id, userId) == 1) {
+            this.outboxWriter.append(OutboxEventType.WAITLIST_LEFT, id, userId);
+        } else {
             throw new BadRequestException();
         }
+    }
+
+    /**
+     * Returns the 1-based position of the user in the session's waitlist.
+     */
+    public long getWaitlistPosition(Long id, Long userId) {
+        long position = this.waitlistRepository.findPosition(id, userId);
+        if (position == 0) {
+            throw new NotFoundException();
+        }
+
+        return position;
+    }
+
+    // must run under the session row lock taken by noLongerParticipate
+    private void promoteOrReleaseSeat(Long id) {
+        if (!promoteHead(id)) {
+            this.sessionRepository.releaseSeat(id, LocalDateTime.now());
+        }
+    }
+
+    // takes each free seat, the seat update holding the session row lock, and hands it to the waitlist head
+    private void promoteIntoFreeSeats(Long id) {
+        while (this.sessionRepository.reserveSeat(id, LocalDateTime.now()) == 1) {
+            if (!promoteHead(id)) {
+                this.sessionRepository.releaseSeat(id, LocalDateTime.now());
+                return;
+            }
+        }
+    }
+
+    /**
+     * Moves the head of the waitlist into the session, on a seat already counted.
+     *
+     * @return false when nobody was waiting
+     */
+    private boolean promoteHead(Long id) {
+        Optional<WaitlistEntry> next;
+        while ((next = this.waitlistRepository.findFirstBySessionIdOrderByIdAsc(id)).isPresent()) {
+            this.waitlistRepository.dequeue(id, next.get().getUserId());
+
+            // a head already participating, e.g. added by an update, does not need the seat: skip it
+            if (this.sessionRepository.addParticipant(id, next.get().getUserId()) == 1) {
+                this.outboxWriter.append(OutboxEventType.PARTICIPANT_PROMOTED, id, next.get().getUserId());
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    // the search index is not transactional: it only takes the changes once committed, a rollback leaves it as is
+    private static void afterCommit(Runnable indexChange) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            indexChange.run();
+            return;
+        }
+
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                indexChange.run();
+            }
+        });
+    }
+
+    private static int checkCapacity(Integer capacity, Set<User> participants) {
+        int participantCount = participants == null ? 0 : participants.size();
+        if (capacity != null && participantCount > capacity) {
+            throw new ConflictException("Session is full");
+        }
 
-        session.setUsers(session.getUsers().stream().filter(user -> !user.getId().equals(userId)).collect(Collectors.toList()));
+        return participantCount;
+    }
+
+    private static Date lowerBound(Date from, Date to) {
+        Date lowerBound = from == null ? MIN_DATE : from;
+        if (!lowerBound.before(upperBound(to))) {
+            throw new BadRequestException("from must be before to");
+        }
+
+        return lowerBound;
+    }
+
+    private static Date upperBound(Date to) {
+        return to == null ? MAX_DATE : to;
+    }
+
+    private static int pageSize(Integer size) {
+        int pageSize = size == null ? DEFAULT_PAGE_SIZE : Math.min(size, MAX_PAGE_SIZE);
+        if (pageSize < 1) {
+            throw new BadRequestException();
+        }
 
-        this.sessionRepository.save(session);
+        return pageSize;
     }
 }
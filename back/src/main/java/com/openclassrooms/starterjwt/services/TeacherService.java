@@ -2,6 +2,7 @@ package com.openclassrooms.starterjwt.services;
 
 import com.openclassrooms.starterjwt.models.Teacher;
 import com.openclassrooms.starterjwt.repository.TeacherRepository;
+import com.openclassrooms.starterjwt.repository.projection.CollectionVersion;
 import org.springframework.stereotype.Service;
 
 import java.util.List;
@@ -18,7 +19,15 @@ public class TeacherService {
         return this.teacherRepository.findAll();
     }
 
+    public CollectionVersion getCollectionVersion() {
+        return this.teacherRepository.findCollectionVersion();
+    }
+
     public Teacher findById(Long id) {
         return this.teacherRepository.findById(id).orElse(null);
     }
+
+    public List<Teacher> findAllById(List<Long> ids) {
+        return this.teacherRepository.findAllById(ids);
+    }
 }
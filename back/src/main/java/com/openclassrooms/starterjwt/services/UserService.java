@@ -1,22 +1,84 @@
 package com.openclassrooms.starterjwt.services;
 
+import com.openclassrooms.starterjwt.exception.BadRequestException;
+import com.openclassrooms.starterjwt.exception.NotFoundException;
 import com.openclassrooms.starterjwt.models.User;
 import com.openclassrooms.starterjwt.repository.UserRepository;
+import com.openclassrooms.starterjwt.security.services.TokenVersionService;
+import com.openclassrooms.starterjwt.security.services.UserDetailsServiceImpl;
 import org.springframework.stereotype.Service;
 
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.stream.Collectors;
+
 @Service
 public class UserService {
+    // keeps the generated IN (...) list well below driver and optimizer limits
+    public static final int ID_BATCH_SIZE = 500;
+
     private final UserRepository userRepository;
 
-    public UserService(UserRepository userRepository) {
+    private final UserDetailsServiceImpl userDetailsService;
+
+    private final TokenVersionService tokenVersionService;
+
+    public UserService(UserRepository userRepository,
+                       UserDetailsServiceImpl userDetailsService,
+                       TokenVersionService tokenVersionService) {
         this.userRepository = userRepository;
+        this.userDetailsService = userDetailsService;
+        this.tokenVersionService = tokenVersionService;
     }
 
     public void delete(Long id) {
+        Optional<String> email = this.userRepository.findEmailById(id);
         this.userRepository.deleteById(id);
+        // after the commit of deleteById: a lookup in between cannot cache the deleted user again
+        email.ifPresent(this.userDetailsService::evict);
+        this.tokenVersionService.evict(id);
+    }
+
+    /**
+     * Signs the user out everywhere: the tokens issued so far are rejected.
+     */
+    public void revokeTokens(Long id) {
+        if (!this.tokenVersionService.revoke(id)) {
+            throw new NotFoundException();
+        }
+        this.userRepository.findEmailById(id).ifPresent(this.userDetailsService::evict);
     }
 
     public User findById(Long id) {
         return this.userRepository.findById(id).orElse(null);
     }
+
+    /**
+     * Resolves the given ids with one query per {@link #ID_BATCH_SIZE} ids and returns the users
+     * in the same order as the ids.
+     *
+     * @throws BadRequestException listing every id that does not match a user
+     */
+    public List<User> findAllById(List<Long> ids) {
+        List<Long> distinctIds = ids.stream().filter(Objects::nonNull).distinct().collect(Collectors.toList());
+        Map<Long, User> usersById = new HashMap<>();
+
+        for (int from = 0; from < distinctIds.size(); from += ID_BATCH_SIZE) {
+            List<Long> batch = distinctIds.subList(from, Math.min(from + ID_BATCH_SIZE, distinctIds.size()));
+            this.userRepository.findAllById(batch).forEach(user -> usersById.put(user.getId(), user));
+        }
+
+        List<Long> missingIds = ids.stream()
+                .filter(id -> !usersById.containsKey(id))
+                .distinct()
+                .collect(Collectors.toList());
+        if (!missingIds.isEmpty()) {
+            throw new BadRequestException("Unknown user ids: " + missingIds);
+        }
+
+        return ids.stream().map(usersById::get).collect(Collectors.toList());
+    }
 }
@@ -1,6 +1,9 @@
 package com.openclassrooms.starterjwt.integration;
 
+import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.Tag;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.cache.CacheManager;
 import org.springframework.test.context.ActiveProfiles;
 import org.springframework.test.context.DynamicPropertyRegistry;
 import org.springframework.test.context.DynamicPropertySource;
@@ -11,6 +14,9 @@ import org.testcontainers.junit.jupiter.Testcontainers;
 @Testcontainers
 public abstract class BaseIntegrationIT {
 
+    @Autowired(required = false)
+    private CacheManager cacheManager;
+
     @DynamicPropertySource
     static void overrideProps(DynamicPropertyRegistry registry) {
         MySQLTestContainer mySqlContainer = MySQLTestContainer.getInstance();
@@ -19,4 +25,13 @@ public abstract class BaseIntegrationIT {
         registry.add("spring.datasource.password", mySqlContainer::getPassword);
     }
 
-}
\ No newline at end of file
+    // tests delete their rows straight from the repositories, which skips the evictions of the services:
+    // a user created again with the same email must not be resolved from the previous test's entry
+    @AfterEach
+    public void clearCaches() {
+        if (cacheManager != null) {
+            cacheManager.getCacheNames().forEach(name -> cacheManager.getCache(name).clear());
+        }
+    }
+
+}
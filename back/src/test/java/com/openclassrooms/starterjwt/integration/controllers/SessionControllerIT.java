@@ -1,12 +1,17 @@
 package com.openclassrooms.starterjwt.integration.controllers;
 
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.tuple;
 
 import java.util.Date;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 
+import javax.persistence.EntityManagerFactory;
+
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
 import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Tag;
@@ -14,6 +19,7 @@ import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.boot.test.web.client.TestRestTemplate;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.http.HttpEntity;
 import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpMethod;
@@ -25,15 +31,20 @@ import org.springframework.security.authentication.UsernamePasswordAuthenticatio
 import org.springframework.security.core.Authentication;
 import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
 
+import com.openclassrooms.starterjwt.dto.EnrollmentResultDto;
 import com.openclassrooms.starterjwt.dto.SessionDto;
 import com.openclassrooms.starterjwt.integration.BaseIntegrationIT;
+import com.openclassrooms.starterjwt.models.OutboxEvent;
 import com.openclassrooms.starterjwt.models.Session;
 import com.openclassrooms.starterjwt.models.Teacher;
 import com.openclassrooms.starterjwt.models.User;
+import com.openclassrooms.starterjwt.outbox.OutboxEventType;
+import com.openclassrooms.starterjwt.repository.OutboxRepository;
 import com.openclassrooms.starterjwt.repository.SessionRepository;
 import com.openclassrooms.starterjwt.repository.TeacherRepository;
 import com.openclassrooms.starterjwt.repository.UserRepository;
 import com.openclassrooms.starterjwt.security.jwt.JwtUtils;
+import com.openclassrooms.starterjwt.services.EnrollmentStatus;
 
 @Tag("integration")
 @SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
@@ -51,6 +62,9 @@ public class SessionControllerIT extends BaseIntegrationIT {
     @Autowired
     private TeacherRepository teacherRepository;
 
+    @Autowired
+    private OutboxRepository outboxRepository;
+
     @Autowired
     private JwtUtils jwtUtils;
 
@@ -60,6 +74,9 @@ public class SessionControllerIT extends BaseIntegrationIT {
     @Autowired
     private BCryptPasswordEncoder bCryptPasswordEncoder;
 
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
     private User user;
     private String token;
     private Session session;
@@ -124,12 +141,13 @@ public class SessionControllerIT extends BaseIntegrationIT {
     @AfterEach
     public void clean() {
         // Détacher les utilisateurs des sessions
-        List<Session> sessions = sessionRepository.findAll();
+        List<Session> sessions = sessionRepository.findAllWithParticipants();
         for (Session session : sessions) {
             session.getUsers().clear();
         }
         sessionRepository.deleteAll();
         userRepository.deleteAll();
+        outboxRepository.deleteAll();
     }
 
     @Test
@@ -226,6 +244,33 @@ public class SessionControllerIT extends BaseIntegrationIT {
         assertThat(sessionDtoResponse.getDescription()).isEqualTo(newSessionDto.getDescription());
     }
 
+    @Test
+    public void create_shouldCreateOnceAndReplay_whenRetriedWithIdempotencyKey() {
+        // ARRANGE
+        SessionDto newSessionDto = new SessionDto();
+        newSessionDto.setName("a retried session");
+        newSessionDto.setDescription("description");
+        newSessionDto.setDate(new Date());
+        newSessionDto.setTeacher_id(teacher.getId());
+
+        HttpHeaders headers = new HttpHeaders();
+        headers.setBearerAuth(token);
+        headers.setContentType(MediaType.APPLICATION_JSON);
+        headers.set("Idempotency-Key", "create-retried-session");
+        HttpEntity<SessionDto> reqBodyWithHeaders = new HttpEntity<>(newSessionDto, headers);
+        long sessionsBefore = sessionRepository.count();
+
+        // ACT
+        ResponseEntity<SessionDto> first = testRestTemplate.exchange("/api/session", HttpMethod.POST, reqBodyWithHeaders, SessionDto.class);
+        ResponseEntity<SessionDto> retry = testRestTemplate.exchange("/api/session", HttpMethod.POST, reqBodyWithHeaders, SessionDto.class);
+
+        // ASSERT
+        assertThat(first.getStatusCode()).isEqualTo(HttpStatus.OK);
+        assertThat(retry.getStatusCode()).isEqualTo(HttpStatus.OK);
+        assertThat(retry.getBody().getId()).isEqualTo(first.getBody().getId());
+        assertThat(sessionRepository.count()).isEqualTo(sessionsBefore + 1);
+    }
+
     @Test
     public void create_shouldReturn400_whenNewSessionDtoNotValid() {
         // ARRANGE: create a new session and add to db
@@ -280,6 +325,48 @@ public class SessionControllerIT extends BaseIntegrationIT {
         assertThat(sessionDtoResponse.getDescription()).isEqualTo(updateSessionDto.getDescription());
     }
 
+    @Test
+    public void update_shouldNotRewriteParticipants_whenOnlyMetadataChanges() {
+        // ARRANGE: the user participates, then the session is renamed with the same participants
+        HttpHeaders headers = new HttpHeaders();
+        headers.setBearerAuth(token);
+        headers.setContentType(MediaType.APPLICATION_JSON);
+        testRestTemplate.exchange(
+                "/api/session/" + session.getId() + "/participate/" + user.getId(),
+                HttpMethod.POST,
+                new HttpEntity<>(headers),
+                String.class);
+
+        SessionDto updateSessionDto = new SessionDto();
+        updateSessionDto.setName("new name");
+        updateSessionDto.setDescription(session.getDescription());
+        updateSessionDto.setDate(session.getDate());
+        updateSessionDto.setTeacher_id(teacher.getId());
+        updateSessionDto.setUsers(List.of(user.getId()));
+
+        Statistics statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        statistics.setStatisticsEnabled(true);
+        statistics.clear();
+
+        // ACT
+        ResponseEntity<SessionDto> response = testRestTemplate.exchange(
+                "/api/session/" + session.getId(),
+                HttpMethod.PUT,
+                new HttpEntity<>(updateSessionDto, headers),
+                SessionDto.class);
+
+        // ASSERT
+        assertThat(response.getStatusCode()).isEqualTo(HttpStatus.OK);
+        assertThat(response.getBody().getUsers()).containsExactly(user.getId());
+        // teacher, participants, session with its participants, the UPDATE of SESSIONS and the outbox event.
+        // The authenticated user comes from the users cache, filled when the token was issued
+        assertThat(statistics.getPrepareStatementCount()).isEqualTo(5);
+        assertThat(statistics.getEntityUpdateCount()).isEqualTo(1);
+        assertThat(statistics.getCollectionUpdateCount()).isZero();
+        assertThat(statistics.getCollectionRecreateCount()).isZero();
+        assertThat(statistics.getCollectionRemoveCount()).isZero();
+    }
+
     @Test
     public void update_shouldReturn400_whenSessionIdNotValid() {
         // ARRANGE: create a new session and add to db
@@ -405,6 +492,98 @@ public class SessionControllerIT extends BaseIntegrationIT {
         assertThat(response.getStatusCode()).isEqualTo(HttpStatus.BAD_REQUEST);
     }
 
+    @Test
+    public void participateAll_shouldSeatThenWaitlistAndReportEachUser() {
+        // ARRANGE
+        session.setCapacity(1);
+        session = sessionRepository.saveAndFlush(session);
+        User otherUser = userRepository.saveAndFlush(User.builder()
+                .email("other@studio.com")
+                .lastName("otherLastName")
+                .firstName("otherFirstName")
+                .password("test!1234")
+                .build());
+        Long unknownUserId = otherUser.getId() + 1000;
+
+        HttpHeaders headers = new HttpHeaders();
+        headers.setBearerAuth(token);
+        HttpEntity<List<Long>> entity = new HttpEntity<>(List.of(user.getId(), otherUser.getId(), unknownUserId, user.getId()), headers);
+
+        // ACT
+        ResponseEntity<EnrollmentResultDto[]> response = testRestTemplate.exchange(
+                "/api/session/" + session.getId() + "/participate",
+                HttpMethod.POST,
+                entity,
+                EnrollmentResultDto[].class);
+
+        // ASSERT
+        assertThat(response.getStatusCode()).isEqualTo(HttpStatus.OK);
+        assertThat(response.getBody()).containsExactly(
+                new EnrollmentResultDto(session.getId(), user.getId(), EnrollmentStatus.PARTICIPATING),
+                new EnrollmentResultDto(session.getId(), otherUser.getId(), EnrollmentStatus.WAITLISTED),
+                new EnrollmentResultDto(session.getId(), unknownUserId, EnrollmentStatus.UNKNOWN_USER));
+        assertThat(sessionRepository.findById(session.getId()).get().getParticipantCount()).isEqualTo(1);
+    }
+
+    @Test
+    public void update_shouldPromoteTheWaitlist_whenCapacityIsRaised() {
+        // ARRANGE: the user takes the only seat, the other user waits
+        session.setCapacity(1);
+        session = sessionRepository.saveAndFlush(session);
+        User otherUser = userRepository.saveAndFlush(User.builder()
+                .email("other@studio.com")
+                .lastName("otherLastName")
+                .firstName("otherFirstName")
+                .password("test!1234")
+                .build());
+
+        HttpHeaders headers = new HttpHeaders();
+        headers.setBearerAuth(token);
+        testRestTemplate.exchange(
+                "/api/session/" + session.getId() + "/participate",
+                HttpMethod.POST,
+                new HttpEntity<>(List.of(user.getId(), otherUser.getId()), headers),
+                EnrollmentResultDto[].class);
+
+        SessionDto updateSessionDto = new SessionDto();
+        updateSessionDto.setName(session.getName());
+        updateSessionDto.setDescription(session.getDescription());
+        updateSessionDto.setDate(session.getDate());
+        updateSessionDto.setTeacher_id(teacher.getId());
+        updateSessionDto.setCapacity(2);
+        updateSessionDto.setUsers(List.of(user.getId()));
+
+        // ACT
+        ResponseEntity<SessionDto> response = testRestTemplate.exchange(
+                "/api/session/" + session.getId(),
+                HttpMethod.PUT,
+                new HttpEntity<>(updateSessionDto, headers),
+                SessionDto.class);
+
+        // ASSERT: the new seat went to the waitlist, not to the next direct join
+        assertThat(response.getStatusCode()).isEqualTo(HttpStatus.OK);
+        assertThat(response.getBody().getUsers()).containsExactlyInAnyOrder(user.getId(), otherUser.getId());
+        assertThat(sessionRepository.findById(session.getId()).get().getParticipantCount()).isEqualTo(2);
+    }
+
+    @Test
+    public void participateInAll_shouldReportAlreadyParticipating_whenEnrolledTwice() {
+        // ARRANGE
+        HttpHeaders headers = new HttpHeaders();
+        headers.setBearerAuth(token);
+        HttpEntity<List<Long>> entity = new HttpEntity<>(List.of(session.getId()), headers);
+        String url = "/api/session/participate/" + user.getId();
+        testRestTemplate.exchange(url, HttpMethod.POST, entity, EnrollmentResultDto[].class);
+
+        // ACT
+        ResponseEntity<EnrollmentResultDto[]> response = testRestTemplate.exchange(url, HttpMethod.POST, entity, EnrollmentResultDto[].class);
+
+        // ASSERT
+        assertThat(response.getStatusCode()).isEqualTo(HttpStatus.OK);
+        assertThat(response.getBody()).containsExactly(
+                new EnrollmentResultDto(session.getId(), user.getId(), EnrollmentStatus.ALREADY_PARTICIPATING));
+    }
+
     @Test
     public void noLongerparticipate_shouldReturn200_whenUserRegisterThenUnSubscribeForSession() {
         // ARRANGE
@@ -433,6 +612,26 @@ public class SessionControllerIT extends BaseIntegrationIT {
         assertThat(responseNoLonger.getStatusCode()).isEqualTo(HttpStatus.OK);
     }
 
+    @Test
+    public void participate_shouldRecordOutboxEvents_whenUserJoinsThenLeaves() {
+        // ARRANGE
+        HttpHeaders headers = new HttpHeaders();
+        headers.setBearerAuth(token);
+        HttpEntity<Void> entity = new HttpEntity<>(headers);
+        String url = "/api/session/" + session.getId() + "/participate/" + user.getId();
+
+        // ACT
+        testRestTemplate.exchange(url, HttpMethod.POST, entity, String.class);
+        testRestTemplate.exchange(url, HttpMethod.DELETE, entity, String.class);
+
+        // ASSERT
+        List<OutboxEvent> events = outboxRepository.findByIdGreaterThanOrderByIdAsc(0L, PageRequest.of(0, 100));
+        assertThat(events).filteredOn(event -> event.getSessionId().equals(session.getId()))
+                .extracting(OutboxEvent::getType, OutboxEvent::getUserId)
+                .containsExactly(tuple(OutboxEventType.PARTICIPANT_JOINED, user.getId()),
+                        tuple(OutboxEventType.PARTICIPANT_LEFT, user.getId()));
+    }
+
     @Test
     public void boLongerparticipate_shouldReturn400_whenIdsNotValid() {
         // ARRANGE
@@ -0,0 +1,196 @@
+package com.openclassrooms.starterjwt.integration.controllers;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.client.TestRestTemplate;
+import org.springframework.http.HttpEntity;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.security.authentication.AuthenticationManager;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+
+import com.openclassrooms.starterjwt.integration.BaseIntegrationIT;
+import com.openclassrooms.starterjwt.models.Session;
+import com.openclassrooms.starterjwt.models.User;
+import com.openclassrooms.starterjwt.repository.SessionRepository;
+import com.openclassrooms.starterjwt.repository.UserRepository;
+import com.openclassrooms.starterjwt.security.jwt.JwtUtils;
+
+/**
+ * Many more users than seats join the same session at the same moment, as when a popular class is published,
+ * then participants cancel at the same moment while others wait.
+ */
+@Tag("integration")
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
+public class SessionParticipateStressIT extends BaseIntegrationIT {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(SessionParticipateStressIT.class);
+
+    private static final int CAPACITY = 50;
+    private static final int USERS = 400;
+    private static final int THREADS = 200;
+    private static final int CANCELLATIONS = 25;
+    private static final Duration MAX_DURATION = Duration.ofSeconds(30);
+
+    @Autowired
+    private TestRestTemplate testRestTemplate;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private SessionRepository sessionRepository;
+
+    @Autowired
+    private JwtUtils jwtUtils;
+
+    @Autowired
+    private AuthenticationManager authenticationManager;
+
+    @Autowired
+    private BCryptPasswordEncoder bCryptPasswordEncoder;
+
+    private String token;
+    private Session session;
+    private List<Long> userIds;
+
+    @BeforeEach
+    public void init() {
+        userRepository.saveAndFlush(User.builder()
+                .email("yoga@studio.com")
+                .lastName("adminLastName")
+                .firstName("adminFirstName")
+                .password(bCryptPasswordEncoder.encode("test!1234"))
+                .admin(true)
+                .build());
+        token = jwtUtils.generateJwtToken(authenticationManager.authenticate(
+                new UsernamePasswordAuthenticationToken("yoga@studio.com", "test!1234")));
+
+        List<Object[]> users = new ArrayList<>(USERS);
+        for (int i = 0; i < USERS; i++) {
+            users.add(new Object[] { "participant" + i + "@email.com", "lastName", "firstName", "1234" });
+        }
+        jdbcTemplate.batchUpdate("INSERT INTO USERS (email, last_name, first_name, password) VALUES (?, ?, ?, ?)", users);
+        userIds = jdbcTemplate.queryForList("SELECT id FROM USERS WHERE email LIKE 'participant%'", Long.class);
+
+        session = sessionRepository.saveAndFlush(Session.builder()
+                .name("a popular session")
+                .date(new Date())
+                .description("session description")
+                .capacity(CAPACITY)
+                .build());
+    }
+
+    @AfterEach
+    public void clean() {
+        jdbcTemplate.update("DELETE FROM WAITLIST");
+        jdbcTemplate.update("DELETE FROM PARTICIPATE");
+        jdbcTemplate.update("DELETE FROM SESSIONS");
+        jdbcTemplate.update("DELETE FROM USERS");
+    }
+
+    @Test
+    public void participate_shouldFillSessionThenWaitlist_whenHundredsOfUsersJoinAtOnce() throws Exception {
+        // ACT
+        Map<HttpStatus, Integer> statusCounts = sendConcurrently(HttpMethod.POST, userIds);
+
+        // ASSERT
+        assertThat(statusCounts).containsOnlyKeys(HttpStatus.OK, HttpStatus.ACCEPTED);
+        assertThat(statusCounts.get(HttpStatus.OK)).isEqualTo(CAPACITY);
+        assertThat(statusCounts.get(HttpStatus.ACCEPTED)).isEqualTo(USERS - CAPACITY);
+        assertThat(countRows("PARTICIPATE")).isEqualTo(CAPACITY);
+        assertThat(participantCount()).isEqualTo(CAPACITY);
+        assertThat(countRows("WAITLIST")).isEqualTo(USERS - CAPACITY);
+    }
+
+    @Test
+    public void noLongerParticipate_shouldPromoteOneWaitingUserPerSeat_whenParticipantsCancelAtOnce() throws Exception {
+        // ARRANGE
+        sendConcurrently(HttpMethod.POST, userIds);
+        List<Long> participants = jdbcTemplate.queryForList(
+                "SELECT user_id FROM PARTICIPATE WHERE session_id = ? LIMIT " + CANCELLATIONS, Long.class, session.getId());
+        List<Long> firstWaiting = jdbcTemplate.queryForList(
+                "SELECT user_id FROM WAITLIST WHERE session_id = ? ORDER BY id LIMIT " + CANCELLATIONS, Long.class, session.getId());
+
+        // ACT
+        Map<HttpStatus, Integer> statusCounts = sendConcurrently(HttpMethod.DELETE, participants);
+
+        // ASSERT
+        assertThat(statusCounts).containsOnly(Map.entry(HttpStatus.OK, CANCELLATIONS));
+        assertThat(countRows("PARTICIPATE")).isEqualTo(CAPACITY);
+        assertThat(participantCount()).isEqualTo(CAPACITY);
+        assertThat(countRows("WAITLIST")).isEqualTo(USERS - CAPACITY - CANCELLATIONS);
+        assertThat(jdbcTemplate.queryForList("SELECT user_id FROM PARTICIPATE WHERE session_id = ?", Long.class, session.getId()))
+                .containsAll(firstWaiting)
+                .doesNotContainAnyElementsOf(participants);
+    }
+
+    private Map<HttpStatus, Integer> sendConcurrently(HttpMethod method, List<Long> userIdsToSend) throws Exception {
+        HttpHeaders headers = new HttpHeaders();
+        headers.setBearerAuth(token);
+        HttpEntity<Void> entity = new HttpEntity<>(headers);
+
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<HttpStatus>> responses = new ArrayList<>(userIdsToSend.size());
+        for (Long userId : userIdsToSend) {
+            responses.add(executor.submit(() -> {
+                start.await();
+                return testRestTemplate.exchange(
+                        "/api/session/" + session.getId() + "/participate/" + userId,
+                        method,
+                        entity,
+                        String.class).getStatusCode();
+            }));
+        }
+
+        long begin = System.nanoTime();
+        start.countDown();
+        Map<HttpStatus, Integer> statusCounts = new EnumMap<>(HttpStatus.class);
+        for (Future<HttpStatus> response : responses) {
+            statusCounts.merge(response.get(MAX_DURATION.toSeconds(), TimeUnit.SECONDS), 1, Integer::sum);
+        }
+        long elapsedNanos = System.nanoTime() - begin;
+        executor.shutdown();
+
+        LOGGER.info("{} {} requests from {} threads for {} seats in {} ms ({} requests/s): {}", userIdsToSend.size(), method,
+                THREADS, CAPACITY, elapsedNanos / 1_000_000, userIdsToSend.size() * 1_000_000_000L / elapsedNanos, statusCounts);
+        assertThat(Duration.ofNanos(elapsedNanos)).isLessThan(MAX_DURATION);
+
+        return statusCounts;
+    }
+
+    private int countRows(String table) {
+        return jdbcTemplate.queryForObject("SELECT COUNT(*) FROM " + table + " WHERE session_id = ?", Integer.class, session.getId());
+    }
+
+    private int participantCount() {
+        return jdbcTemplate.queryForObject("SELECT participant_count FROM SESSIONS WHERE id = ?", Integer.class, session.getId());
+    }
+}
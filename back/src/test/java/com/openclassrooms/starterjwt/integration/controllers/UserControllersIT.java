@@ -180,6 +180,43 @@ public class UserControllersIT extends BaseIntegrationIT {
         assertThat(response.getStatusCode()).isEqualTo(HttpStatus.BAD_REQUEST);
     }
 
+    @Test
+    public void findSessions_shouldReturn200AndEmptyPage_whenUserHasNoBooking() {
+        // ARRANGE
+        HttpHeaders headers = new HttpHeaders();
+        headers.setBearerAuth(token);
+        HttpEntity<Void> entity = new HttpEntity<>(headers);
+
+        // ACT
+        ResponseEntity<String> response = testRestTemplate.exchange(
+                "/api/user/" + user.getId() + "/sessions?upcoming=true",
+                HttpMethod.GET,
+                entity,
+                String.class);
+
+        // ASSERT
+        assertThat(response.getStatusCode()).isEqualTo(HttpStatus.OK);
+        assertThat(response.getBody()).isEqualTo("{\"items\":[],\"nextCursor\":null}");
+    }
+
+    @Test
+    public void findSessions_shouldReturn404_whenUserIdNotInDatabase() {
+        // ARRANGE
+        HttpHeaders headers = new HttpHeaders();
+        headers.setBearerAuth(token);
+        HttpEntity<Void> entity = new HttpEntity<>(headers);
+
+        // ACT
+        ResponseEntity<String> response = testRestTemplate.exchange(
+                "/api/user/" + (user.getId() + 1000) + "/sessions",
+                HttpMethod.GET,
+                entity,
+                String.class);
+
+        // ASSERT
+        assertThat(response.getStatusCode()).isEqualTo(HttpStatus.NOT_FOUND);
+    }
+
     @Test
     public void delete_shouldReturn200_whenUserIsDeleted() {
         // set headers for http request
@@ -272,4 +309,39 @@ public class UserControllersIT extends BaseIntegrationIT {
         // ASSERT
         assertThat(response.getStatusCode()).isEqualTo(HttpStatus.UNAUTHORIZED);
     }
+
+    @Test
+    public void revokeTokens_shouldRejectTheFormerToken_whenUserSignsOutEverywhere() {
+        // ARRANGE
+        HttpHeaders headers = new HttpHeaders();
+        headers.setBearerAuth(token);
+        HttpEntity<Void> entity = new HttpEntity<>(headers);
+
+        // ACT
+        ResponseEntity<String> revokeResponse = testRestTemplate.exchange(
+                "/api/user/" + user.getId() + "/tokens",
+                HttpMethod.DELETE,
+                entity,
+                String.class);
+        ResponseEntity<String> response = testRestTemplate.exchange(
+                "/api/user/" + user.getId(),
+                HttpMethod.GET,
+                entity,
+                String.class);
+
+        // ASSERT
+        assertThat(revokeResponse.getStatusCode()).isEqualTo(HttpStatus.OK);
+        assertThat(response.getStatusCode()).isEqualTo(HttpStatus.UNAUTHORIZED);
+
+        // a new login gets a token of the new version
+        String newToken = jwtUtils.generateJwtToken(authenticationManager.authenticate(
+                new UsernamePasswordAuthenticationToken(user.getEmail(), "test!1234")));
+        headers.setBearerAuth(newToken);
+        ResponseEntity<String> newResponse = testRestTemplate.exchange(
+                "/api/user/" + user.getId(),
+                HttpMethod.GET,
+                new HttpEntity<>(headers),
+                String.class);
+        assertThat(newResponse.getStatusCode()).isEqualTo(HttpStatus.OK);
+    }
 }
@@ -0,0 +1,83 @@
+package com.openclassrooms.starterjwt.integration.repository;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.Date;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.jackson.JacksonAutoConfiguration;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+import org.springframework.context.annotation.Import;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.transaction.annotation.Transactional;
+
+import com.openclassrooms.starterjwt.integration.BaseIntegrationIT;
+import com.openclassrooms.starterjwt.models.OutboxEvent;
+import com.openclassrooms.starterjwt.models.OutboxOffset;
+import com.openclassrooms.starterjwt.models.Session;
+import com.openclassrooms.starterjwt.outbox.OutboxEventType;
+import com.openclassrooms.starterjwt.outbox.OutboxWriter;
+import com.openclassrooms.starterjwt.repository.OutboxOffsetRepository;
+import com.openclassrooms.starterjwt.repository.OutboxRepository;
+import com.openclassrooms.starterjwt.repository.ParticipationKey;
+
+@DataJpaTest
+@Transactional
+@Import({OutboxWriter.class, JacksonAutoConfiguration.class})
+public class OutboxRepositoryIT extends BaseIntegrationIT {
+
+    @Autowired
+    private OutboxWriter outboxWriter;
+
+    @Autowired
+    private OutboxRepository outboxRepository;
+
+    @Autowired
+    private OutboxOffsetRepository outboxOffsetRepository;
+
+    @Autowired
+    private TestEntityManager testEntityManager;
+
+    @Test
+    public void shouldReadEventsAfterOffsetInIdOrder() {
+        // ARRANGE
+        Session session = testEntityManager.persist(Session.builder()
+                .name("a session")
+                .date(new Date())
+                .description("description")
+                .capacity(10)
+                .build());
+        outboxWriter.appendSession(OutboxEventType.SESSION_CREATED, session);
+        outboxWriter.appendAll(OutboxEventType.PARTICIPANT_JOINED,
+                List.of(new ParticipationKey(session.getId(), 1L), new ParticipationKey(session.getId(), 2L)));
+        outboxWriter.append(OutboxEventType.PARTICIPANT_LEFT, session.getId(), 1L);
+        testEntityManager.flush();
+        testEntityManager.clear();
+        long firstId = outboxRepository.findByIdGreaterThanOrderByIdAsc(0L, PageRequest.of(0, 1)).get(0).getId();
+
+        // ACT
+        List<OutboxEvent> all = outboxRepository.findByIdGreaterThanOrderByIdAsc(firstId - 1, PageRequest.of(0, 10));
+        List<OutboxEvent> afterFirst = outboxRepository.findByIdGreaterThanOrderByIdAsc(firstId, PageRequest.of(0, 2));
+
+        // ASSERT
+        assertThat(all).extracting(OutboxEvent::getType).containsExactly(OutboxEventType.SESSION_CREATED,
+                OutboxEventType.PARTICIPANT_JOINED, OutboxEventType.PARTICIPANT_JOINED, OutboxEventType.PARTICIPANT_LEFT);
+        assertThat(all).allSatisfy(event -> assertThat(event.getCreatedAt()).isNotNull());
+        assertThat(all.get(0).getPayload()).contains("\"name\":\"a session\"", "\"capacity\":10");
+        assertThat(afterFirst).extracting(OutboxEvent::getUserId).containsExactly(1L, 2L);
+    }
+
+    @Test
+    public void shouldFindOffsetOfSink_whenFindForUpdate() {
+        // ARRANGE
+        outboxOffsetRepository.saveAndFlush(new OutboxOffset("file", 42L));
+        testEntityManager.clear();
+
+        // ACT & ASSERT
+        assertThat(outboxOffsetRepository.findForUpdate("file")).get().extracting(OutboxOffset::getLastId).isEqualTo(42L);
+        assertThat(outboxOffsetRepository.findForUpdate("other")).isEmpty();
+    }
+}
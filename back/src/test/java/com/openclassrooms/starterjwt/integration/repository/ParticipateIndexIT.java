@@ -0,0 +1,129 @@
+package com.openclassrooms.starterjwt.integration.repository;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.annotation.Transactional;
+
+import com.openclassrooms.starterjwt.integration.BaseIntegrationIT;
+import com.openclassrooms.starterjwt.repository.SessionRepository;
+
+/**
+ * Checks on MySQL that the participation queries are served by the PARTICIPATE keys
+ * instead of scanning the join table.
+ */
+@DataJpaTest
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@Transactional
+public class ParticipateIndexIT extends BaseIntegrationIT {
+
+    private static final int SESSIONS = 200;
+    private static final int USERS = 50;
+    private static final int SESSIONS_PER_USER = 20;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    private List<Long> sessionIds;
+    private List<Long> userIds;
+
+    @BeforeEach
+    public void insertParticipations() {
+        List<Object[]> sessions = new ArrayList<>();
+        for (int i = 0; i < SESSIONS; i++) {
+            sessions.add(new Object[] { "session " + i, Timestamp.from(Instant.parse("2030-01-01T08:00:00Z").plusSeconds(3600L * i)), "description" });
+        }
+        jdbcTemplate.batchUpdate("INSERT INTO SESSIONS (name, date, description) VALUES (?, ?, ?)", sessions);
+
+        List<Object[]> users = new ArrayList<>();
+        for (int i = 0; i < USERS; i++) {
+            users.add(new Object[] { "participant" + i + "@email.com", "lastName", "firstName", "1234" });
+        }
+        jdbcTemplate.batchUpdate("INSERT INTO USERS (email, last_name, first_name, password) VALUES (?, ?, ?, ?)", users);
+
+        sessionIds = jdbcTemplate.queryForList("SELECT id FROM SESSIONS ORDER BY id", Long.class);
+        userIds = jdbcTemplate.queryForList("SELECT id FROM USERS ORDER BY id", Long.class);
+
+        List<Object[]> participations = new ArrayList<>();
+        for (int u = 0; u < userIds.size(); u++) {
+            for (int s = 0; s < SESSIONS_PER_USER; s++) {
+                participations.add(new Object[] { sessionIds.get((u * 7 + s) % sessionIds.size()), userIds.get(u) });
+            }
+        }
+        jdbcTemplate.batchUpdate("INSERT INTO PARTICIPATE (session_id, user_id) VALUES (?, ?)", participations);
+    }
+
+    @Test
+    public void participationCheck_shouldUsePrimaryKey() {
+        // what SessionRepository.addParticipant runs before inserting
+        assertUsesIndex("PRIMARY",
+                "SELECT 1 FROM PARTICIPATE p WHERE p.session_id = ? AND p.user_id = ?",
+                sessionIds.get(0), userIds.get(0));
+    }
+
+    @Test
+    public void removeParticipant_shouldUsePrimaryKey() {
+        assertUsesIndex("PRIMARY",
+                "DELETE FROM PARTICIPATE WHERE session_id = ? AND user_id = ?",
+                sessionIds.get(0), userIds.get(0));
+    }
+
+    @Test
+    public void participantsOfAPage_shouldUsePrimaryKey() {
+        // the join fetch of SessionRepository.fetchParticipants, and the participant count of the summaries
+        assertUsesIndex("PRIMARY",
+                "SELECT user_id FROM PARTICIPATE WHERE session_id IN (?, ?, ?)",
+                sessionIds.get(0), sessionIds.get(1), sessionIds.get(2));
+        assertUsesIndex("PRIMARY",
+                "SELECT COUNT(*) FROM PARTICIPATE p WHERE p.session_id = ?",
+                sessionIds.get(0));
+    }
+
+    @Test
+    public void sessionsOfAUser_shouldUseReverseIndex() {
+        assertUsesIndex("idx_participate_user_session",
+                "SELECT session_id FROM PARTICIPATE WHERE user_id = ?",
+                userIds.get(0));
+    }
+
+    @Test
+    public void bookedSessionsOfAUser_shouldBeDrivenByReverseIndex() {
+        // SessionRepository.findBookedFirstPage: PARTICIPATE read first by user, then SESSIONS by primary key
+        List<Map<String, Object>> plan = jdbcTemplate.queryForList("EXPLAIN " + SessionRepository.BOOKED_SUMMARIES
+                .replace(":userId", "?").replace(":from", "?").replace(":to", "?") + "ORDER BY s.date, s.id LIMIT 21",
+                userIds.get(0), Timestamp.from(Instant.parse("2030-01-01T00:00:00Z")), Timestamp.from(Instant.parse("2031-01-01T00:00:00Z")));
+
+        assertThat(plan).hasSize(2);
+        assertThat(plan.get(0).get("table")).isEqualTo("p");
+        assertThat(plan.get(0).get("key")).isEqualTo("idx_participate_user_session");
+        assertThat(plan.get(1).get("table")).isEqualTo("s");
+        assertThat(plan.get(1).get("key")).isEqualTo("PRIMARY");
+    }
+
+    @Test
+    public void insert_shouldBeRejected_whenParticipationAlreadyExists() {
+        assertThrows(DataIntegrityViolationException.class, () -> jdbcTemplate.update(
+                "INSERT INTO PARTICIPATE (session_id, user_id) VALUES (?, ?)", sessionIds.get(0), userIds.get(0)));
+    }
+
+    private void assertUsesIndex(String expectedKey, String sql, Object... args) {
+        List<Map<String, Object>> plan = jdbcTemplate.queryForList("EXPLAIN " + sql, args);
+
+        assertThat(plan).hasSize(1);
+        assertThat(plan.get(0).get("type")).isNotEqualTo("ALL");
+        assertThat(plan.get(0).get("key")).isEqualTo(expectedKey);
+    }
+}
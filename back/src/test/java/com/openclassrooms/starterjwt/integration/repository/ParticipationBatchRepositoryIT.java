@@ -0,0 +1,173 @@
+package com.openclassrooms.starterjwt.integration.repository;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+import org.springframework.context.annotation.Import;
+import org.springframework.transaction.annotation.Transactional;
+
+import com.openclassrooms.starterjwt.integration.BaseIntegrationIT;
+import com.openclassrooms.starterjwt.models.Session;
+import com.openclassrooms.starterjwt.models.User;
+import com.openclassrooms.starterjwt.models.WaitlistEntry;
+import com.openclassrooms.starterjwt.repository.ParticipationBatchRepository;
+import com.openclassrooms.starterjwt.repository.ParticipationKey;
+import com.openclassrooms.starterjwt.repository.SessionRepository;
+import com.openclassrooms.starterjwt.repository.WaitlistRepository;
+
+@DataJpaTest
+@Import(ParticipationBatchRepository.class)
+@Transactional
+public class ParticipationBatchRepositoryIT extends BaseIntegrationIT {
+
+    @Autowired
+    private ParticipationBatchRepository participationBatchRepository;
+
+    @Autowired
+    private SessionRepository sessionRepository;
+
+    @Autowired
+    private WaitlistRepository waitlistRepository;
+
+    @Autowired
+    private TestEntityManager testEntityManager;
+
+    private Session session;
+    private Session openSession;
+    private List<User> users;
+
+    @BeforeEach
+    public void init() {
+        session = testEntityManager.persist(Session.builder()
+                .name("a session")
+                .date(new Date())
+                .description("description")
+                .capacity(3)
+                .build());
+        openSession = testEntityManager.persist(Session.builder()
+                .name("an open session")
+                .date(new Date())
+                .description("description")
+                .build());
+
+        users = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            users.add(testEntityManager.persist(User.builder()
+                    .email("user" + i + "@email.com")
+                    .lastName("lastName")
+                    .firstName("firstName")
+                    .password("1234")
+                    .build()));
+        }
+
+        testEntityManager.flush();
+        testEntityManager.clear();
+    }
+
+    @Test
+    public void shouldReturnFreeSeatsOfExistingSessions_whenLockSessions() {
+        // ARRANGE
+        sessionRepository.reserveSeat(session.getId(), LocalDateTime.now());
+
+        // ACT
+        Map<Long, Integer> freeSeats = participationBatchRepository.lockSessions(List.of(session.getId(), openSession.getId(), -1L));
+
+        // ASSERT
+        assertThat(freeSeats).containsOnly(
+                Map.entry(session.getId(), 2),
+                Map.entry(openSession.getId(), Integer.MAX_VALUE));
+    }
+
+    @Test
+    public void shouldFindOnlyExistingRows_whenFindParticipationsAndWaitlisted() {
+        // ARRANGE
+        ParticipationKey participating = new ParticipationKey(session.getId(), users.get(0).getId());
+        ParticipationKey waiting = new ParticipationKey(session.getId(), users.get(1).getId());
+        ParticipationKey elsewhere = new ParticipationKey(openSession.getId(), users.get(0).getId());
+        sessionRepository.addParticipant(participating.getSessionId(), participating.getUserId());
+        waitlistRepository.enqueue(waiting.getSessionId(), waiting.getUserId());
+
+        // ACT & ASSERT
+        assertThat(participationBatchRepository.findParticipations(List.of(participating, waiting, elsewhere)))
+                .containsOnly(participating);
+        assertThat(participationBatchRepository.findWaitlisted(List.of(participating, waiting, elsewhere)))
+                .containsOnly(waiting);
+        assertThat(participationBatchRepository.findParticipations(List.of())).isEmpty();
+    }
+
+    @Test
+    public void shouldWriteRowsAndCounts_whenInsertEnqueueAndAddParticipants() {
+        // ARRANGE
+        List<ParticipationKey> seated = List.of(
+                new ParticipationKey(session.getId(), users.get(0).getId()),
+                new ParticipationKey(session.getId(), users.get(1).getId()));
+        List<ParticipationKey> queued = List.of(
+                new ParticipationKey(session.getId(), users.get(2).getId()),
+                new ParticipationKey(openSession.getId(), users.get(0).getId()));
+
+        // ACT
+        participationBatchRepository.insertParticipations(seated);
+        participationBatchRepository.enqueue(queued);
+        participationBatchRepository.addParticipants(Map.of(session.getId(), 2), LocalDateTime.now());
+
+        // ASSERT
+        assertThat(participationBatchRepository.findParticipations(seated)).containsExactlyInAnyOrderElementsOf(seated);
+        assertThat(waitlistRepository.findFirstBySessionIdOrderByIdAsc(session.getId()))
+                .map(WaitlistEntry::getUserId).contains(users.get(2).getId());
+        assertThat(sessionRepository.findById(session.getId()).get().getParticipantCount()).isEqualTo(2);
+    }
+
+    @Test
+    public void shouldReturnParticipantsAndWaitingUsers_whenFindMembers() {
+        // ARRANGE
+        sessionRepository.addParticipant(session.getId(), users.get(0).getId());
+        waitlistRepository.enqueue(session.getId(), users.get(1).getId());
+
+        // ACT & ASSERT
+        assertThat(participationBatchRepository.findMembers(session.getId()))
+                .hasValueSatisfying(members -> assertThat(members).containsOnly(users.get(0).getId(), users.get(1).getId()));
+        assertThat(participationBatchRepository.findMembers(openSession.getId())).hasValueSatisfying(members -> assertThat(members).isEmpty());
+        assertThat(participationBatchRepository.findMembers(-1L)).isEmpty();
+    }
+
+    @Test
+    public void shouldSkipParticipatingUsers_whenFindWaitlistHeads() {
+        // ARRANGE
+        users.forEach(user -> waitlistRepository.enqueue(session.getId(), user.getId()));
+        participationBatchRepository.insertParticipations(List.of(new ParticipationKey(session.getId(), users.get(0).getId())));
+
+        // ACT
+        List<Long> heads = participationBatchRepository.findWaitlistHeads(session.getId(), 1);
+
+        // ASSERT
+        assertThat(heads).containsExactly(users.get(1).getId());
+    }
+
+    @Test
+    public void shouldRemoveOnlyGivenRows_whenDeleteParticipationsAndDequeue() {
+        // ARRANGE
+        ParticipationKey leaving = new ParticipationKey(session.getId(), users.get(0).getId());
+        ParticipationKey staying = new ParticipationKey(session.getId(), users.get(1).getId());
+        ParticipationKey waiting = new ParticipationKey(session.getId(), users.get(2).getId());
+        participationBatchRepository.insertParticipations(List.of(leaving, staying));
+        participationBatchRepository.enqueue(List.of(waiting));
+
+        // ACT
+        participationBatchRepository.deleteParticipations(List.of(leaving));
+        participationBatchRepository.dequeue(List.of(waiting));
+
+        // ASSERT
+        assertThat(participationBatchRepository.findParticipations(List.of(leaving, staying))).containsOnly(staying);
+        assertThat(participationBatchRepository.findWaitlisted(List.of(waiting))).isEmpty();
+    }
+}
@@ -0,0 +1,144 @@
+package com.openclassrooms.starterjwt.integration.repository;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.function.LongSupplier;
+import java.util.stream.Collectors;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.annotation.Transactional;
+
+import com.openclassrooms.starterjwt.integration.BaseIntegrationIT;
+import com.openclassrooms.starterjwt.models.Session;
+import com.openclassrooms.starterjwt.repository.SessionRepository;
+
+/**
+ * Compares the indexed date-range query with the full scan clients used to do on /api/session.
+ * Excluded from the default build, run it with {@code mvn verify -Pbenchmark}.
+ */
+@DataJpaTest
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@Transactional
+@Tag("benchmark")
+public class SessionDateRangeBenchmarkIT extends BaseIntegrationIT {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(SessionDateRangeBenchmarkIT.class);
+
+    private static final int ROWS = 100_000;
+    private static final int INSERT_BATCH_SIZE = 1_000;
+    private static final int PAGE_SIZE = 100;
+    private static final int RUNS = 5;
+
+    private static final Instant FIRST_SESSION = Instant.parse("2030-01-01T08:00:00Z");
+    private static final Duration SESSION_INTERVAL = Duration.ofMinutes(15);
+
+    @Autowired
+    private SessionRepository sessionRepository;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private TestEntityManager testEntityManager;
+
+    @BeforeEach
+    public void insertSessions() {
+        jdbcTemplate.update("DELETE FROM PARTICIPATE");
+        jdbcTemplate.update("DELETE FROM SESSIONS");
+
+        List<Object[]> batch = new ArrayList<>(INSERT_BATCH_SIZE);
+        for (int i = 0; i < ROWS; i++) {
+            Timestamp date = Timestamp.from(FIRST_SESSION.plus(SESSION_INTERVAL.multipliedBy(i)));
+            batch.add(new Object[] { "session " + i, date, "description" });
+
+            if (batch.size() == INSERT_BATCH_SIZE) {
+                jdbcTemplate.batchUpdate("INSERT INTO SESSIONS (name, date, description) VALUES (?, ?, ?)", batch);
+                batch.clear();
+            }
+        }
+    }
+
+    @Test
+    public void rangeQuery_shouldUseDateIndexAndBeatFullScan_whenSelectingOneWeek() {
+        // ARRANGE
+        Date from = Date.from(FIRST_SESSION.plus(Duration.ofDays(500)));
+        Date to = Date.from(from.toInstant().plus(Duration.ofDays(7)));
+        long expected = Duration.ofDays(7).toMinutes() / SESSION_INTERVAL.toMinutes();
+
+        // ACT
+        long fullScanNanos = medianNanos(() -> fullScan(from, to), expected);
+        long rangeNanos = medianNanos(() -> rangeQuery(from, to), expected);
+
+        // ASSERT
+        LOGGER.info("{} sessions, one week selected: full scan {} ms, range query {} ms (median of {} runs)",
+                ROWS, fullScanNanos / 1_000_000, rangeNanos / 1_000_000, RUNS);
+        assertUsesDateIndex(from, to);
+        assertThat(rangeNanos).isLessThan(fullScanNanos);
+    }
+
+    // what clients did before: download every session then filter on the date
+    private long fullScan(Date from, Date to) {
+        return sessionRepository.findAllWithParticipants().stream()
+                .filter(session -> !session.getDate().before(from) && session.getDate().before(to))
+                .count();
+    }
+
+    // what SessionService.findPage does, walking every page of the range
+    private long rangeQuery(Date from, Date to) {
+        long count = 0;
+        List<Session> page = sessionRepository.findFirstPage(from, to, PageRequest.of(0, PAGE_SIZE));
+        while (!page.isEmpty()) {
+            sessionRepository.fetchParticipants(page.stream().map(Session::getId).collect(Collectors.toList()));
+            count += page.size();
+
+            Session last = page.get(page.size() - 1);
+            page = sessionRepository.findPageAfter(from, to, last.getDate(), last.getId(), PageRequest.of(0, PAGE_SIZE));
+        }
+
+        return count;
+    }
+
+    private long medianNanos(LongSupplier query, long expectedCount) {
+        // warm-up run, also checks both strategies return the same sessions
+        assertThat(query.getAsLong()).isEqualTo(expectedCount);
+        testEntityManager.clear();
+
+        long[] timings = new long[RUNS];
+        for (int i = 0; i < RUNS; i++) {
+            long start = System.nanoTime();
+            query.getAsLong();
+            timings[i] = System.nanoTime() - start;
+            testEntityManager.clear();
+        }
+        Arrays.sort(timings);
+
+        return timings[RUNS / 2];
+    }
+
+    private void assertUsesDateIndex(Date from, Date to) {
+        List<Map<String, Object>> plan = jdbcTemplate.queryForList(
+                "EXPLAIN SELECT id FROM SESSIONS WHERE date >= ? AND date < ? ORDER BY date, id LIMIT ?",
+                new Timestamp(from.getTime()), new Timestamp(to.getTime()), PAGE_SIZE + 1);
+
+        assertThat(plan).hasSize(1);
+        assertThat(plan.get(0).get("key")).isEqualTo("idx_sessions_date_id");
+    }
+}
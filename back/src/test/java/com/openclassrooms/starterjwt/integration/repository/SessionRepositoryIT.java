@@ -2,30 +2,57 @@ package com.openclassrooms.starterjwt.integration.repository;
 
 import static org.assertj.core.api.Assertions.assertThat;
 
+import java.time.LocalDateTime;
+import java.util.Comparator;
 import java.util.Date;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Optional;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
+import javax.persistence.EntityManagerFactory;
+
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.transaction.annotation.Transactional;
 
 import com.openclassrooms.starterjwt.integration.BaseIntegrationIT;
 import com.openclassrooms.starterjwt.models.Session;
+import com.openclassrooms.starterjwt.models.Teacher;
+import com.openclassrooms.starterjwt.models.User;
 import com.openclassrooms.starterjwt.repository.SessionRepository;
+import com.openclassrooms.starterjwt.repository.projection.SessionSummaryView;
 
 @DataJpaTest
 @Transactional
 public class SessionRepositoryIT extends BaseIntegrationIT {
 
+    private static final Date MIN_DATE = new Date(0L);
+    private static final Date MAX_DATE = new Date(4102444800000L);
+
     @Autowired
     private SessionRepository sessionRepository;
 
+    @Autowired
+    private TestEntityManager testEntityManager;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
     private Session createTestSession() {
+        return createTestSession(new Date());
+    }
+
+    private Session createTestSession(Date date) {
         Session session = Session.builder()
                 .name("a session")
-                .date(new Date())
+                .date(date)
                 .description("description")
                 .build();
 
@@ -34,6 +61,48 @@ public class SessionRepositoryIT extends BaseIntegrationIT {
         return sessionSaved;
     }
 
+    private void createSessionsWithTeacherAndParticipants(int count) {
+        for (int i = 0; i < count; i++) {
+            Teacher teacher = testEntityManager.persist(Teacher.builder()
+                    .lastName("teacherLastName" + i)
+                    .firstName("teacherFirstName" + i)
+                    .build());
+
+            User firstUser = testEntityManager.persist(User.builder()
+                    .email("first" + i + "@email.com")
+                    .lastName("lastName")
+                    .firstName("firstName")
+                    .password("1234")
+                    .build());
+
+            User secondUser = testEntityManager.persist(User.builder()
+                    .email("second" + i + "@email.com")
+                    .lastName("lastName")
+                    .firstName("firstName")
+                    .password("1234")
+                    .build());
+
+            testEntityManager.persist(Session.builder()
+                    .name("a session")
+                    .date(new Date())
+                    .description("description")
+                    .teacher(teacher)
+                    .users(new HashSet<>(List.of(firstUser, secondUser)))
+                    .build());
+        }
+
+        testEntityManager.flush();
+        testEntityManager.clear();
+    }
+
+    private Statistics resetStatistics() {
+        Statistics statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        statistics.setStatisticsEnabled(true);
+        statistics.clear();
+
+        return statistics;
+    }
+
     @Test
     public void shouldSaveAndReturnSession_whenSessionSaved() {
         // ARRANGE
@@ -80,4 +149,276 @@ public class SessionRepositoryIT extends BaseIntegrationIT {
         // ASSERT
         assertThat(sessionRepository.findById(session.getId())).isEmpty();
     }
+
+    @Test
+    public void shouldReturnSessionsOrderedByDateThenId_whenFindPages() {
+        // ARRANGE
+        sessionRepository.deleteAll();
+        Date date = new Date(1735689600000L);
+        Session first = createTestSession(date);
+        Session second = createTestSession(date);
+        Session third = createTestSession(new Date(date.getTime() + 60000));
+
+        // ACT
+        List<Session> firstPage = sessionRepository.findFirstPage(MIN_DATE, MAX_DATE, PageRequest.of(0, 2));
+        Session last = firstPage.get(firstPage.size() - 1);
+        List<Session> nextPage = sessionRepository.findPageAfter(MIN_DATE, MAX_DATE, last.getDate(), last.getId(), PageRequest.of(0, 2));
+
+        // ASSERT
+        assertThat(firstPage).extracting(Session::getId).containsExactly(first.getId(), second.getId());
+        assertThat(nextPage).extracting(Session::getId).containsExactly(third.getId());
+    }
+
+    @Test
+    public void shouldReturnOnlySessionsInDateRange_whenFindPagesWithBounds() {
+        // ARRANGE
+        sessionRepository.deleteAll();
+        Date monday = new Date(1735516800000L);
+        Date nextMonday = new Date(monday.getTime() + 7 * 24 * 3600 * 1000L);
+        createTestSession(new Date(monday.getTime() - 1000));
+        Session first = createTestSession(monday);
+        Session second = createTestSession(new Date(monday.getTime() + 3600 * 1000L));
+        Session third = createTestSession(new Date(nextMonday.getTime() - 1000));
+        createTestSession(nextMonday);
+
+        // ACT
+        List<Session> firstPage = sessionRepository.findFirstPage(monday, nextMonday, PageRequest.of(0, 2));
+        Session last = firstPage.get(firstPage.size() - 1);
+        List<Session> nextPage = sessionRepository.findPageAfter(monday, nextMonday, last.getDate(), last.getId(), PageRequest.of(0, 2));
+
+        // ASSERT
+        assertThat(firstPage).extracting(Session::getId).containsExactly(first.getId(), second.getId());
+        assertThat(nextPage).extracting(Session::getId).containsExactly(third.getId());
+    }
+
+    @Test
+    public void shouldStreamSessionsOrderedByDateWithTeacher_whenStreamAll() {
+        // ARRANGE
+        sessionRepository.deleteAll();
+        createSessionsWithTeacherAndParticipants(3);
+        Statistics statistics = resetStatistics();
+
+        // ACT
+        List<Session> sessions;
+        try (Stream<Session> stream = sessionRepository.streamAll()) {
+            sessions = stream.peek(session -> session.getTeacher().getLastName()).collect(Collectors.toList());
+        }
+
+        // ASSERT
+        assertThat(sessions).hasSize(3);
+        assertThat(sessions).isSortedAccordingTo(Comparator.comparing(Session::getDate).thenComparing(Session::getId));
+        assertThat(statistics.getPrepareStatementCount()).isEqualTo(1);
+    }
+
+    @Test
+    public void shouldLoadSessionsTeachersAndParticipantsInOneQuery_whenFindAllWithParticipants() {
+        // ARRANGE
+        sessionRepository.deleteAll();
+        createSessionsWithTeacherAndParticipants(5);
+        Statistics statistics = resetStatistics();
+
+        // ACT
+        List<Session> sessions = sessionRepository.findAllWithParticipants();
+        sessions.forEach(session -> {
+            session.getTeacher().getLastName();
+            session.getUsers().forEach(User::getId);
+        });
+
+        // ASSERT
+        assertThat(sessions).hasSize(5);
+        assertThat(sessions).allSatisfy(session -> assertThat(session.getUsers()).hasSize(2));
+        assertThat(statistics.getPrepareStatementCount()).isEqualTo(1);
+    }
+
+    @Test
+    public void shouldLoadAPageWithParticipantsInTwoQueries_whenFindPageThenFetchParticipants() {
+        // ARRANGE
+        sessionRepository.deleteAll();
+        createSessionsWithTeacherAndParticipants(5);
+        Statistics statistics = resetStatistics();
+
+        // ACT
+        List<Session> sessions = sessionRepository.findFirstPage(MIN_DATE, MAX_DATE, PageRequest.of(0, 3));
+        sessionRepository.fetchParticipants(sessions.stream().map(Session::getId).collect(Collectors.toList()));
+        sessions.forEach(session -> {
+            session.getTeacher().getLastName();
+            session.getUsers().forEach(User::getId);
+        });
+
+        // ASSERT
+        assertThat(sessions).hasSize(3);
+        assertThat(sessions).allSatisfy(session -> assertThat(session.getUsers()).hasSize(2));
+        assertThat(statistics.getPrepareStatementCount()).isEqualTo(2);
+    }
+
+    @Test
+    public void shouldNotLoadParticipants_whenSessionFoundById() {
+        // ARRANGE
+        sessionRepository.deleteAll();
+        createSessionsWithTeacherAndParticipants(1);
+        Long sessionId = sessionRepository.findAll().get(0).getId();
+        testEntityManager.clear();
+
+        // ACT
+        Session session = sessionRepository.findById(sessionId).get();
+
+        // ASSERT
+        assertThat(testEntityManager.getEntityManager().getEntityManagerFactory().getPersistenceUnitUtil()
+                .isLoaded(session, "users")).isFalse();
+    }
+
+    @Test
+    public void shouldReturnParticipantCountAndParticipation_whenFindAllSummaries() {
+        // ARRANGE
+        sessionRepository.deleteAll();
+        createSessionsWithTeacherAndParticipants(2);
+        Session session = sessionRepository.findAllWithParticipants().get(0);
+        Long participantId = session.getUsers().iterator().next().getId();
+        testEntityManager.clear();
+
+        // ACT
+        List<SessionSummaryView> summaries = sessionRepository.findAllSummaries(participantId);
+
+        // ASSERT
+        assertThat(summaries).hasSize(2);
+        assertThat(summaries).allSatisfy(summary -> assertThat(summary.getParticipantCount()).isEqualTo(2L));
+        assertThat(summaries.get(0).getId()).isEqualTo(session.getId());
+        assertThat(summaries.get(0).getTeacherId()).isEqualTo(session.getTeacher().getId());
+        assertThat(summaries.get(0).getParticipating()).isEqualTo(1);
+        assertThat(summaries.get(1).getParticipating()).isEqualTo(0);
+    }
+
+    @Test
+    public void shouldPageThroughSessionsOfTheUserOnly_whenFindBooked() {
+        // ARRANGE
+        User participant = testEntityManager.persist(User.builder()
+                .email("booked@email.com")
+                .lastName("lastName")
+                .firstName("firstName")
+                .password("1234")
+                .build());
+        Session first = createTestSession(new Date(1000_000L));
+        Session second = createTestSession(new Date(2000_000L));
+        Session third = createTestSession(new Date(3000_000L));
+        createTestSession(new Date(1500_000L));
+        testEntityManager.flush();
+        Stream.of(third, first, second).forEach(session -> sessionRepository.addParticipant(session.getId(), participant.getId()));
+
+        // ACT
+        List<SessionSummaryView> firstPage = sessionRepository.findBookedFirstPage(participant.getId(), MIN_DATE, MAX_DATE, PageRequest.of(0, 2));
+        SessionSummaryView last = firstPage.get(1);
+        List<SessionSummaryView> nextPage = sessionRepository.findBookedPageAfter(participant.getId(), MIN_DATE, MAX_DATE,
+                last.getDate(), last.getId(), PageRequest.of(0, 2));
+        List<SessionSummaryView> upcoming = sessionRepository.findBookedFirstPage(participant.getId(), new Date(1500_000L), MAX_DATE,
+                PageRequest.of(0, 10));
+
+        // ASSERT
+        assertThat(firstPage).extracting(SessionSummaryView::getId).containsExactly(first.getId(), second.getId());
+        assertThat(firstPage).allSatisfy(summary -> assertThat(summary.getParticipating()).isEqualTo(1));
+        assertThat(nextPage).extracting(SessionSummaryView::getId).containsExactly(third.getId());
+        assertThat(upcoming).extracting(SessionSummaryView::getId).containsExactly(second.getId(), third.getId());
+    }
+
+    @Test
+    public void shouldInsertOnlyTheNewRow_whenAddParticipant() {
+        // ARRANGE
+        sessionRepository.deleteAll();
+        createSessionsWithTeacherAndParticipants(1);
+        Long sessionId = sessionRepository.findAll().get(0).getId();
+        User newUser = testEntityManager.persistFlushFind(User.builder()
+                .email("new@email.com")
+                .lastName("lastName")
+                .firstName("firstName")
+                .password("1234")
+                .build());
+        testEntityManager.clear();
+        Statistics statistics = resetStatistics();
+
+        // ACT
+        int inserted = sessionRepository.addParticipant(sessionId, newUser.getId());
+        int insertedAgain = sessionRepository.addParticipant(sessionId, newUser.getId());
+
+        // ASSERT
+        assertThat(inserted).isEqualTo(1);
+        assertThat(insertedAgain).isZero();
+        assertThat(statistics.getPrepareStatementCount()).isEqualTo(2);
+        assertThat(sessionRepository.findWithParticipantsById(sessionId).get().getUsers())
+                .extracting(User::getEmail).containsExactlyInAnyOrder("first0@email.com", "second0@email.com", "new@email.com");
+    }
+
+    @Test
+    public void shouldDeleteOnlyThatRow_whenRemoveParticipant() {
+        // ARRANGE
+        sessionRepository.deleteAll();
+        createSessionsWithTeacherAndParticipants(1);
+        Session session = sessionRepository.findAllWithParticipants().get(0);
+        Long removedUserId = session.getUsers().stream()
+                .filter(user -> user.getEmail().equals("first0@email.com"))
+                .findFirst().get().getId();
+        testEntityManager.clear();
+
+        // ACT
+        int deleted = sessionRepository.removeParticipant(session.getId(), removedUserId);
+        int deletedAgain = sessionRepository.removeParticipant(session.getId(), removedUserId);
+
+        // ASSERT
+        assertThat(deleted).isEqualTo(1);
+        assertThat(deletedAgain).isZero();
+        assertThat(sessionRepository.findWithParticipantsById(session.getId()).get().getUsers())
+                .extracting(User::getEmail).containsExactly("second0@email.com");
+    }
+
+    @Test
+    public void shouldTakeSeatsUntilCapacity_whenReserveSeat() {
+        // ARRANGE
+        Session session = sessionRepository.saveAndFlush(Session.builder()
+                .name("a session")
+                .date(new Date())
+                .description("description")
+                .capacity(2)
+                .build());
+        testEntityManager.clear();
+
+        // ACT
+        int first = sessionRepository.reserveSeat(session.getId(), LocalDateTime.now());
+        int second = sessionRepository.reserveSeat(session.getId(), LocalDateTime.now());
+        int third = sessionRepository.reserveSeat(session.getId(), LocalDateTime.now());
+        int released = sessionRepository.releaseSeat(session.getId(), LocalDateTime.now());
+        int afterRelease = sessionRepository.reserveSeat(session.getId(), LocalDateTime.now());
+
+        // ASSERT
+        assertThat(List.of(first, second, third, released, afterRelease)).containsExactly(1, 1, 0, 1, 1);
+        assertThat(sessionRepository.findById(session.getId()).get().getParticipantCount()).isEqualTo(2);
+    }
+
+    @Test
+    public void shouldNeverLimitSeats_whenCapacityIsNull() {
+        // ARRANGE
+        Session session = createTestSession();
+        testEntityManager.clear();
+
+        // ACT
+        int reserved = 0;
+        for (int i = 0; i < 10; i++) {
+            reserved += sessionRepository.reserveSeat(session.getId(), LocalDateTime.now());
+        }
+
+        // ASSERT
+        assertThat(reserved).isEqualTo(10);
+    }
+
+    @Test
+    public void shouldCountParticipateRows_whenRecountParticipants() {
+        // ARRANGE
+        sessionRepository.deleteAll();
+        createSessionsWithTeacherAndParticipants(1);
+        Long sessionId = sessionRepository.findAll().get(0).getId();
+
+        // ACT
+        sessionRepository.recountParticipants(sessionId);
+        testEntityManager.clear();
+
+        // ASSERT
+        assertThat(sessionRepository.findById(sessionId).get().getParticipantCount()).isEqualTo(2);
+    }
 }
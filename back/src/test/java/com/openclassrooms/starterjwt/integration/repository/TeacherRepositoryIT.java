@@ -13,6 +13,7 @@ import org.springframework.transaction.annotation.Transactional;
 import com.openclassrooms.starterjwt.integration.BaseIntegrationIT;
 import com.openclassrooms.starterjwt.models.Teacher;
 import com.openclassrooms.starterjwt.repository.TeacherRepository;
+import com.openclassrooms.starterjwt.repository.projection.CollectionVersion;
 
 @DataJpaTest
 @Transactional
@@ -67,4 +68,19 @@ public class TeacherRepositoryIT extends BaseIntegrationIT {
         assertThat(teachers.size()).isGreaterThan(0);
     }
 
+    @Test
+    public void shouldChangeCollectionVersion_whenTeacherAdded() {
+        // ARRANGE
+        createTestTeacher();
+        CollectionVersion before = teacherRepository.findCollectionVersion();
+
+        // ACT
+        createTestTeacher();
+        CollectionVersion after = teacherRepository.findCollectionVersion();
+
+        // ASSERT
+        assertThat(before.getLastUpdatedAt()).isNotNull();
+        assertThat(after.getCount()).isEqualTo(before.getCount() + 1);
+    }
+
 }
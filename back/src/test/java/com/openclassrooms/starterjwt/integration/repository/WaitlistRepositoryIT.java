@@ -0,0 +1,114 @@
+package com.openclassrooms.starterjwt.integration.repository;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+import org.springframework.transaction.annotation.Transactional;
+
+import com.openclassrooms.starterjwt.integration.BaseIntegrationIT;
+import com.openclassrooms.starterjwt.models.Session;
+import com.openclassrooms.starterjwt.models.User;
+import com.openclassrooms.starterjwt.models.WaitlistEntry;
+import com.openclassrooms.starterjwt.repository.SessionRepository;
+import com.openclassrooms.starterjwt.repository.WaitlistRepository;
+
+@DataJpaTest
+@Transactional
+public class WaitlistRepositoryIT extends BaseIntegrationIT {
+
+    @Autowired
+    private WaitlistRepository waitlistRepository;
+
+    @Autowired
+    private SessionRepository sessionRepository;
+
+    @Autowired
+    private TestEntityManager testEntityManager;
+
+    private Session session;
+    private List<User> users;
+
+    @BeforeEach
+    public void init() {
+        session = testEntityManager.persist(Session.builder()
+                .name("a session")
+                .date(new Date())
+                .description("description")
+                .build());
+
+        users = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            users.add(testEntityManager.persist(User.builder()
+                    .email("user" + i + "@email.com")
+                    .lastName("lastName")
+                    .firstName("firstName")
+                    .password("1234")
+                    .build()));
+        }
+
+        testEntityManager.flush();
+        testEntityManager.clear();
+    }
+
+    @Test
+    public void shouldServeUsersInArrivalOrder_whenFindFirst() {
+        // ARRANGE
+        users.forEach(user -> waitlistRepository.enqueue(session.getId(), user.getId()));
+
+        // ACT
+        WaitlistEntry head = waitlistRepository.findFirstBySessionIdOrderByIdAsc(session.getId()).get();
+        waitlistRepository.dequeue(session.getId(), head.getUserId());
+        WaitlistEntry next = waitlistRepository.findFirstBySessionIdOrderByIdAsc(session.getId()).get();
+
+        // ASSERT
+        assertThat(head.getUserId()).isEqualTo(users.get(0).getId());
+        assertThat(next.getUserId()).isEqualTo(users.get(1).getId());
+    }
+
+    @Test
+    public void shouldReturnPositionInQueue_whenFindPosition() {
+        // ARRANGE
+        users.forEach(user -> waitlistRepository.enqueue(session.getId(), user.getId()));
+        waitlistRepository.dequeue(session.getId(), users.get(0).getId());
+
+        // ACT
+        long second = waitlistRepository.findPosition(session.getId(), users.get(2).getId());
+        long notWaiting = waitlistRepository.findPosition(session.getId(), users.get(0).getId());
+
+        // ASSERT
+        assertThat(second).isEqualTo(2);
+        assertThat(notWaiting).isZero();
+    }
+
+    @Test
+    public void shouldNotQueueTwice_whenEnqueueAgain() {
+        // ACT
+        int first = waitlistRepository.enqueue(session.getId(), users.get(0).getId());
+        int again = waitlistRepository.enqueue(session.getId(), users.get(0).getId());
+
+        // ASSERT
+        assertThat(first).isEqualTo(1);
+        assertThat(again).isZero();
+        assertThat(waitlistRepository.count()).isEqualTo(1);
+    }
+
+    @Test
+    public void shouldNotQueue_whenUserAlreadyParticipates() {
+        // ARRANGE
+        sessionRepository.addParticipant(session.getId(), users.get(0).getId());
+
+        // ACT
+        int queued = waitlistRepository.enqueue(session.getId(), users.get(0).getId());
+
+        // ASSERT
+        assertThat(queued).isZero();
+    }
+}
@@ -0,0 +1,108 @@
+package com.openclassrooms.starterjwt.integration.security;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.Collection;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.results.RunResult;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.openjdk.jmh.runner.options.TimeValue;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+
+import com.openclassrooms.starterjwt.security.jwt.JwtUtils;
+import com.openclassrooms.starterjwt.security.services.UserDetailsImpl;
+
+import io.jsonwebtoken.Jwts;
+
+/**
+ * Compares, with JMH, the token checks AuthTokenFilter used to run on every request with {@link JwtUtils#verify(String)},
+ * without and with the verified token cache.
+ * Excluded from the default build, run it with {@code mvn verify -Pbenchmark}.
+ */
+@Tag("benchmark")
+public class JwtVerificationBenchmarkIT {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(JwtVerificationBenchmarkIT.class);
+
+    private static final String SECRET = "c2VjcmV0c2VjcmV0c2VjcmV0c2VjcmV0c2VjcmV0c2VjcmV0c2VjcmV0c2VjcmV0";
+
+    @Test
+    public void verify_shouldBeatTheFormerValidateThenParse() throws RunnerException {
+        // ARRANGE
+        Options options = new OptionsBuilder()
+                .include(JwtVerificationBenchmarkIT.class.getSimpleName())
+                .mode(Mode.AverageTime)
+                .timeUnit(TimeUnit.MICROSECONDS)
+                .warmupIterations(3)
+                .warmupTime(TimeValue.seconds(1))
+                .measurementIterations(5)
+                .measurementTime(TimeValue.seconds(1))
+                .forks(1)
+                .build();
+
+        // ACT
+        Collection<RunResult> results = new Runner(options).run();
+
+        // ASSERT
+        Map<String, Double> microsByBenchmark = results.stream().collect(Collectors.toMap(
+                result -> result.getParams().getBenchmark().substring(result.getParams().getBenchmark().lastIndexOf('.') + 1),
+                result -> result.getPrimaryResult().getScore()));
+        LOGGER.info(String.format("Token check, average per request on %d threads: former %.1f us, verify %.1f us, cached verify %.1f us",
+                Tokens.THREADS, microsByBenchmark.get("former"), microsByBenchmark.get("verify"), microsByBenchmark.get("cachedVerify")));
+        assertThat(microsByBenchmark.get("verify")).isLessThan(microsByBenchmark.get("former"));
+        assertThat(microsByBenchmark.get("cachedVerify")).isLessThan(microsByBenchmark.get("verify"));
+    }
+
+    @State(Scope.Benchmark)
+    @Threads(Tokens.THREADS)
+    public static class Tokens {
+        // concurrent requests share the one JwtUtils, as in the application
+        static final int THREADS = 4;
+
+        private JwtUtils jwtUtils;
+        private JwtUtils cachingJwtUtils;
+        private String token;
+
+        @Setup
+        public void setUp() {
+            jwtUtils = new JwtUtils(SECRET, 3_600_000);
+            cachingJwtUtils = new JwtUtils(SECRET, 3_600_000, 1_000);
+            UserDetailsImpl userDetails = UserDetailsImpl.builder().id(1L).username("yoga@studio.com").build();
+            token = jwtUtils.generateJwtToken(new UsernamePasswordAuthenticationToken(userDetails, null));
+        }
+
+        // validateJwtToken then getUserNameFromJwtToken as they were: a parser and a key decoding per call
+        @Benchmark
+        public String former() {
+            Jwts.parser().setSigningKey(SECRET).parseClaimsJws(token);
+            return Jwts.parser().setSigningKey(SECRET).parseClaimsJws(token).getBody().getSubject();
+        }
+
+        @Benchmark
+        public String verify() {
+            return jwtUtils.verify(token).get().getSubject();
+        }
+
+        // the same token on every request, as sent by a signed in client
+        @Benchmark
+        public String cachedVerify() {
+            return cachingJwtUtils.verify(token).get().getSubject();
+        }
+    }
+}
@@ -0,0 +1,129 @@
+package com.openclassrooms.starterjwt.integration.security;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.Arrays;
+import java.util.function.Supplier;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.cache.CacheManager;
+import org.springframework.cache.caffeine.CaffeineCacheManager;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Import;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.transaction.annotation.Transactional;
+
+import com.openclassrooms.starterjwt.integration.BaseIntegrationIT;
+import com.openclassrooms.starterjwt.models.User;
+import com.openclassrooms.starterjwt.repository.UserRepository;
+import com.openclassrooms.starterjwt.security.jwt.JwtClaims;
+import com.openclassrooms.starterjwt.security.jwt.JwtUtils;
+import com.openclassrooms.starterjwt.security.services.TokenVersionService;
+import com.openclassrooms.starterjwt.security.services.UserDetailsImpl;
+
+/**
+ * Compares the principal resolution of AuthTokenFilter before the user claims, a user query per request,
+ * with the principal built from the claims and checked against the cached token version.
+ * Excluded from the default build, run it with {@code mvn verify -Pbenchmark}.
+ */
+@DataJpaTest
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@Transactional
+@Import({TokenVersionService.class, PrincipalResolutionBenchmarkIT.CacheConfig.class})
+@Tag("benchmark")
+public class PrincipalResolutionBenchmarkIT extends BaseIntegrationIT {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(PrincipalResolutionBenchmarkIT.class);
+
+    private static final String SECRET = "c2VjcmV0c2VjcmV0c2VjcmV0c2VjcmV0c2VjcmV0c2VjcmV0c2VjcmV0c2VjcmV0";
+    private static final int REQUESTS = 2_000;
+    private static final int RUNS = 5;
+
+    @TestConfiguration
+    static class CacheConfig {
+        @Bean
+        public CacheManager cacheManager() {
+            return new CaffeineCacheManager(TokenVersionService.TOKEN_VERSIONS_CACHE);
+        }
+    }
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private TokenVersionService tokenVersionService;
+
+    private JwtUtils jwtUtils;
+    private String token;
+
+    @BeforeEach
+    public void init() {
+        User user = userRepository.saveAndFlush(User.builder()
+                .email("benchmark@studio.com")
+                .lastName("lastName")
+                .firstName("firstName")
+                .password("encoded")
+                .admin(false)
+                .build());
+
+        jwtUtils = new JwtUtils(SECRET, 3_600_000);
+        token = jwtUtils.generateJwtToken(new UsernamePasswordAuthenticationToken(UserDetailsImpl.builder()
+                .id(user.getId())
+                .username(user.getEmail())
+                .admin(user.isAdmin())
+                .tokenVersion(user.getTokenVersion())
+                .build(), null));
+    }
+
+    @Test
+    public void claims_shouldResolvePrincipalFasterThanAUserQuery() {
+        // ACT
+        long queryNanos = medianNanos(this::fromUserQuery);
+        long claimsNanos = medianNanos(this::fromClaims);
+
+        // ASSERT
+        LOGGER.info("{} authenticated requests: user query {} ms, claims and cached version {} ms (median of {} runs)",
+                REQUESTS, queryNanos / 1_000_000, claimsNanos / 1_000_000, RUNS);
+        assertThat(claimsNanos).isLessThan(queryNanos);
+    }
+
+    // what AuthTokenFilter did: the token only names the user, who is read back from the database
+    private UserDetailsImpl fromUserQuery() {
+        JwtClaims claims = jwtUtils.verify(token).get();
+        User user = userRepository.findByEmail(claims.getSubject()).get();
+
+        return UserDetailsImpl.builder().id(user.getId()).username(user.getEmail()).admin(user.isAdmin()).build();
+    }
+
+    private UserDetailsImpl fromClaims() {
+        JwtClaims claims = jwtUtils.verify(token).get();
+        assertThat(tokenVersionService.isCurrent(claims.getUserId(), claims.getTokenVersion())).isTrue();
+
+        return UserDetailsImpl.builder().id(claims.getUserId()).username(claims.getSubject()).admin(claims.getAdmin()).build();
+    }
+
+    private long medianNanos(Supplier<UserDetailsImpl> resolution) {
+        // warm-up run, also checks both resolutions find the same user
+        assertThat(resolution.get().getUsername()).isEqualTo("benchmark@studio.com");
+
+        long[] timings = new long[RUNS];
+        for (int i = 0; i < RUNS; i++) {
+            long start = System.nanoTime();
+            for (int request = 0; request < REQUESTS; request++) {
+                resolution.get();
+            }
+            timings[i] = System.nanoTime() - start;
+        }
+        Arrays.sort(timings);
+
+        return timings[RUNS / 2];
+    }
+}
@@ -2,6 +2,7 @@ package com.openclassrooms.starterjwt.unit.controllers;
 
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 import java.time.LocalDateTime;
@@ -12,6 +13,7 @@ import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Tag;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
@@ -33,6 +35,7 @@ import com.openclassrooms.starterjwt.payload.response.MessageResponse;
 import com.openclassrooms.starterjwt.repository.UserRepository;
 import com.openclassrooms.starterjwt.security.jwt.JwtUtils;
 import com.openclassrooms.starterjwt.security.services.UserDetailsImpl;
+import com.openclassrooms.starterjwt.security.services.UserDetailsServiceImpl;
 
 @Tag("unit")
 @ExtendWith(MockitoExtension.class)
@@ -56,6 +59,9 @@ public class AuthControllerTests {
     @Mock
     UserRepository userRepository;
 
+    @Mock
+    UserDetailsServiceImpl userDetailsService;
+
     @InjectMocks
     AuthController authController;
 
@@ -119,7 +125,7 @@ public class AuthControllerTests {
 
         when(authenticationManager.authenticate(any(UsernamePasswordAuthenticationToken.class)))
                 .thenReturn(authentication);
-        when(jwtUtils.generateJwtToken(authentication)).thenReturn(token);
+        when(jwtUtils.generateJwtToken(any(UserDetailsImpl.class))).thenReturn(token);
         when(authentication.getPrincipal()).thenReturn(userDetailsImpl);
         when(userRepository.findByEmail(userDetailsImpl.getUsername())).thenReturn(Optional.of(user));
 
@@ -138,6 +144,29 @@ public class AuthControllerTests {
         assertThat(actualResponse.getAdmin()).isEqualTo(jwtResponse.getAdmin());
     }
 
+    @Test
+    public void authenticateUser_shouldSignTheTokenVersionOfTheDatabase_whenThePrincipalIsStale() {
+        // ARRANGE
+        LoginRequest loginRequest = new LoginRequest();
+        loginRequest.setEmail(user.getEmail());
+        loginRequest.setPassword(user.getPassword());
+        user.setTokenVersion(3);
+
+        when(authenticationManager.authenticate(any(UsernamePasswordAuthenticationToken.class)))
+                .thenReturn(authentication);
+        when(authentication.getPrincipal()).thenReturn(userDetailsImpl.withTokenVersion(2));
+        when(userRepository.findByEmail(userDetailsImpl.getUsername())).thenReturn(Optional.of(user));
+
+        // ACT
+        authController.authenticateUser(loginRequest);
+
+        // ASSERT
+        ArgumentCaptor<UserDetailsImpl> signed = ArgumentCaptor.forClass(UserDetailsImpl.class);
+        verify(jwtUtils).generateJwtToken(signed.capture());
+        assertThat(signed.getValue().getTokenVersion()).isEqualTo(3);
+        assertThat(signed.getValue().getId()).isEqualTo(1L);
+    }
+
     @Test
     public void register_shouldSaveUserAndReturnMessage_whenUserNotAlreadyRegistered() {
         // ARRANGE
@@ -158,6 +187,7 @@ public class AuthControllerTests {
         MessageResponse actualMessageResponse = (MessageResponse) response.getBody();
         assertThat(response.getStatusCode()).isEqualTo(HttpStatus.OK);
         assertThat(actualMessageResponse.getMessage()).isEqualTo("User registered successfully!");
+        verify(userDetailsService).evict(signupRequest.getEmail());
     }
 
     @Test
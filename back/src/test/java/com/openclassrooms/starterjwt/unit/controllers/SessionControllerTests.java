@@ -3,31 +3,60 @@ package com.openclassrooms.starterjwt.unit.controllers;
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.isNull;
+import static org.mockito.Mockito.doAnswer;
 import static org.mockito.Mockito.doNothing;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 import java.time.LocalDateTime;
+import java.io.ByteArrayOutputStream;
 import java.util.Date;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Consumer;
 
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Tag;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
+import org.mockito.Spy;
 import org.mockito.junit.jupiter.MockitoExtension;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContext;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
 import com.openclassrooms.starterjwt.controllers.SessionController;
+import com.openclassrooms.starterjwt.dto.EnrollmentResultDto;
 import com.openclassrooms.starterjwt.dto.SessionDto;
+import com.openclassrooms.starterjwt.dto.SessionSummaryDto;
+import com.openclassrooms.starterjwt.dto.WaitlistPositionDto;
+import com.openclassrooms.starterjwt.idempotency.IdempotencyStore;
 import com.openclassrooms.starterjwt.mapper.SessionMapper;
+import com.openclassrooms.starterjwt.mapper.SessionSummaryMapper;
 import com.openclassrooms.starterjwt.models.Session;
 import com.openclassrooms.starterjwt.models.Teacher;
 import com.openclassrooms.starterjwt.models.User;
+import com.openclassrooms.starterjwt.pagination.KeysetPage;
+import com.openclassrooms.starterjwt.repository.ParticipationKey;
+import com.openclassrooms.starterjwt.repository.projection.CollectionVersion;
+import com.openclassrooms.starterjwt.repository.projection.SessionSummaryView;
+import com.openclassrooms.starterjwt.security.services.UserDetailsImpl;
+import com.openclassrooms.starterjwt.services.EnrollmentService;
+import com.openclassrooms.starterjwt.services.EnrollmentStatus;
+import com.openclassrooms.starterjwt.services.ParticipationCommand;
+import com.openclassrooms.starterjwt.services.ParticipationCommandQueue;
+import com.openclassrooms.starterjwt.services.ParticipationStatus;
 import com.openclassrooms.starterjwt.services.SessionService;
 
 @Tag("unit")
@@ -37,9 +66,30 @@ public class SessionControllerTests {
     @Mock
     SessionMapper sessionMapper;
 
+    @Mock
+    SessionSummaryMapper sessionSummaryMapper;
+
     @Mock
     SessionService sessionService;
 
+    @Mock
+    EnrollmentService enrollmentService;
+
+    @Mock
+    ParticipationCommandQueue participationCommandQueue;
+
+    @Mock
+    SecurityContext securityContext;
+
+    @Mock
+    Authentication authentication;
+
+    @Spy
+    ObjectMapper objectMapper = new ObjectMapper().findAndRegisterModules();
+
+    @Spy
+    IdempotencyStore idempotencyStore = new IdempotencyStore(100, 60);
+
     @InjectMocks
     SessionController sessionController;
 
@@ -67,7 +117,7 @@ public class SessionControllerTests {
                 .updatedAt(updatedAt)
                 .build();
 
-        List<User> users = List.of(user);
+        Set<User> users = Set.of(user);
         List<Long> userIds = List.of(user.getId());
 
         teacher = Teacher.builder()
@@ -95,6 +145,7 @@ public class SessionControllerTests {
                 teacher.getId(),
                 "description",
                 userIds,
+                null,
                 createdAt,
                 updatedAt);
 
@@ -109,7 +160,7 @@ public class SessionControllerTests {
         when(sessionMapper.toDto(session)).thenReturn(sessionDto);
 
         // ACT
-        ResponseEntity<?> response = sessionController.findById(session.getId().toString());
+        ResponseEntity<?> response = sessionController.findById(session.getId().toString(), null);
 
         // ASSERT
         assertThat(response.getStatusCode()).isEqualTo(HttpStatus.OK);
@@ -118,13 +169,48 @@ public class SessionControllerTests {
         verify(sessionMapper).toDto(session);
     }
 
+    @Test
+    public void findById_shouldReturnNotModified_whenETagMatches() {
+        // ARRANGE
+        when(sessionService.getById(session.getId())).thenReturn(session);
+        when(sessionMapper.toDto(session)).thenReturn(sessionDto);
+        String eTag = sessionController.findById(session.getId().toString(), null).getHeaders().getETag();
+
+        // ACT
+        ResponseEntity<?> response = sessionController.findById(session.getId().toString(), "W/" + eTag);
+
+        // ASSERT
+        assertThat(eTag).isNotNull();
+        assertThat(response.getStatusCode()).isEqualTo(HttpStatus.NOT_MODIFIED);
+        assertThat(response.getHeaders().getETag()).isEqualTo(eTag);
+        assertThat(response.getBody()).isNull();
+        verify(sessionMapper, times(1)).toDto(session);
+    }
+
+    @Test
+    public void findById_shouldReturnSessionDto_whenSessionChangedSinceETag() {
+        // ARRANGE
+        when(sessionService.getById(session.getId())).thenReturn(session);
+        when(sessionMapper.toDto(session)).thenReturn(sessionDto);
+        String eTag = sessionController.findById(session.getId().toString(), null).getHeaders().getETag();
+        session.setUpdatedAt(session.getUpdatedAt().plusSeconds(1));
+
+        // ACT
+        ResponseEntity<?> response = sessionController.findById(session.getId().toString(), eTag);
+
+        // ASSERT
+        assertThat(response.getStatusCode()).isEqualTo(HttpStatus.OK);
+        assertThat(response.getHeaders().getETag()).isNotEqualTo(eTag);
+        assertThat(response.getBody()).isEqualTo(sessionDto);
+    }
+
     @Test
     public void findById_shouldReturnNotFound_whenSessionNotExists() {
         // ARRANGE
         when(sessionService.getById(session.getId())).thenReturn(null);
 
         // ACT
-        ResponseEntity<?> response = sessionController.findById(session.getId().toString());
+        ResponseEntity<?> response = sessionController.findById(session.getId().toString(), null);
 
         // ASSERT
         assertThat(response.getStatusCode()).isEqualTo(HttpStatus.NOT_FOUND);
@@ -135,7 +221,7 @@ public class SessionControllerTests {
     @Test
     public void findById_shouldReturnBadRequest_whenRequestWithBadNumberFormat() {
         // ACT
-        ResponseEntity<?> response = sessionController.findById("abc");
+        ResponseEntity<?> response = sessionController.findById("abc", null);
 
         // ASSERT
         assertThat(response.getStatusCode()).isEqualTo(HttpStatus.BAD_REQUEST);
@@ -145,11 +231,12 @@ public class SessionControllerTests {
     @Test
     public void findAll_shouldReturnListSessionDtos_whenListSessionsExist() {
         // ARRANGE
+        when(sessionService.getCollectionVersion()).thenReturn(collectionVersion(1L, LocalDateTime.now()));
         when(sessionService.findAll()).thenReturn(sessions);
         when(sessionMapper.toDto(sessions)).thenReturn(sessionDtos);
 
         // ACT
-        ResponseEntity<?> response = sessionController.findAll();
+        ResponseEntity<?> response = sessionController.findAll(null, null, null, null, null, null);
 
         // ASSERT
         assertThat(response.getStatusCode()).isEqualTo(HttpStatus.OK);
@@ -157,6 +244,154 @@ public class SessionControllerTests {
         verify(sessionMapper).toDto(sessions);
     }
 
+    @Test
+    public void findAll_shouldReturnNotModified_withoutLoadingSessions_whenETagMatches() {
+        // ARRANGE
+        LocalDateTime lastUpdatedAt = LocalDateTime.now();
+        when(sessionService.getCollectionVersion()).thenReturn(collectionVersion(1L, lastUpdatedAt));
+        when(sessionService.findAll()).thenReturn(sessions);
+        when(sessionMapper.toDto(sessions)).thenReturn(sessionDtos);
+        String eTag = sessionController.findAll(null, null, null, null, null, null).getHeaders().getETag();
+
+        // ACT
+        ResponseEntity<?> response = sessionController.findAll(null, null, null, null, null, "\"other\", " + eTag);
+
+        // ASSERT
+        assertThat(response.getStatusCode()).isEqualTo(HttpStatus.NOT_MODIFIED);
+        assertThat(response.getHeaders().getETag()).isEqualTo(eTag);
+        verify(sessionService, times(1)).findAll();
+    }
+
+    @Test
+    public void findAll_shouldReturnPageOfSessionDtos_whenPageRequested() {
+        // ARRANGE
+        when(sessionService.getCollectionVersion()).thenReturn(collectionVersion(1L, LocalDateTime.now()));
+        when(sessionService.findPage(null, 1, null, null)).thenReturn(new KeysetPage<>(sessions, "next"));
+        when(sessionMapper.toDto(sessions)).thenReturn(sessionDtos);
+
+        // ACT
+        ResponseEntity<?> response = sessionController.findAll(null, 1, null, null, null, null);
+
+        // ASSERT
+        assertThat(response.getStatusCode()).isEqualTo(HttpStatus.OK);
+        KeysetPage<?> page = (KeysetPage<?>) response.getBody();
+        assertThat(page.getItems()).isEqualTo(sessionDtos);
+        assertThat(page.getNextCursor()).isEqualTo("next");
+        verify(sessionService, times(0)).findAll();
+    }
+
+    @Test
+    public void findAll_shouldReturnAnotherETag_forEachPageAndRange() {
+        // ARRANGE
+        when(sessionService.getCollectionVersion()).thenReturn(collectionVersion(1L, LocalDateTime.now()));
+        when(sessionService.findPage(any(), any(), any(), any())).thenReturn(new KeysetPage<>(sessions, "next"));
+        when(sessionMapper.toDto(sessions)).thenReturn(sessionDtos);
+        String firstPage = sessionController.findAll(null, 1, null, null, null, null).getHeaders().getETag();
+
+        // ACT
+        ResponseEntity<?> secondPage = sessionController.findAll("next", 1, null, null, null, firstPage);
+        ResponseEntity<?> range = sessionController.findAll(null, 1, new Date(0), null, null, firstPage);
+        ResponseEntity<?> samePage = sessionController.findAll(null, 1, null, null, null, firstPage);
+
+        // ASSERT
+        assertThat(secondPage.getStatusCode()).isEqualTo(HttpStatus.OK);
+        assertThat(secondPage.getHeaders().getETag()).isNotEqualTo(firstPage);
+        assertThat(range.getStatusCode()).isEqualTo(HttpStatus.OK);
+        assertThat(range.getHeaders().getETag()).isNotIn(firstPage, secondPage.getHeaders().getETag());
+        assertThat(samePage.getStatusCode()).isEqualTo(HttpStatus.NOT_MODIFIED);
+    }
+
+    @Test
+    public void findAll_shouldReturnUpcomingPage_withoutETag_whenUpcomingRequested() {
+        // ARRANGE
+        Date before = new Date();
+        when(sessionService.findPage(isNull(), isNull(), any(Date.class), isNull())).thenReturn(new KeysetPage<>(sessions, null));
+        when(sessionMapper.toDto(sessions)).thenReturn(sessionDtos);
+
+        // ACT: a tag sent back is ignored, the sessions that started since must leave the list
+        ResponseEntity<?> response = sessionController.findAll(null, null, null, null, true, "*");
+
+        // ASSERT
+        ArgumentCaptor<Date> from = ArgumentCaptor.forClass(Date.class);
+        verify(sessionService).findPage(isNull(), isNull(), from.capture(), isNull());
+        assertThat(from.getValue()).isAfterOrEqualTo(before);
+        assertThat(response.getStatusCode()).isEqualTo(HttpStatus.OK);
+        assertThat(response.getHeaders().getETag()).isNull();
+        assertThat(((KeysetPage<?>) response.getBody()).getItems()).isEqualTo(sessionDtos);
+        verify(sessionService, times(0)).getCollectionVersion();
+    }
+
+    @Test
+    public void findAll_shouldReturnBadRequest_whenUpcomingCombinedWithFrom() {
+        // ACT
+        ResponseEntity<?> response = sessionController.findAll(null, null, new Date(), null, true, null);
+
+        // ASSERT
+        assertThat(response.getStatusCode()).isEqualTo(HttpStatus.BAD_REQUEST);
+        verify(sessionService, times(0)).findPage(any(), any(), any(), any());
+    }
+
+    @Test
+    public void search_shouldReturnMatchingSessionDtos() {
+        // ARRANGE
+        when(sessionService.search("yoga", null)).thenReturn(sessions);
+        when(sessionMapper.toDto(sessions)).thenReturn(sessionDtos);
+
+        // ACT
+        ResponseEntity<?> response = sessionController.search("yoga", null);
+
+        // ASSERT
+        assertThat(response.getStatusCode()).isEqualTo(HttpStatus.OK);
+        assertThat(response.getBody()).isEqualTo(sessionDtos);
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void export_shouldWriteEveryChunkAsOneJsonArray() throws Exception {
+        // ARRANGE
+        doAnswer(invocation -> {
+            Consumer<List<Session>> consumer = invocation.getArgument(0);
+            consumer.accept(sessions);
+            consumer.accept(sessions);
+            return null;
+        }).when(sessionService).forEachChunk(any());
+        when(sessionMapper.toDto(session)).thenReturn(sessionDto);
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+
+        // ACT
+        ResponseEntity<StreamingResponseBody> response = sessionController.export();
+        response.getBody().writeTo(outputStream);
+
+        // ASSERT
+        assertThat(response.getStatusCode()).isEqualTo(HttpStatus.OK);
+        List<Object> written = objectMapper.readValue(outputStream.toByteArray(), List.class);
+        assertThat(written).hasSize(2);
+        verify(sessionMapper, times(2)).toDto(session);
+    }
+
+    @Test
+    public void findAllSummaries_shouldReturnSummariesForCurrentUser() {
+        // ARRANGE
+        UserDetailsImpl userDetails = UserDetailsImpl.builder().id(user.getId()).username(user.getEmail()).build();
+        List<SessionSummaryView> views = List.of();
+        List<SessionSummaryDto> summaries = List.of(
+                new SessionSummaryDto(1L, "a session", new Date(), teacher.getId(), "description", 1L, true));
+
+        when(securityContext.getAuthentication()).thenReturn(authentication);
+        when(authentication.getPrincipal()).thenReturn(userDetails);
+        SecurityContextHolder.setContext(securityContext);
+        when(sessionService.findAllSummaries(user.getId())).thenReturn(views);
+        when(sessionSummaryMapper.toDto(views)).thenReturn(summaries);
+
+        // ACT
+        ResponseEntity<?> response = sessionController.findAllSummaries();
+
+        // ASSERT
+        assertThat(response.getStatusCode()).isEqualTo(HttpStatus.OK);
+        assertThat(response.getBody()).isEqualTo(summaries);
+        verify(sessionService).findAllSummaries(user.getId());
+    }
+
     @Test
     public void create_shouldReturnSessionDto_whenRequestSuccessful() {
         // ARRANGE
@@ -165,7 +400,7 @@ public class SessionControllerTests {
         when(sessionMapper.toDto(session)).thenReturn(sessionDto);
 
         // ACT
-        ResponseEntity<?> response = sessionController.create(sessionDto);
+        ResponseEntity<?> response = sessionController.create(sessionDto, null);
 
         // ASSERT
         assertThat(response.getStatusCode()).isEqualTo(HttpStatus.OK);
@@ -174,6 +409,22 @@ public class SessionControllerTests {
         verify(sessionService).create(session);
     }
 
+    @Test
+    public void create_shouldNotCreateTwice_whenIdempotencyKeyRepeated() {
+        // ARRANGE
+        when(sessionMapper.toEntity(sessionDto)).thenReturn(session);
+        when(sessionService.create(session)).thenReturn(session);
+        when(sessionMapper.toDto(session)).thenReturn(sessionDto);
+        ResponseEntity<?> first = sessionController.create(sessionDto, "create-key");
+
+        // ACT
+        ResponseEntity<?> replay = sessionController.create(sessionDto, "create-key");
+
+        // ASSERT
+        assertThat(replay).isSameAs(first);
+        verify(sessionService, times(1)).create(session);
+    }
+
     @Test
     public void update_shouldReturnSessionDto_whenSessionToUpdateExists() {
         // ARRANGE
@@ -243,19 +494,101 @@ public class SessionControllerTests {
     @Test
     public void participate_shouldReturnOK_whenIDsAreValid() {
         // ARRANGE
-        doNothing().when(sessionService).participate(session.getId(), user.getId());
+        when(sessionService.participate(session.getId(), user.getId())).thenReturn(ParticipationStatus.PARTICIPATING);
 
         // ACT
-        ResponseEntity<?> response = sessionController.participate(session.getId().toString(), user.getId().toString());
+        ResponseEntity<?> response = sessionController.participate(session.getId().toString(), user.getId().toString(), null);
 
         // ASSERT
         assertThat(response.getStatusCode()).isEqualTo(HttpStatus.OK);
     }
 
+    @Test
+    public void participate_shouldReturnAccepted_whenUserIsWaitlisted() {
+        // ARRANGE
+        when(sessionService.participate(session.getId(), user.getId())).thenReturn(ParticipationStatus.WAITLISTED);
+
+        // ACT
+        ResponseEntity<?> response = sessionController.participate(session.getId().toString(), user.getId().toString(), null);
+
+        // ASSERT
+        assertThat(response.getStatusCode()).isEqualTo(HttpStatus.ACCEPTED);
+    }
+
+    @Test
+    public void participate_shouldQueueAndReturnAccepted_whenWriteBehindEnabled() {
+        // ARRANGE
+        when(participationCommandQueue.isEnabled()).thenReturn(true);
+
+        // ACT
+        ResponseEntity<?> response = sessionController.participate(session.getId().toString(), user.getId().toString(), null);
+
+        // ASSERT
+        assertThat(response.getStatusCode()).isEqualTo(HttpStatus.ACCEPTED);
+        verify(participationCommandQueue).submit(ParticipationCommand.join(session.getId(), user.getId()));
+        verify(sessionService, times(0)).participate(anyLong(), anyLong());
+    }
+
+    @Test
+    public void participate_shouldReplayFirstResponse_whenIdempotencyKeyRepeated() {
+        // ARRANGE
+        when(sessionService.participate(session.getId(), user.getId())).thenReturn(ParticipationStatus.PARTICIPATING);
+        sessionController.participate(session.getId().toString(), user.getId().toString(), "retry-key");
+
+        // ACT
+        ResponseEntity<?> response = sessionController.participate(session.getId().toString(), user.getId().toString(), "retry-key");
+
+        // ASSERT
+        assertThat(response.getStatusCode()).isEqualTo(HttpStatus.OK);
+        verify(sessionService, times(1)).participate(session.getId(), user.getId());
+    }
+
     @Test
     public void participate_shouldReturnBadRequest_whenIDsAreNotValid() {
         // ACT
-        ResponseEntity<?> response = sessionController.participate("abc", "abc");
+        ResponseEntity<?> response = sessionController.participate("abc", "abc", null);
+
+        // ASSERT
+        assertThat(response.getStatusCode()).isEqualTo(HttpStatus.BAD_REQUEST);
+    }
+
+    @Test
+    public void participateAll_shouldReturnStatusPerUser() {
+        // ARRANGE
+        Map<ParticipationKey, EnrollmentStatus> statuses = new LinkedHashMap<>();
+        statuses.put(new ParticipationKey(session.getId(), user.getId()), EnrollmentStatus.PARTICIPATING);
+        statuses.put(new ParticipationKey(session.getId(), 99L), EnrollmentStatus.UNKNOWN_USER);
+        when(enrollmentService.enrollUsers(session.getId(), List.of(user.getId(), 99L))).thenReturn(statuses);
+
+        // ACT
+        ResponseEntity<?> response = sessionController.participateAll(session.getId().toString(), List.of(user.getId(), 99L));
+
+        // ASSERT
+        assertThat(response.getStatusCode()).isEqualTo(HttpStatus.OK);
+        assertThat(response.getBody()).isEqualTo(List.of(
+                new EnrollmentResultDto(session.getId(), user.getId(), EnrollmentStatus.PARTICIPATING),
+                new EnrollmentResultDto(session.getId(), 99L, EnrollmentStatus.UNKNOWN_USER)));
+    }
+
+    @Test
+    public void participateInAll_shouldReturnStatusPerSession() {
+        // ARRANGE
+        when(enrollmentService.enrollInSessions(user.getId(), List.of(session.getId()))).thenReturn(
+                Map.of(new ParticipationKey(session.getId(), user.getId()), EnrollmentStatus.WAITLISTED));
+
+        // ACT
+        ResponseEntity<?> response = sessionController.participateInAll(user.getId().toString(), List.of(session.getId()));
+
+        // ASSERT
+        assertThat(response.getStatusCode()).isEqualTo(HttpStatus.OK);
+        assertThat(response.getBody()).isEqualTo(List.of(
+                new EnrollmentResultDto(session.getId(), user.getId(), EnrollmentStatus.WAITLISTED)));
+    }
+
+    @Test
+    public void participateInAll_shouldReturnBadRequest_whenIDIsNotValid() {
+        // ACT
+        ResponseEntity<?> response = sessionController.participateInAll("abc", List.of(1L));
 
         // ASSERT
         assertThat(response.getStatusCode()).isEqualTo(HttpStatus.BAD_REQUEST);
@@ -274,6 +607,19 @@ public class SessionControllerTests {
         assertThat(response.getStatusCode()).isEqualTo(HttpStatus.OK);
     }
 
+    @Test
+    public void noLongerParticipate_shouldQueueAndReturnAccepted_whenWriteBehindEnabled() {
+        // ARRANGE
+        when(participationCommandQueue.isEnabled()).thenReturn(true);
+
+        // ACT
+        ResponseEntity<?> response = sessionController.noLongerParticipate(session.getId().toString(), user.getId().toString());
+
+        // ASSERT
+        assertThat(response.getStatusCode()).isEqualTo(HttpStatus.ACCEPTED);
+        verify(participationCommandQueue).submit(ParticipationCommand.leave(session.getId(), user.getId()));
+    }
+
     @Test
     public void noLongerParticipate_shouldReturnBadRequest_whenIDsAreNotValid() {
         // ACT
@@ -283,4 +629,39 @@ public class SessionControllerTests {
         assertThat(response.getStatusCode()).isEqualTo(HttpStatus.BAD_REQUEST);
     }
 
+    private static CollectionVersion collectionVersion(Long count, LocalDateTime lastUpdatedAt) {
+        return new CollectionVersion() {
+            @Override
+            public Long getCount() {
+                return count;
+            }
+
+            @Override
+            public LocalDateTime getLastUpdatedAt() {
+                return lastUpdatedAt;
+            }
+        };
+    }
+
+    @Test
+    public void findWaitlistPosition_shouldReturnPosition_whenUserIsWaiting() {
+        // ARRANGE
+        when(sessionService.getWaitlistPosition(session.getId(), user.getId())).thenReturn(3L);
+
+        // ACT
+        ResponseEntity<?> response = sessionController.findWaitlistPosition(session.getId().toString(), user.getId().toString());
+
+        // ASSERT
+        assertThat(response.getStatusCode()).isEqualTo(HttpStatus.OK);
+        assertThat(response.getBody()).isEqualTo(new WaitlistPositionDto(session.getId(), user.getId(), 3L));
+    }
+
+    @Test
+    public void findWaitlistPosition_shouldReturnBadRequest_whenIDsAreNotValid() {
+        // ACT
+        ResponseEntity<?> response = sessionController.findWaitlistPosition("abc", "abc");
+
+        // ASSERT
+        assertThat(response.getStatusCode()).isEqualTo(HttpStatus.BAD_REQUEST);
+    }
 }
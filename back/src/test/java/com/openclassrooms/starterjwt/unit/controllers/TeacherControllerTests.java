@@ -23,6 +23,7 @@ import com.openclassrooms.starterjwt.controllers.TeacherController;
 import com.openclassrooms.starterjwt.dto.TeacherDto;
 import com.openclassrooms.starterjwt.mapper.TeacherMapper;
 import com.openclassrooms.starterjwt.models.Teacher;
+import com.openclassrooms.starterjwt.repository.projection.CollectionVersion;
 import com.openclassrooms.starterjwt.services.TeacherService;
 
 @Tag("unit")
@@ -110,11 +111,12 @@ public class TeacherControllerTests {
     @Test
     public void findAll_shouldReturnListOfTeacherDtos_whenListTeachersExist() {
         // ARRANGE
+        when(teacherService.getCollectionVersion()).thenReturn(collectionVersion(1L, LocalDateTime.now()));
         when(teacherService.findAll()).thenReturn(teachers);
         when(teacherMapper.toDto(teachers)).thenReturn(teacherDtos);
 
         // ACT
-        ResponseEntity<?> response = teacherController.findAll();
+        ResponseEntity<?> response = teacherController.findAll(null);
 
         // ASSERT
         assertThat(response.getStatusCode()).isEqualTo(HttpStatus.OK);
@@ -123,4 +125,55 @@ public class TeacherControllerTests {
         verify(teacherMapper).toDto(teachers);
     }
 
+    @Test
+    public void findAll_shouldReturnNotModified_withoutLoadingTeachers_whenETagMatches() {
+        // ARRANGE
+        LocalDateTime lastUpdatedAt = LocalDateTime.now();
+        when(teacherService.getCollectionVersion()).thenReturn(collectionVersion(1L, lastUpdatedAt));
+        when(teacherService.findAll()).thenReturn(teachers);
+        when(teacherMapper.toDto(teachers)).thenReturn(teacherDtos);
+        String eTag = teacherController.findAll(null).getHeaders().getETag();
+
+        // ACT
+        ResponseEntity<?> response = teacherController.findAll(eTag);
+
+        // ASSERT
+        assertThat(response.getStatusCode()).isEqualTo(HttpStatus.NOT_MODIFIED);
+        assertThat(response.getHeaders().getETag()).isEqualTo(eTag);
+        verify(teacherService, times(1)).findAll();
+    }
+
+    @Test
+    public void findAll_shouldReturnListOfTeacherDtos_whenTeachersChangedSinceETag() {
+        // ARRANGE
+        LocalDateTime lastUpdatedAt = LocalDateTime.now();
+        when(teacherService.getCollectionVersion())
+                .thenReturn(collectionVersion(1L, lastUpdatedAt))
+                .thenReturn(collectionVersion(2L, lastUpdatedAt));
+        when(teacherService.findAll()).thenReturn(teachers);
+        when(teacherMapper.toDto(teachers)).thenReturn(teacherDtos);
+        String eTag = teacherController.findAll(null).getHeaders().getETag();
+
+        // ACT
+        ResponseEntity<?> response = teacherController.findAll(eTag);
+
+        // ASSERT
+        assertThat(response.getStatusCode()).isEqualTo(HttpStatus.OK);
+        assertThat(response.getBody()).isEqualTo(teacherDtos);
+        verify(teacherService, times(2)).findAll();
+    }
+
+    private static CollectionVersion collectionVersion(Long count, LocalDateTime lastUpdatedAt) {
+        return new CollectionVersion() {
+            @Override
+            public Long getCount() {
+                return count;
+            }
+
+            @Override
+            public LocalDateTime getLastUpdatedAt() {
+                return lastUpdatedAt;
+            }
+        };
+    }
 }
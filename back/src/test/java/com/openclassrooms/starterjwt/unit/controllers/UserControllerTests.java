@@ -3,6 +3,9 @@ package com.openclassrooms.starterjwt.unit.controllers;
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.isNull;
 import static org.mockito.Mockito.doNothing;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
@@ -10,6 +13,8 @@ import static org.mockito.Mockito.when;
 
 import java.time.LocalDateTime;
 import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
 
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Tag;
@@ -26,9 +31,14 @@ import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.security.core.userdetails.UserDetails;
 
 import com.openclassrooms.starterjwt.controllers.UserController;
+import com.openclassrooms.starterjwt.dto.SessionSummaryDto;
 import com.openclassrooms.starterjwt.dto.UserDto;
+import com.openclassrooms.starterjwt.mapper.SessionSummaryMapper;
 import com.openclassrooms.starterjwt.mapper.UserMapper;
 import com.openclassrooms.starterjwt.models.User;
+import com.openclassrooms.starterjwt.pagination.KeysetPage;
+import com.openclassrooms.starterjwt.repository.projection.SessionSummaryView;
+import com.openclassrooms.starterjwt.services.SessionService;
 import com.openclassrooms.starterjwt.services.UserService;
 
 @Tag("unit")
@@ -41,6 +51,12 @@ public class UserControllerTests {
     @Mock
     private UserMapper userMapper;
 
+    @Mock
+    private SessionService sessionService;
+
+    @Mock
+    private SessionSummaryMapper sessionSummaryMapper;
+
     @Mock
     SecurityContext securityContext;
 
@@ -184,6 +200,46 @@ public class UserControllerTests {
         verify(userService, times(0)).delete(anyLong());
     }
 
+    @Test
+    public void revokeTokens_shouldRevoke_whenAuthenticatedUserRevokesOwnTokens() {
+        // ARRANGE
+        when(userService.findById(user.getId())).thenReturn(user);
+        UserDetails userDetails = new org.springframework.security.core.userdetails.User(
+                user.getEmail(),
+                user.getPassword(),
+                new ArrayList<>());
+        when(securityContext.getAuthentication()).thenReturn(authentication);
+        when(authentication.getPrincipal()).thenReturn(userDetails);
+        SecurityContextHolder.setContext(securityContext);
+
+        // ACT
+        ResponseEntity<?> response = userController.revokeTokens(user.getId().toString());
+
+        // ASSERT
+        assertThat(response.getStatusCode()).isEqualTo(HttpStatus.OK);
+        verify(userService).revokeTokens(user.getId());
+    }
+
+    @Test
+    public void revokeTokens_shouldReturnUnauthorized_whenAuthenticatedUserIsDifferent() {
+        // ARRANGE
+        when(userService.findById(user.getId())).thenReturn(user);
+        UserDetails userDetails = new org.springframework.security.core.userdetails.User(
+                "otherUSer@email.com",
+                "otherPassword",
+                new ArrayList<>());
+        when(securityContext.getAuthentication()).thenReturn(authentication);
+        when(authentication.getPrincipal()).thenReturn(userDetails);
+        SecurityContextHolder.setContext(securityContext);
+
+        // ACT
+        ResponseEntity<?> response = userController.revokeTokens(user.getId().toString());
+
+        // ASSERT
+        assertThat(response.getStatusCode()).isEqualTo(HttpStatus.UNAUTHORIZED);
+        verify(userService, times(0)).revokeTokens(anyLong());
+    }
+
     @Test
     public void save_shouldReturnBadRequest_whenRequestWithBadNumberFormat() {
         // ACT
@@ -193,4 +249,43 @@ public class UserControllerTests {
         assertThat(response.getStatusCode()).isEqualTo(HttpStatus.BAD_REQUEST);
         verify(userService, times(0)).delete(anyLong());
     }
+
+    @Test
+    public void findSessions_shouldReturnPageOfSessionSummaries() {
+        // ARRANGE
+        List<SessionSummaryView> views = List.of();
+        List<SessionSummaryDto> dtos = List.of(new SessionSummaryDto(2L, "a session", new Date(), 3L, "description", 4, true));
+        when(sessionService.findBookedPage(user.getId(), "cursor", 10, null, null)).thenReturn(new KeysetPage<>(views, "next"));
+        when(sessionSummaryMapper.toDto(views)).thenReturn(dtos);
+
+        // ACT
+        ResponseEntity<?> response = userController.findSessions(user.getId().toString(), "cursor", 10, null);
+
+        // ASSERT
+        assertThat(response.getStatusCode()).isEqualTo(HttpStatus.OK);
+        assertThat(response.getBody()).isEqualTo(new KeysetPage<>(dtos, "next"));
+    }
+
+    @Test
+    public void findSessions_shouldFilterFromNow_whenUpcoming() {
+        // ARRANGE
+        Date before = new Date();
+        when(sessionService.findBookedPage(eq(user.getId()), isNull(), isNull(), any(Date.class), isNull())).thenReturn(new KeysetPage<>(List.of(), null));
+
+        // ACT
+        ResponseEntity<?> response = userController.findSessions(user.getId().toString(), null, null, true);
+
+        // ASSERT
+        assertThat(response.getStatusCode()).isEqualTo(HttpStatus.OK);
+        verify(sessionService).findBookedPage(eq(user.getId()), isNull(), isNull(), argThat(from -> !from.before(before)), isNull());
+    }
+
+    @Test
+    public void findSessions_shouldReturnBadRequest_whenRequestWithBadNumberFormat() {
+        // ACT
+        ResponseEntity<?> response = userController.findSessions("abc", null, null, null);
+
+        // ASSERT
+        assertThat(response.getStatusCode()).isEqualTo(HttpStatus.BAD_REQUEST);
+    }
 }
@@ -0,0 +1,162 @@
+package com.openclassrooms.starterjwt.unit.idempotency;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.Assert.assertThrows;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.context.SecurityContextHolder;
+
+import com.openclassrooms.starterjwt.exception.BadRequestException;
+import com.openclassrooms.starterjwt.exception.NotFoundException;
+import com.openclassrooms.starterjwt.exception.UnprocessableEntityException;
+import com.openclassrooms.starterjwt.idempotency.IdempotencyStore;
+
+@Tag("unit")
+public class IdempotencyStoreTests {
+
+    private IdempotencyStore idempotencyStore;
+    private AtomicInteger runs;
+
+    @BeforeEach
+    public void init() {
+        idempotencyStore = new IdempotencyStore(100, 60);
+        runs = new AtomicInteger();
+        authenticateAs("yoga@studio.com");
+    }
+
+    @AfterEach
+    public void clean() {
+        SecurityContextHolder.clearContext();
+    }
+
+    private static void authenticateAs(String username) {
+        SecurityContextHolder.getContext().setAuthentication(new UsernamePasswordAuthenticationToken(username, null, List.of()));
+    }
+
+    private ResponseEntity<?> countedOk() {
+        return ResponseEntity.ok(runs.incrementAndGet());
+    }
+
+    @Test
+    public void execute_shouldReplayStoredResponse_whenKeyRepeated() {
+        // ACT
+        ResponseEntity<?> first = idempotencyStore.execute("key", "request", this::countedOk);
+        ResponseEntity<?> replay = idempotencyStore.execute("key", "request", this::countedOk);
+
+        // ASSERT
+        assertThat(replay).isSameAs(first);
+        assertThat(runs).hasValue(1);
+    }
+
+    @Test
+    public void execute_shouldRunEveryTime_whenNoKey() {
+        // ACT
+        idempotencyStore.execute(null, "request", this::countedOk);
+        idempotencyStore.execute(null, "request", this::countedOk);
+
+        // ASSERT
+        assertThat(runs).hasValue(2);
+    }
+
+    @Test
+    public void execute_shouldScopeKeysToTheUser() {
+        // ARRANGE
+        idempotencyStore.execute("key", "request", this::countedOk);
+        authenticateAs("other@studio.com");
+
+        // ACT
+        idempotencyStore.execute("key", "request", this::countedOk);
+
+        // ASSERT
+        assertThat(runs).hasValue(2);
+    }
+
+    @Test
+    public void execute_shouldThrowUnprocessableEntity_whenKeyReusedForAnotherRequest() {
+        // ARRANGE
+        idempotencyStore.execute("key", "request", this::countedOk);
+
+        // ACT & ASSERT
+        assertThrows(UnprocessableEntityException.class, () -> idempotencyStore.execute("key", "another request", this::countedOk));
+    }
+
+    @Test
+    public void execute_shouldThrowBadRequest_whenKeyTooLong() {
+        // ACT & ASSERT
+        assertThrows(BadRequestException.class, () -> idempotencyStore.execute("k".repeat(256), "request", this::countedOk));
+    }
+
+    @Test
+    public void execute_shouldRunAgain_whenFirstAttemptFailed() {
+        // ARRANGE
+        assertThrows(NotFoundException.class, () -> idempotencyStore.execute("key", "request", () -> {
+            throw new NotFoundException();
+        }));
+
+        // ACT
+        ResponseEntity<?> retry = idempotencyStore.execute("key", "request", this::countedOk);
+
+        // ASSERT
+        assertThat(retry.getBody()).isEqualTo(1);
+    }
+
+    @Test
+    public void execute_shouldRunAgain_whenFirstAttemptFailedWithAnError() {
+        // ARRANGE
+        assertThrows(StackOverflowError.class, () -> idempotencyStore.execute("key", "request", () -> {
+            throw new StackOverflowError();
+        }));
+
+        // ACT: no wait for a first request that will never complete
+        ResponseEntity<?> retry = idempotencyStore.execute("key", "request", this::countedOk);
+
+        // ASSERT
+        assertThat(retry.getBody()).isEqualTo(1);
+    }
+
+    @Test
+    public void execute_shouldWaitForFirstRequest_whenConcurrentDuplicate() throws Exception {
+        // ARRANGE
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        CompletableFuture<ResponseEntity<?>> first = CompletableFuture.supplyAsync(() -> {
+            authenticateAs("yoga@studio.com");
+            return idempotencyStore.execute("key", "request", () -> {
+                started.countDown();
+                await(release);
+                return countedOk();
+            });
+        });
+        started.await(5, TimeUnit.SECONDS);
+
+        // ACT
+        CompletableFuture<ResponseEntity<?>> duplicate = CompletableFuture.supplyAsync(() -> {
+            authenticateAs("yoga@studio.com");
+            return idempotencyStore.execute("key", "request", this::countedOk);
+        });
+        release.countDown();
+
+        // ASSERT
+        assertThat(duplicate.get(5, TimeUnit.SECONDS)).isSameAs(first.get(5, TimeUnit.SECONDS));
+        assertThat(runs).hasValue(1);
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -1,11 +1,18 @@
 package com.openclassrooms.starterjwt.unit.mapper;
 
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 import java.time.LocalDateTime;
 import java.util.Date;
 import java.util.List;
+import java.util.Set;
 
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Tag;
@@ -16,6 +23,7 @@ import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
 
 import com.openclassrooms.starterjwt.dto.SessionDto;
+import com.openclassrooms.starterjwt.exception.BadRequestException;
 import com.openclassrooms.starterjwt.mapper.SessionMapperImpl;
 import com.openclassrooms.starterjwt.models.Session;
 import com.openclassrooms.starterjwt.models.Teacher;
@@ -62,7 +70,7 @@ public class SessionMapperTests {
                 .updatedAt(updatedAt)
                 .build();
 
-        List<User> users = List.of(user);
+        Set<User> users = Set.of(user);
         List<Long> userIds = List.of(user.getId());
 
         teacher = Teacher.builder()
@@ -79,6 +87,7 @@ public class SessionMapperTests {
                 .date(sessionDate)
                 .description("description")
                 .teacher(teacher)
+                .capacity(12)
                 .users(users)
                 .createdAt(createdAt).updatedAt(updatedAt)
                 .build();
@@ -99,6 +108,7 @@ public class SessionMapperTests {
                 teacher.getId(),
                 "description",
                 userIds,
+                12,
                 createdAt,
                 updatedAt);
 
@@ -109,6 +119,7 @@ public class SessionMapperTests {
                 teacher.getId(),
                 "description",
                 null,
+                null,
                 createdAt,
                 updatedAt);
 
@@ -119,8 +130,8 @@ public class SessionMapperTests {
     @Test
     public void shouldReturnSession_whenSessionDtoToEntity() {
         // ARRANGE
-        when(teacherService.findById(sessionDto.getTeacher_id())).thenReturn(teacher);
-        when(userService.findById(sessionDto.getUsers().get(0))).thenReturn(user);
+        when(teacherService.findAllById(List.of(sessionDto.getTeacher_id()))).thenReturn(List.of(teacher));
+        when(userService.findAllById(sessionDto.getUsers())).thenReturn(List.of(user));
 
         // ACT
         Session sessionFromMapper = sessionMapperImpl.toEntity(sessionDto);
@@ -130,7 +141,8 @@ public class SessionMapperTests {
         assertThat(sessionFromMapper.getName()).isEqualTo(sessionDto.getName());
         assertThat(sessionFromMapper.getTeacher().getId()).isEqualTo(teacher.getId());
         assertThat(sessionFromMapper.getDescription()).isEqualTo(sessionDto.getDescription());
-        assertThat(sessionFromMapper.getUsers().get(0).getId()).isEqualTo(user.getId());
+        assertThat(sessionFromMapper.getCapacity()).isEqualTo(sessionDto.getCapacity());
+        assertThat(sessionFromMapper.getUsers()).extracting(User::getId).containsExactly(user.getId());
         assertThat(sessionFromMapper.getCreatedAt()).isEqualTo(sessionDto.getCreatedAt());
         assertThat(sessionFromMapper.getUpdatedAt()).isEqualTo(sessionDto.getUpdatedAt());
     }
@@ -138,8 +150,8 @@ public class SessionMapperTests {
     @Test
     public void shouldReturnSessionWithTeacherNull_whenSessionDtoWithTeacherNull() {
         // ARRANGE
-        when(teacherService.findById(sessionDto.getTeacher_id())).thenReturn(null);
-        when(userService.findById(sessionDto.getUsers().get(0))).thenReturn(user);
+        when(teacherService.findAllById(List.of(sessionDto.getTeacher_id()))).thenReturn(List.of());
+        when(userService.findAllById(sessionDto.getUsers())).thenReturn(List.of(user));
 
         // ACT
         Session sessionFromMapper = sessionMapperImpl.toEntity(sessionDto);
@@ -149,34 +161,25 @@ public class SessionMapperTests {
         assertThat(sessionFromMapper.getName()).isEqualTo(sessionDto.getName());
         assertThat(sessionFromMapper.getTeacher()).isNull();
         assertThat(sessionFromMapper.getDescription()).isEqualTo(sessionDto.getDescription());
-        assertThat(sessionFromMapper.getUsers().get(0).getId()).isEqualTo(user.getId());
+        assertThat(sessionFromMapper.getUsers()).extracting(User::getId).containsExactly(user.getId());
         assertThat(sessionFromMapper.getCreatedAt()).isEqualTo(sessionDto.getCreatedAt());
         assertThat(sessionFromMapper.getUpdatedAt()).isEqualTo(sessionDto.getUpdatedAt());
     }
 
     @Test
-    public void shouldReturnSessionWithUsersNull_whenSessionDtoWithUserNull() {
+    public void shouldThrowBadRequest_whenSessionDtoWithUnknownUser() {
         // ARRANGE
-        when(teacherService.findById(sessionDto.getTeacher_id())).thenReturn(teacher);
-        when(userService.findById(sessionDto.getUsers().get(0))).thenReturn(null);
+        when(teacherService.findAllById(List.of(sessionDto.getTeacher_id()))).thenReturn(List.of(teacher));
+        when(userService.findAllById(sessionDto.getUsers())).thenThrow(new BadRequestException("Unknown user ids: [1]"));
 
-        // ACT
-        Session sessionFromMapper = sessionMapperImpl.toEntity(sessionDto);
-
-        // ASSERT
-        assertThat(sessionFromMapper.getId()).isEqualTo(sessionDto.getId());
-        assertThat(sessionFromMapper.getName()).isEqualTo(sessionDto.getName());
-        assertThat(sessionFromMapper.getTeacher().getId()).isEqualTo(teacher.getId());
-        assertThat(sessionFromMapper.getDescription()).isEqualTo(sessionDto.getDescription());
-        assertThat(sessionFromMapper.getUsers().get(0)).isNull();
-        assertThat(sessionFromMapper.getCreatedAt()).isEqualTo(sessionDto.getCreatedAt());
-        assertThat(sessionFromMapper.getUpdatedAt()).isEqualTo(sessionDto.getUpdatedAt());
+        // ACT & ASSERT
+        assertThrows(BadRequestException.class, () -> sessionMapperImpl.toEntity(sessionDto));
     }
 
     @Test
     public void shouldReturnSessionWithEmptyUsers_whenSessionDtoWithNoUsers() {
         // ARRANGE
-        when(teacherService.findById(sessionDtoWithNoUsers.getTeacher_id())).thenReturn(teacher);
+        when(teacherService.findAllById(List.of(sessionDtoWithNoUsers.getTeacher_id()))).thenReturn(List.of(teacher));
 
         // ACT
         Session sessionFromMapper = sessionMapperImpl.toEntity(sessionDtoWithNoUsers);
@@ -203,8 +206,8 @@ public class SessionMapperTests {
     @Test
     public void shouldReturnAListOfSession_whenListOfSessionDtosToEntity() {
         // ARRANGE
-        when(teacherService.findById(sessionDto.getTeacher_id())).thenReturn(teacher);
-        when(userService.findById(sessionDto.getUsers().get(0))).thenReturn(user);
+        when(teacherService.findAllById(List.of(sessionDto.getTeacher_id()))).thenReturn(List.of(teacher));
+        when(userService.findAllById(sessionDto.getUsers())).thenReturn(List.of(user));
 
         // ACT
         List<Session> sessionsFromMapper = sessionMapperImpl.toEntity(sessionDtos);
@@ -216,6 +219,26 @@ public class SessionMapperTests {
         assertThat(sessionsFromMapper.get(0).getTeacher().getId()).isEqualTo(teacher.getId());
     }
 
+    @Test
+    public void shouldLoadSharedReferencesOnce_whenListOfSessionDtosToEntity() {
+        // ARRANGE
+        List<SessionDto> dtos = List.of(sessionDto, sessionDto, sessionDtoWithNoUsers);
+        when(teacherService.findAllById(List.of(teacher.getId()))).thenReturn(List.of(teacher));
+        when(userService.findAllById(List.of(user.getId()))).thenReturn(List.of(user));
+
+        // ACT
+        List<Session> sessionsFromMapper = sessionMapperImpl.toEntity(dtos);
+
+        // ASSERT
+        assertThat(sessionsFromMapper).hasSize(3);
+        assertThat(sessionsFromMapper).allSatisfy(s -> assertThat(s.getTeacher()).isSameAs(teacher));
+        assertThat(sessionsFromMapper.get(1).getUsers()).containsExactly(user);
+        assertThat(sessionsFromMapper.get(2).getUsers()).isEmpty();
+        verify(teacherService, times(1)).findAllById(anyList());
+        verify(userService, times(1)).findAllById(anyList());
+        verify(teacherService, never()).findById(anyLong());
+    }
+
     @Test
     public void shouldReturnAListNull_whenSessionDtosListNullToEntity() {
         // ACT
@@ -236,7 +259,8 @@ public class SessionMapperTests {
         assertThat(sessionDtoFromMapper.getName()).isEqualTo(session.getName());
         assertThat(sessionDtoFromMapper.getTeacher_id()).isEqualTo(session.getTeacher().getId());
         assertThat(sessionDtoFromMapper.getDescription()).isEqualTo(session.getDescription());
-        assertThat(sessionDtoFromMapper.getUsers().get(0)).isEqualTo(session.getUsers().get(0).getId());
+        assertThat(sessionDtoFromMapper.getCapacity()).isEqualTo(session.getCapacity());
+        assertThat(sessionDtoFromMapper.getUsers()).containsExactly(user.getId());
         assertThat(sessionDtoFromMapper.getCreatedAt()).isEqualTo(session.getCreatedAt());
         assertThat(sessionDtoFromMapper.getUpdatedAt()).isEqualTo(session.getUpdatedAt());
     }
@@ -0,0 +1,74 @@
+package com.openclassrooms.starterjwt.unit.mapper;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.when;
+
+import java.util.Date;
+import java.util.List;
+
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import com.openclassrooms.starterjwt.dto.SessionSummaryDto;
+import com.openclassrooms.starterjwt.mapper.SessionSummaryMapperImpl;
+import com.openclassrooms.starterjwt.repository.projection.SessionSummaryView;
+
+@Tag("unit")
+@ExtendWith(MockitoExtension.class)
+public class SessionSummaryMapperTests {
+
+    @Mock
+    SessionSummaryView view;
+
+    @InjectMocks
+    SessionSummaryMapperImpl sessionSummaryMapperImpl;
+
+    private void stubView(Integer participating) {
+        when(view.getId()).thenReturn(1L);
+        when(view.getName()).thenReturn("a session");
+        when(view.getDate()).thenReturn(new Date(0));
+        when(view.getDescription()).thenReturn("description");
+        when(view.getTeacherId()).thenReturn(2L);
+        when(view.getParticipantCount()).thenReturn(3L);
+        when(view.getParticipating()).thenReturn(participating);
+    }
+
+    @Test
+    public void shouldReturnSummaryDto_whenViewToDto() {
+        // ARRANGE
+        stubView(1);
+
+        // ACT
+        SessionSummaryDto summary = sessionSummaryMapperImpl.toDto(view);
+
+        // ASSERT
+        assertThat(summary.getId()).isEqualTo(1L);
+        assertThat(summary.getName()).isEqualTo("a session");
+        assertThat(summary.getTeacher_id()).isEqualTo(2L);
+        assertThat(summary.getParticipantCount()).isEqualTo(3L);
+        assertThat(summary.isCurrentUserParticipates()).isTrue();
+    }
+
+    @Test
+    public void shouldReturnNotParticipating_whenViewParticipatingIsZero() {
+        // ARRANGE
+        stubView(0);
+
+        // ACT
+        List<SessionSummaryDto> summaries = sessionSummaryMapperImpl.toDto(List.of(view));
+
+        // ASSERT
+        assertThat(summaries).hasSize(1);
+        assertThat(summaries.get(0).isCurrentUserParticipates()).isFalse();
+    }
+
+    @Test
+    public void shouldReturnNull_whenViewNull() {
+        // ACT & ASSERT
+        assertThat(sessionSummaryMapperImpl.toDto((SessionSummaryView) null)).isNull();
+    }
+}
@@ -0,0 +1,59 @@
+package com.openclassrooms.starterjwt.unit.outbox;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.util.List;
+
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import com.openclassrooms.starterjwt.models.OutboxEvent;
+import com.openclassrooms.starterjwt.outbox.FileOutboxSink;
+import com.openclassrooms.starterjwt.outbox.OutboxEventType;
+
+@Tag("unit")
+public class FileOutboxSinkTests {
+
+    @TempDir
+    Path dir;
+
+    private final ObjectMapper objectMapper = new ObjectMapper()
+            .registerModule(new JavaTimeModule())
+            .disable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS);
+
+    @Test
+    public void publish_shouldAppendOneJsonLinePerEvent() throws IOException {
+        // ARRANGE
+        Path file = dir.resolve("outbox/events.jsonl");
+        FileOutboxSink sink = new FileOutboxSink(file.toString(), objectMapper);
+        OutboxEvent created = OutboxEvent.builder().id(1L).type(OutboxEventType.SESSION_CREATED).sessionId(3L)
+                .payload("{\"id\":3,\"name\":\"Yoga\"}").createdAt(LocalDateTime.of(2024, 1, 2, 10, 0)).build();
+        OutboxEvent joined = OutboxEvent.builder().id(2L).type(OutboxEventType.PARTICIPANT_JOINED).sessionId(3L).userId(5L)
+                .createdAt(LocalDateTime.of(2024, 1, 2, 10, 1)).build();
+
+        // ACT
+        sink.publish(List.of(created));
+        sink.publish(List.of(joined));
+
+        // ASSERT
+        List<String> lines = Files.readAllLines(file);
+        assertThat(lines).hasSize(2);
+        JsonNode first = objectMapper.readTree(lines.get(0));
+        assertThat(first.get("type").asText()).isEqualTo("SESSION_CREATED");
+        assertThat(first.get("payload").get("name").asText()).isEqualTo("Yoga");
+        assertThat(first.get("userId").isNull()).isTrue();
+        JsonNode second = objectMapper.readTree(lines.get(1));
+        assertThat(second.get("id").asLong()).isEqualTo(2L);
+        assertThat(second.get("userId").asLong()).isEqualTo(5L);
+        assertThat(second.get("createdAt").asText()).isEqualTo("2024-01-02T10:01:00");
+    }
+}
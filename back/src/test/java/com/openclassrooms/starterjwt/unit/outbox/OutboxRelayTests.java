@@ -0,0 +1,223 @@
+package com.openclassrooms.starterjwt.unit.outbox;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.Assert.assertThrows;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.inOrder;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Optional;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InOrder;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.openclassrooms.starterjwt.models.OutboxEvent;
+import com.openclassrooms.starterjwt.models.OutboxOffset;
+import com.openclassrooms.starterjwt.outbox.OutboxEventType;
+import com.openclassrooms.starterjwt.outbox.OutboxRelay;
+import com.openclassrooms.starterjwt.outbox.OutboxSink;
+import com.openclassrooms.starterjwt.repository.OutboxOffsetRepository;
+import com.openclassrooms.starterjwt.repository.OutboxRepository;
+
+@Tag("unit")
+@ExtendWith(MockitoExtension.class)
+public class OutboxRelayTests {
+
+    @Mock
+    OutboxRepository outboxRepository;
+
+    @Mock
+    OutboxOffsetRepository outboxOffsetRepository;
+
+    @Mock
+    OutboxSink sink;
+
+    private OutboxRelay outboxRelay;
+    private OutboxOffset offset;
+
+    @BeforeEach
+    public void init() {
+        TransactionTemplate transactionTemplate = new TransactionTemplate(mock(PlatformTransactionManager.class));
+        outboxRelay = new OutboxRelay(List.of(sink), outboxRepository, outboxOffsetRepository, transactionTemplate, 3, 10000);
+
+        offset = new OutboxOffset("test", 4L);
+        when(sink.name()).thenReturn("test");
+    }
+
+    private static OutboxEvent event(long id, LocalDateTime createdAt) {
+        return OutboxEvent.builder().id(id).type(OutboxEventType.PARTICIPANT_JOINED).sessionId(1L).userId(id).createdAt(createdAt).build();
+    }
+
+    @Test
+    public void relay_shouldPublishEventsAfterOffsetAndMoveIt() throws IOException {
+        // ARRANGE
+        List<OutboxEvent> events = List.of(event(5L, LocalDateTime.now()), event(6L, LocalDateTime.now()));
+        when(outboxOffsetRepository.findById("test")).thenReturn(Optional.of(offset));
+        when(outboxOffsetRepository.findForUpdate("test")).thenReturn(Optional.of(offset));
+        when(outboxRepository.findByIdGreaterThanOrderByIdAsc(4L, PageRequest.of(0, 3))).thenReturn(events);
+
+        // ACT
+        int published = outboxRelay.relay(sink);
+
+        // ASSERT
+        assertThat(published).isEqualTo(2);
+        verify(sink).publish(events);
+        assertThat(offset.getLastId()).isEqualTo(6L);
+    }
+
+    @Test
+    public void relay_shouldStartFromZero_whenSinkHasNoOffset() throws IOException {
+        // ARRANGE
+        OutboxOffset created = new OutboxOffset("test", 0L);
+        when(outboxOffsetRepository.findById("test")).thenReturn(Optional.empty());
+        when(outboxOffsetRepository.saveAndFlush(any(OutboxOffset.class))).thenAnswer(invocation -> invocation.getArgument(0));
+        when(outboxOffsetRepository.findForUpdate("test")).thenReturn(Optional.of(created));
+        when(outboxRepository.findByIdGreaterThanOrderByIdAsc(eq(0L), any())).thenReturn(List.of(event(1L, LocalDateTime.now())));
+
+        // ACT
+        int published = outboxRelay.relay(sink);
+
+        // ASSERT
+        assertThat(published).isEqualTo(1);
+        verify(outboxOffsetRepository).saveAndFlush(any(OutboxOffset.class));
+        verify(outboxRepository).findByIdGreaterThanOrderByIdAsc(eq(0L), any());
+        assertThat(created.getLastId()).isEqualTo(1L);
+    }
+
+    @Test
+    public void relay_shouldStopBeforeAGap_whenTheMissingEventMayStillCommit() throws IOException {
+        // ARRANGE
+        when(outboxOffsetRepository.findById("test")).thenReturn(Optional.of(offset));
+        when(outboxOffsetRepository.findForUpdate("test")).thenReturn(Optional.of(offset));
+        when(outboxRepository.findByIdGreaterThanOrderByIdAsc(eq(4L), any()))
+                .thenReturn(List.of(event(5L, LocalDateTime.now()), event(7L, LocalDateTime.now())));
+
+        // ACT
+        int published = outboxRelay.relay(sink);
+
+        // ASSERT
+        assertThat(published).isEqualTo(1);
+        verify(sink).publish(List.of(event(5L, null)));
+        assertThat(offset.getLastId()).isEqualTo(5L);
+    }
+
+    @Test
+    public void relay_shouldSkipAGap_whenOlderThanTheGapTimeout() throws IOException {
+        // ARRANGE
+        LocalDateTime longAgo = LocalDateTime.now().minusMinutes(1);
+        when(outboxOffsetRepository.findById("test")).thenReturn(Optional.of(offset));
+        when(outboxOffsetRepository.findForUpdate("test")).thenReturn(Optional.of(offset));
+        when(outboxRepository.findByIdGreaterThanOrderByIdAsc(eq(4L), any()))
+                .thenReturn(List.of(event(7L, longAgo), event(8L, LocalDateTime.now())));
+
+        // ACT
+        int published = outboxRelay.relay(sink);
+
+        // ASSERT
+        assertThat(published).isEqualTo(2);
+        assertThat(offset.getLastId()).isEqualTo(8L);
+    }
+
+    @Test
+    public void relay_shouldNotPublish_whenNoNewEvents() throws IOException {
+        // ARRANGE
+        when(outboxOffsetRepository.findById("test")).thenReturn(Optional.of(offset));
+        when(outboxRepository.findByIdGreaterThanOrderByIdAsc(eq(4L), any())).thenReturn(List.of());
+
+        // ACT
+        int published = outboxRelay.relay(sink);
+
+        // ASSERT
+        assertThat(published).isZero();
+        verify(sink, never()).publish(anyList());
+    }
+
+    @Test
+    public void relay_shouldKeepTheOffset_whenSinkFails() throws IOException {
+        // ARRANGE
+        when(outboxOffsetRepository.findById("test")).thenReturn(Optional.of(offset));
+        when(outboxRepository.findByIdGreaterThanOrderByIdAsc(eq(4L), any())).thenReturn(List.of(event(5L, LocalDateTime.now())));
+        doThrow(new IOException("disk full")).when(sink).publish(anyList());
+
+        // ACT & ASSERT
+        assertThrows(UncheckedIOException.class, () -> {
+            outboxRelay.relay(sink);
+        });
+        assertThat(offset.getLastId()).isEqualTo(4L);
+        verify(outboxOffsetRepository, never()).findForUpdate("test");
+    }
+
+    @Test
+    public void relay_shouldPublishOutsideOfTheTransactions() throws IOException {
+        // ARRANGE
+        PlatformTransactionManager transactionManager = mock(PlatformTransactionManager.class);
+        outboxRelay = new OutboxRelay(List.of(sink), outboxRepository, outboxOffsetRepository,
+                new TransactionTemplate(transactionManager), 3, 10000);
+        when(outboxOffsetRepository.findById("test")).thenReturn(Optional.of(offset));
+        when(outboxOffsetRepository.findForUpdate("test")).thenReturn(Optional.of(offset));
+        when(outboxRepository.findByIdGreaterThanOrderByIdAsc(eq(4L), any())).thenReturn(List.of(event(5L, LocalDateTime.now())));
+
+        // ACT
+        outboxRelay.relay(sink);
+
+        // ASSERT
+        InOrder inOrder = inOrder(transactionManager, outboxRepository, sink, outboxOffsetRepository);
+        inOrder.verify(outboxRepository).findByIdGreaterThanOrderByIdAsc(eq(4L), any());
+        inOrder.verify(transactionManager).commit(any());
+        inOrder.verify(sink).publish(anyList());
+        inOrder.verify(transactionManager).getTransaction(any());
+        inOrder.verify(outboxOffsetRepository).findForUpdate("test");
+        inOrder.verify(transactionManager).commit(any());
+    }
+
+    @Test
+    public void relay_shouldNotMoveTheOffsetBack_whenAnotherRelayWentFurther() throws IOException {
+        // ARRANGE
+        OutboxOffset current = new OutboxOffset("test", 9L);
+        when(outboxOffsetRepository.findById("test")).thenReturn(Optional.of(offset));
+        when(outboxOffsetRepository.findForUpdate("test")).thenReturn(Optional.of(current));
+        when(outboxRepository.findByIdGreaterThanOrderByIdAsc(eq(4L), any())).thenReturn(List.of(event(5L, LocalDateTime.now())));
+
+        // ACT
+        int published = outboxRelay.relay(sink);
+
+        // ASSERT
+        assertThat(published).isEqualTo(1);
+        verify(sink).publish(List.of(event(5L, null)));
+        assertThat(current.getLastId()).isEqualTo(9L);
+    }
+
+    @Test
+    public void relayAll_shouldRelayUntilABatchIsNotFull() throws IOException {
+        // ARRANGE
+        when(outboxOffsetRepository.findById("test")).thenReturn(Optional.of(offset));
+        when(outboxOffsetRepository.findForUpdate("test")).thenReturn(Optional.of(offset));
+        when(outboxRepository.findByIdGreaterThanOrderByIdAsc(eq(4L), any()))
+                .thenReturn(List.of(event(5L, LocalDateTime.now()), event(6L, LocalDateTime.now()), event(7L, LocalDateTime.now())));
+        when(outboxRepository.findByIdGreaterThanOrderByIdAsc(eq(7L), any())).thenReturn(List.of(event(8L, LocalDateTime.now())));
+
+        // ACT
+        outboxRelay.relayAll();
+
+        // ASSERT
+        assertThat(offset.getLastId()).isEqualTo(8L);
+    }
+}
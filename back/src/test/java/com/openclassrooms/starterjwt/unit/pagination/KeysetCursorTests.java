@@ -0,0 +1,65 @@
+package com.openclassrooms.starterjwt.unit.pagination;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.Assert.assertThrows;
+
+import java.util.Date;
+import java.util.List;
+
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+import com.openclassrooms.starterjwt.exception.BadRequestException;
+import com.openclassrooms.starterjwt.pagination.KeysetCursor;
+import com.openclassrooms.starterjwt.pagination.KeysetPage;
+
+@Tag("unit")
+public class KeysetCursorTests {
+
+    @Test
+    public void shouldReturnSameCursor_whenEncodedThenDecoded() {
+        // ARRANGE
+        KeysetCursor cursor = new KeysetCursor(new Date(1735689600000L), 42L);
+
+        // ACT
+        KeysetCursor decoded = KeysetCursor.decode(cursor.encode());
+
+        // ASSERT
+        assertThat(decoded).isEqualTo(cursor);
+    }
+
+    @Test
+    public void shouldThrowBadRequest_whenCursorIsNotBase64() {
+        // ACT & ASSERT
+        assertThrows(BadRequestException.class, () -> KeysetCursor.decode("not a cursor!"));
+    }
+
+    @Test
+    public void shouldThrowBadRequest_whenCursorHasWrongFormat() {
+        // ARRANGE
+        String token = java.util.Base64.getUrlEncoder().encodeToString("abc".getBytes());
+
+        // ACT & ASSERT
+        assertThrows(BadRequestException.class, () -> KeysetCursor.decode(token));
+    }
+
+    @Test
+    public void shouldReturnPageWithoutNextCursor_whenNoExtraRow() {
+        // ACT
+        KeysetPage<Long> page = KeysetPage.of(List.of(1L, 2L), 2, id -> new KeysetCursor(new Date(0), id));
+
+        // ASSERT
+        assertThat(page.getItems()).containsExactly(1L, 2L);
+        assertThat(page.getNextCursor()).isNull();
+    }
+
+    @Test
+    public void shouldReturnPageWithNextCursor_whenExtraRowFetched() {
+        // ACT
+        KeysetPage<Long> page = KeysetPage.of(List.of(1L, 2L, 3L), 2, id -> new KeysetCursor(new Date(0), id));
+
+        // ASSERT
+        assertThat(page.getItems()).containsExactly(1L, 2L);
+        assertThat(KeysetCursor.decode(page.getNextCursor()).getId()).isEqualTo(2L);
+    }
+}
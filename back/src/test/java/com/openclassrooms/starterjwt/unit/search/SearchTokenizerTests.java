@@ -0,0 +1,39 @@
+package com.openclassrooms.starterjwt.unit.search;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+import com.openclassrooms.starterjwt.search.SearchTokenizer;
+
+@Tag("unit")
+public class SearchTokenizerTests {
+
+    @Test
+    public void shouldReturnLowerCaseTermsWithoutAccents_whenTokenize() {
+        // ACT & ASSERT
+        assertThat(SearchTokenizer.tokenize("Yoga Débutant : Vinyasa-Flow, 2e cours!"))
+                .containsExactly("yoga", "debutant", "vinyasa", "flow", "2e", "cours");
+    }
+
+    @Test
+    public void shouldKeepLettersWithoutDecomposition_whenTokenize() {
+        // ACT & ASSERT
+        assertThat(SearchTokenizer.tokenize("Yoga du Cœur, Straße & Ærø 瑜伽"))
+                .containsExactly("yoga", "du", "cœur", "straße", "ærø", "瑜伽");
+    }
+
+    @Test
+    public void shouldDropOneCharacterTerms_whenTokenize() {
+        // ACT & ASSERT
+        assertThat(SearchTokenizer.tokenize("a yoga à 9h")).containsExactly("yoga", "9h");
+    }
+
+    @Test
+    public void shouldReturnNoTerms_whenTextNullOrBlank() {
+        // ACT & ASSERT
+        assertThat(SearchTokenizer.tokenize(null)).isEmpty();
+        assertThat(SearchTokenizer.tokenize("  ")).isEmpty();
+    }
+}
@@ -0,0 +1,141 @@
+package com.openclassrooms.starterjwt.unit.search;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+import com.openclassrooms.starterjwt.models.Session;
+import com.openclassrooms.starterjwt.search.SessionSearchIndex;
+
+@Tag("unit")
+public class SessionSearchIndexTests {
+
+    private SessionSearchIndex sessionSearchIndex;
+
+    @BeforeEach
+    public void init() {
+        sessionSearchIndex = new SessionSearchIndex();
+    }
+
+    private static Session session(Long id, String name, String description) {
+        return Session.builder()
+                .id(id)
+                .name(name)
+                .description(description)
+                .updatedAt(LocalDateTime.of(2025, 1, 1, 0, 0))
+                .build();
+    }
+
+    @Test
+    public void shouldMatchTermPrefixes_whenSearch() {
+        // ARRANGE
+        sessionSearchIndex.index(session(1L, "Vinyasa flow", "dynamic class"));
+        sessionSearchIndex.index(session(2L, "Hatha", "slow class"));
+
+        // ACT & ASSERT
+        assertThat(sessionSearchIndex.search("vin", 10)).containsExactly(1L);
+        assertThat(sessionSearchIndex.search("CLASS", 10)).containsExactlyInAnyOrder(1L, 2L);
+    }
+
+    @Test
+    public void shouldRequireEveryQueryTerm_whenSearchWithSeveralTerms() {
+        // ARRANGE
+        sessionSearchIndex.index(session(1L, "Vinyasa", "for beginners"));
+        sessionSearchIndex.index(session(2L, "Vinyasa", "advanced practice"));
+
+        // ACT & ASSERT
+        assertThat(sessionSearchIndex.search("vinyasa beginner", 10)).containsExactly(1L);
+    }
+
+    @Test
+    public void shouldRankNameMatchesFirst_whenSearch() {
+        // ARRANGE
+        sessionSearchIndex.index(session(1L, "Hatha", "a gentle introduction before vinyasa"));
+        sessionSearchIndex.index(session(2L, "Vinyasa", "a dynamic class"));
+        sessionSearchIndex.index(session(3L, "Yin", "a slow class"));
+
+        // ACT & ASSERT
+        assertThat(sessionSearchIndex.search("vinyasa", 10)).containsExactly(2L, 1L);
+    }
+
+    @Test
+    public void shouldRankExactTermBeforePrefixExpansion_whenSearch() {
+        // ARRANGE
+        sessionSearchIndex.index(session(1L, "Flowing", "class"));
+        sessionSearchIndex.index(session(2L, "Flow", "class"));
+
+        // ACT & ASSERT
+        assertThat(sessionSearchIndex.search("flow", 10)).containsExactly(2L, 1L);
+    }
+
+    @Test
+    public void shouldLimitResults_whenSearch() {
+        // ARRANGE
+        for (long id = 1; id <= 5; id++) {
+            sessionSearchIndex.index(session(id, "Yoga", "class"));
+        }
+
+        // ACT & ASSERT
+        assertThat(sessionSearchIndex.search("yoga", 2)).containsExactly(1L, 2L);
+    }
+
+    @Test
+    public void shouldForgetPreviousTerms_whenSessionReindexed() {
+        // ARRANGE
+        sessionSearchIndex.index(session(1L, "Hatha", "slow"));
+
+        // ACT
+        sessionSearchIndex.index(session(1L, "Vinyasa", "dynamic"));
+
+        // ASSERT
+        assertThat(sessionSearchIndex.search("hatha", 10)).isEmpty();
+        assertThat(sessionSearchIndex.search("vinyasa", 10)).containsExactly(1L);
+        assertThat(sessionSearchIndex.size()).isEqualTo(1);
+    }
+
+    @Test
+    public void shouldNotMatchSession_whenRemoved() {
+        // ARRANGE
+        sessionSearchIndex.index(session(1L, "Hatha", "slow"));
+
+        // ACT
+        sessionSearchIndex.remove(1L);
+
+        // ASSERT
+        assertThat(sessionSearchIndex.search("hatha", 10)).isEmpty();
+        assertThat(sessionSearchIndex.size()).isZero();
+    }
+
+    @Test
+    public void shouldKeepConcurrentWrites_whenRebuilding() {
+        // ARRANGE
+        Session updated = session(1L, "Vinyasa", "dynamic");
+        updated.setUpdatedAt(LocalDateTime.of(2025, 6, 1, 0, 0));
+        sessionSearchIndex.startRebuild();
+        sessionSearchIndex.index(updated);
+        sessionSearchIndex.remove(2L);
+
+        // ACT
+        sessionSearchIndex.indexAll(List.of(session(1L, "Hatha", "slow"), session(2L, "Yin", "slow"), session(3L, "Yin", "calm")));
+        sessionSearchIndex.finishRebuild();
+
+        // ASSERT
+        assertThat(sessionSearchIndex.search("vinyasa", 10)).containsExactly(1L);
+        assertThat(sessionSearchIndex.search("yin", 10)).containsExactly(3L);
+        assertThat(sessionSearchIndex.size()).isEqualTo(2);
+    }
+
+    @Test
+    public void shouldReturnNothing_whenQueryHasNoTerm() {
+        // ARRANGE
+        sessionSearchIndex.index(session(1L, "Hatha", "slow"));
+
+        // ACT & ASSERT
+        assertThat(sessionSearchIndex.search(" ! ", 10)).isEmpty();
+    }
+}
@@ -0,0 +1,120 @@
+package com.openclassrooms.starterjwt.unit.security;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.io.IOException;
+import java.time.Instant;
+import java.util.Optional;
+
+import javax.servlet.ServletException;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.mock.web.MockFilterChain;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContextHolder;
+
+import com.openclassrooms.starterjwt.security.jwt.AuthTokenFilter;
+import com.openclassrooms.starterjwt.security.jwt.JwtClaims;
+import com.openclassrooms.starterjwt.security.jwt.JwtUtils;
+import com.openclassrooms.starterjwt.security.services.TokenVersionService;
+import com.openclassrooms.starterjwt.security.services.UserDetailsImpl;
+import com.openclassrooms.starterjwt.security.services.UserDetailsServiceImpl;
+
+@Tag("unit")
+@ExtendWith(MockitoExtension.class)
+public class AuthTokenFilterTests {
+
+    @Mock
+    JwtUtils jwtUtils;
+
+    @Mock
+    UserDetailsServiceImpl userDetailsService;
+
+    @Mock
+    TokenVersionService tokenVersionService;
+
+    @InjectMocks
+    AuthTokenFilter authTokenFilter;
+
+    private MockHttpServletRequest request;
+
+    @BeforeEach
+    public void init() {
+        request = new MockHttpServletRequest();
+        request.addHeader("Authorization", "Bearer token");
+    }
+
+    @AfterEach
+    public void clean() {
+        SecurityContextHolder.clearContext();
+    }
+
+    private Authentication filter() throws ServletException, IOException {
+        authTokenFilter.doFilter(request, new MockHttpServletResponse(), new MockFilterChain());
+
+        return SecurityContextHolder.getContext().getAuthentication();
+    }
+
+    @Test
+    public void shouldBuildPrincipalFromClaims_whenTokenVersionIsCurrent() throws ServletException, IOException {
+        // ARRANGE
+        when(jwtUtils.verify("token")).thenReturn(Optional.of(
+                new JwtClaims("yoga@studio.com", Instant.now(), Instant.now().plusSeconds(60), 1L, true, 2)));
+        when(tokenVersionService.isCurrent(1L, 2)).thenReturn(true);
+
+        // ACT
+        Authentication authentication = filter();
+
+        // ASSERT
+        UserDetailsImpl principal = (UserDetailsImpl) authentication.getPrincipal();
+        assertThat(principal.getId()).isEqualTo(1L);
+        assertThat(principal.getUsername()).isEqualTo("yoga@studio.com");
+        assertThat(principal.getAdmin()).isTrue();
+        verify(userDetailsService, never()).loadUserByUsername(anyString());
+    }
+
+    @Test
+    public void shouldNotAuthenticate_whenTokenIsRevoked() throws ServletException, IOException {
+        // ARRANGE
+        when(jwtUtils.verify("token")).thenReturn(Optional.of(
+                new JwtClaims("yoga@studio.com", Instant.now(), Instant.now().plusSeconds(60), 1L, false, 2)));
+        when(tokenVersionService.isCurrent(1L, 2)).thenReturn(false);
+
+        // ACT & ASSERT
+        assertThat(filter()).isNull();
+    }
+
+    @Test
+    public void shouldLoadPrincipal_whenTokenHasNoUserClaims() throws ServletException, IOException {
+        // ARRANGE
+        UserDetailsImpl loaded = UserDetailsImpl.builder().id(1L).username("yoga@studio.com").build();
+        when(jwtUtils.verify("token")).thenReturn(Optional.of(
+                new JwtClaims("yoga@studio.com", Instant.now(), Instant.now().plusSeconds(60), null, null, null)));
+        when(userDetailsService.loadUserByUsername("yoga@studio.com")).thenReturn(loaded);
+
+        // ACT & ASSERT
+        assertThat(filter().getPrincipal()).isSameAs(loaded);
+    }
+
+    @Test
+    public void shouldNotAuthenticate_whenTokenIsInvalid() throws ServletException, IOException {
+        // ARRANGE
+        when(jwtUtils.verify("token")).thenReturn(Optional.empty());
+
+        // ACT & ASSERT
+        assertThat(filter()).isNull();
+    }
+}
@@ -0,0 +1,161 @@
+package com.openclassrooms.starterjwt.unit.security;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.GeneralSecurityException;
+import java.security.Key;
+import java.security.KeyPair;
+import java.security.KeyPairGenerator;
+import java.security.spec.ECGenParameterSpec;
+import java.util.Base64;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import com.openclassrooms.starterjwt.security.jwt.JwtKeySet;
+
+import io.jsonwebtoken.SignatureAlgorithm;
+
+@Tag("unit")
+public class JwtKeySetTests {
+
+    @TempDir
+    Path keys;
+
+    @Test
+    public void constructor_shouldLoadThePublicKeysByKid() throws Exception {
+        // ARRANGE
+        KeyPair rsa = rsaKeyPair();
+        KeyPair ec = ecKeyPair();
+        writePublicKey(keys, "rsa-1", rsa);
+        writePublicKey(keys, "ec-1", ec);
+
+        // ACT
+        JwtKeySet keySet = new JwtKeySet(keys.toString());
+
+        // ASSERT
+        assertThat(keySet.isEnabled()).isTrue();
+        assertThat(keySet.verificationKey("rsa-1").getAlgorithm()).isEqualTo(SignatureAlgorithm.RS256);
+        assertThat(keySet.verificationKey("rsa-1").getKey()).isEqualTo(rsa.getPublic());
+        assertThat(keySet.verificationKey("ec-1").getAlgorithm()).isEqualTo(SignatureAlgorithm.ES256);
+        assertThat(keySet.verificationKey("unknown")).isNull();
+        assertThat(keySet.signingKey()).isNull();
+    }
+
+    @Test
+    public void constructor_shouldBeDisabled_whenNoDirectoryIsSet() {
+        // ACT
+        JwtKeySet keySet = new JwtKeySet("");
+
+        // ASSERT
+        assertThat(keySet.isEnabled()).isFalse();
+        assertThat(keySet.verificationKey("rsa-1")).isNull();
+    }
+
+    @Test
+    public void constructor_shouldThrowIllegalState_whenDirectoryHoldsNoPublicKey() throws Exception {
+        // ARRANGE
+        Files.write(keys.resolve("rsa-1.pub.pem"), "not a key".getBytes(StandardCharsets.US_ASCII));
+
+        // ACT & ASSERT
+        assertThatThrownBy(() -> new JwtKeySet(keys.toString())).isInstanceOf(IllegalStateException.class);
+    }
+
+    @Test
+    public void signingKey_shouldBeTheLastKidHavingBothKeys() throws Exception {
+        // ARRANGE
+        KeyPair former = rsaKeyPair();
+        KeyPair current = rsaKeyPair();
+        writeKeyPair(keys, "2026-01", former);
+        writeKeyPair(keys, "2026-02", current);
+        writePublicKey(keys, "2026-03", rsaKeyPair());
+
+        // ACT
+        JwtKeySet keySet = new JwtKeySet(keys.toString());
+
+        // ASSERT
+        assertThat(keySet.signingKey().getKid()).isEqualTo("2026-02");
+        assertThat((Key) keySet.signingKey().getKey()).isEqualTo(current.getPrivate());
+        assertThat(keySet.signingKey().getAlgorithm()).isEqualTo(SignatureAlgorithm.RS256);
+    }
+
+    @Test
+    public void reload_shouldAddAndRemoveKeys_andNotifyRemovals() throws Exception {
+        // ARRANGE
+        writeKeyPair(keys, "2026-01", rsaKeyPair());
+        JwtKeySet keySet = new JwtKeySet(keys.toString());
+        AtomicInteger removals = new AtomicInteger();
+        keySet.onKeysRemoved(removals::incrementAndGet);
+
+        // ACT: rotation, the new key signs while the former one still verifies
+        writeKeyPair(keys, "2026-02", ecKeyPair());
+        keySet.reload();
+
+        // ASSERT
+        assertThat(keySet.signingKey().getKid()).isEqualTo("2026-02");
+        assertThat(keySet.signingKey().getAlgorithm()).isEqualTo(SignatureAlgorithm.ES256);
+        assertThat(keySet.verificationKey("2026-01")).isNotNull();
+        assertThat(removals).hasValue(0);
+
+        // ACT: end of the rotation
+        Files.delete(keys.resolve("2026-01.pub.pem"));
+        Files.delete(keys.resolve("2026-01.key.pem"));
+        keySet.reload();
+
+        // ASSERT
+        assertThat(keySet.verificationKey("2026-01")).isNull();
+        assertThat(keySet.verificationKey("2026-02")).isNotNull();
+        assertThat(removals).hasValue(1);
+    }
+
+    @Test
+    public void reload_shouldKeepTheFormerKey_whenItsFileIsUnreadable() throws Exception {
+        // ARRANGE
+        KeyPair pair = rsaKeyPair();
+        writeKeyPair(keys, "2026-01", pair);
+        JwtKeySet keySet = new JwtKeySet(keys.toString());
+
+        // ACT: a file half written by the deployment
+        Files.write(keys.resolve("2026-01.pub.pem"), "-----BEGIN PUBLIC KEY-----\nMIIB".getBytes(StandardCharsets.US_ASCII));
+        keySet.reload();
+
+        // ASSERT
+        assertThat(keySet.verificationKey("2026-01").getKey()).isEqualTo(pair.getPublic());
+        assertThat(keySet.signingKey().getKid()).isEqualTo("2026-01");
+    }
+
+    static KeyPair rsaKeyPair() throws GeneralSecurityException {
+        KeyPairGenerator generator = KeyPairGenerator.getInstance("RSA");
+        generator.initialize(2048);
+        return generator.generateKeyPair();
+    }
+
+    static KeyPair ecKeyPair() throws GeneralSecurityException {
+        KeyPairGenerator generator = KeyPairGenerator.getInstance("EC");
+        generator.initialize(new ECGenParameterSpec("secp256r1"));
+        return generator.generateKeyPair();
+    }
+
+    static void writeKeyPair(Path directory, String kid, KeyPair pair) throws IOException {
+        writePublicKey(directory, kid, pair);
+        writePem(directory.resolve(kid + ".key.pem"), "PRIVATE KEY", pair.getPrivate());
+    }
+
+    static void writePublicKey(Path directory, String kid, KeyPair pair) throws IOException {
+        writePem(directory.resolve(kid + ".pub.pem"), "PUBLIC KEY", pair.getPublic());
+    }
+
+    private static void writePem(Path file, String type, Key key) throws IOException {
+        String pem = "-----BEGIN " + type + "-----\n"
+                + Base64.getMimeEncoder(64, new byte[]{'\n'}).encodeToString(key.getEncoded())
+                + "\n-----END " + type + "-----\n";
+        Files.write(file, pem.getBytes(StandardCharsets.US_ASCII));
+    }
+}
@@ -0,0 +1,231 @@
+package com.openclassrooms.starterjwt.unit.security;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.KeyPair;
+import java.time.Duration;
+import java.util.Date;
+import java.util.Optional;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+
+import com.openclassrooms.starterjwt.security.jwt.JwtClaims;
+import com.openclassrooms.starterjwt.security.jwt.JwtKeySet;
+import com.openclassrooms.starterjwt.security.jwt.JwtUtils;
+import com.openclassrooms.starterjwt.security.services.UserDetailsImpl;
+
+import io.jsonwebtoken.JwsHeader;
+import io.jsonwebtoken.Jwts;
+import io.jsonwebtoken.SignatureAlgorithm;
+
+@Tag("unit")
+public class JwtUtilsTests {
+
+    private static final String SECRET = "c2VjcmV0c2VjcmV0c2VjcmV0c2VjcmV0c2VjcmV0c2VjcmV0c2VjcmV0c2VjcmV0";
+
+    @TempDir
+    Path keys;
+
+    private JwtUtils jwtUtils;
+    private String token;
+
+    @BeforeEach
+    public void init() {
+        jwtUtils = new JwtUtils(SECRET, 3_600_000);
+
+        UserDetailsImpl userDetails = UserDetailsImpl.builder().id(1L).username("yoga@studio.com").admin(true).tokenVersion(3).build();
+        token = jwtUtils.generateJwtToken(new UsernamePasswordAuthenticationToken(userDetails, null));
+    }
+
+    @Test
+    public void verify_shouldReturnClaims_whenTokenIsValid() {
+        // ACT
+        Optional<JwtClaims> claims = jwtUtils.verify(token);
+
+        // ASSERT
+        assertThat(claims).isPresent();
+        assertThat(claims.get().getSubject()).isEqualTo("yoga@studio.com");
+        assertThat(Duration.between(claims.get().getIssuedAt(), claims.get().getExpiration())).isEqualTo(Duration.ofHours(1));
+        assertThat(claims.get().getUserId()).isEqualTo(1L);
+        assertThat(claims.get().getAdmin()).isTrue();
+        assertThat(claims.get().getTokenVersion()).isEqualTo(3);
+        assertThat(claims.get().isSelfContained()).isTrue();
+    }
+
+    @Test
+    public void verify_shouldAcceptTokens_whenSignedWithTheSecretString() {
+        // ARRANGE: tokens issued before the key was decoded once
+        String formerToken = Jwts.builder()
+                .setSubject("yoga@studio.com")
+                .setExpiration(new Date(System.currentTimeMillis() + 60_000))
+                .signWith(SignatureAlgorithm.HS512, SECRET)
+                .compact();
+
+        // ACT & ASSERT
+        assertThat(jwtUtils.verify(formerToken)).map(JwtClaims::getSubject).contains("yoga@studio.com");
+        assertThat(jwtUtils.verify(formerToken)).map(JwtClaims::isSelfContained).contains(false);
+    }
+
+    @Test
+    public void verify_shouldReturnEmpty_whenSignedWithAnotherKey() {
+        // ARRANGE
+        String otherToken = Jwts.builder()
+                .setSubject("yoga@studio.com")
+                .signWith(SignatureAlgorithm.HS512, "b3RoZXJvdGhlcm90aGVyb3RoZXJvdGhlcm90aGVyb3RoZXJvdGhlcm90aGVyb3RoZXI=")
+                .compact();
+
+        // ACT & ASSERT
+        assertThat(jwtUtils.verify(otherToken)).isEmpty();
+    }
+
+    @Test
+    public void verify_shouldReturnEmpty_whenTokenIsExpired() {
+        // ARRANGE
+        String expiredToken = Jwts.builder()
+                .setSubject("yoga@studio.com")
+                .setExpiration(new Date(System.currentTimeMillis() - 1000))
+                .signWith(SignatureAlgorithm.HS512, SECRET)
+                .compact();
+
+        // ACT & ASSERT
+        assertThat(jwtUtils.verify(expiredToken)).isEmpty();
+    }
+
+    @Test
+    public void verify_shouldReturnEmpty_whenTokenIsMalformedOrEmpty() {
+        // ACT & ASSERT
+        assertThat(jwtUtils.verify("abc.def")).isEmpty();
+        assertThat(jwtUtils.verify("")).isEmpty();
+        assertThat(jwtUtils.verify(null)).isEmpty();
+    }
+
+    @Test
+    public void verify_shouldReturnTheCachedClaims_whenTokenWasVerifiedBefore() {
+        // ARRANGE
+        JwtUtils cachingJwtUtils = new JwtUtils(SECRET, 3_600_000, 10);
+
+        // ACT
+        JwtClaims first = cachingJwtUtils.verify(token).get();
+        JwtClaims second = cachingJwtUtils.verify(token).get();
+
+        // ASSERT
+        assertThat(second).isSameAs(first);
+        assertThat(jwtUtils.verify(token).get()).isNotSameAs(jwtUtils.verify(token).get());
+    }
+
+    @Test
+    public void verify_shouldNotCacheInvalidTokens() {
+        // ARRANGE
+        JwtUtils cachingJwtUtils = new JwtUtils(SECRET, 3_600_000, 10);
+        String tamperedToken = token.substring(0, token.length() - 2) + (token.endsWith("AA") ? "BB" : "AA");
+
+        // ACT & ASSERT
+        assertThat(cachingJwtUtils.verify(tamperedToken)).isEmpty();
+        assertThat(cachingJwtUtils.verify(tamperedToken)).isEmpty();
+        assertThat(cachingJwtUtils.verify(token)).isPresent();
+    }
+
+    @Test
+    public void verify_shouldRejectCachedToken_onceItHasExpired() throws InterruptedException {
+        // ARRANGE
+        JwtUtils cachingJwtUtils = new JwtUtils(SECRET, 1_000, 10);
+        UserDetailsImpl userDetails = UserDetailsImpl.builder().id(1L).username("yoga@studio.com").admin(false).tokenVersion(0).build();
+        String shortToken = cachingJwtUtils.generateJwtToken(new UsernamePasswordAuthenticationToken(userDetails, null));
+        assertThat(cachingJwtUtils.verify(shortToken)).isPresent();
+
+        // ACT: the expiration has a second precision, it is at most a second away
+        Thread.sleep(1_100);
+
+        // ASSERT
+        assertThat(cachingJwtUtils.verify(shortToken)).isEmpty();
+    }
+
+    @Test
+    public void verify_shouldAcceptTokensSignedWithTheKeySet_onNodesHoldingOnlyPublicKeys() throws Exception {
+        // ARRANGE
+        Path publicKeys = Files.createDirectory(keys.resolve("public"));
+        KeyPair pair = JwtKeySetTests.rsaKeyPair();
+        JwtKeySetTests.writeKeyPair(keys, "2026-01", pair);
+        JwtKeySetTests.writePublicKey(publicKeys, "2026-01", pair);
+        JwtUtils signingNode = new JwtUtils(null, 3_600_000, 0, new JwtKeySet(keys.toString()));
+        JwtUtils verifyingNode = new JwtUtils(null, 3_600_000, 0, new JwtKeySet(publicKeys.toString()));
+        String keySetToken = signingNode.generateJwtToken(new UsernamePasswordAuthenticationToken(principal(), null));
+
+        // ACT & ASSERT
+        assertThat(Jwts.parser().setSigningKey(pair.getPublic()).parseClaimsJws(keySetToken).getHeader())
+                .containsEntry(JwsHeader.KEY_ID, "2026-01")
+                .containsEntry(JwsHeader.ALGORITHM, "RS256");
+        assertThat(verifyingNode.verify(keySetToken)).map(JwtClaims::getSubject).contains("yoga@studio.com");
+        assertThatThrownBy(() -> verifyingNode.generateJwtToken(new UsernamePasswordAuthenticationToken(principal(), null)))
+                .isInstanceOf(IllegalStateException.class);
+    }
+
+    @Test
+    public void verify_shouldAcceptFormerAndNewKeys_duringRotation() throws Exception {
+        // ARRANGE
+        JwtKeySetTests.writeKeyPair(keys, "2026-01", JwtKeySetTests.rsaKeyPair());
+        JwtKeySet keySet = new JwtKeySet(keys.toString());
+        JwtUtils keySetJwtUtils = new JwtUtils(SECRET, 3_600_000, 10, keySet);
+        String formerToken = keySetJwtUtils.generateJwtToken(new UsernamePasswordAuthenticationToken(principal(), null));
+
+        // ACT
+        JwtKeySetTests.writeKeyPair(keys, "2026-02", JwtKeySetTests.ecKeyPair());
+        keySet.reload();
+        String newToken = keySetJwtUtils.generateJwtToken(new UsernamePasswordAuthenticationToken(principal(), null));
+
+        // ASSERT: tokens of both keys, and of the secret used before the key set
+        assertThat(keySetJwtUtils.verify(formerToken)).isPresent();
+        assertThat(keySetJwtUtils.verify(newToken)).isPresent();
+        assertThat(keySetJwtUtils.verify(token)).isPresent();
+
+        // ACT: end of the rotation, even for the cached token
+        Files.delete(keys.resolve("2026-01.pub.pem"));
+        keySet.reload();
+
+        // ASSERT
+        assertThat(keySetJwtUtils.verify(formerToken)).isEmpty();
+        assertThat(keySetJwtUtils.verify(newToken)).isPresent();
+    }
+
+    @Test
+    public void verify_shouldReturnEmpty_whenKeyIdIsUnknownOrAlgorithmDoesNotMatchTheKey() throws Exception {
+        // ARRANGE
+        KeyPair pair = JwtKeySetTests.rsaKeyPair();
+        JwtKeySetTests.writePublicKey(keys, "2026-01", pair);
+        JwtUtils verifyingNode = new JwtUtils(null, 3_600_000, 0, new JwtKeySet(keys.toString()));
+        String unknownKid = Jwts.builder().setSubject("yoga@studio.com").setHeaderParam(JwsHeader.KEY_ID, "2025-12")
+                .signWith(SignatureAlgorithm.RS256, JwtKeySetTests.rsaKeyPair().getPrivate()).compact();
+        // the public key, known to anyone, used as an HMAC secret
+        String confusedAlgorithm = Jwts.builder().setSubject("yoga@studio.com").setHeaderParam(JwsHeader.KEY_ID, "2026-01")
+                .signWith(SignatureAlgorithm.HS256, pair.getPublic().getEncoded()).compact();
+
+        // ACT & ASSERT
+        assertThat(verifyingNode.verify(unknownKid)).isEmpty();
+        assertThat(verifyingNode.verify(confusedAlgorithm)).isEmpty();
+        assertThat(verifyingNode.verify(token)).isEmpty();
+    }
+
+    @Test
+    public void constructor_shouldThrowIllegalState_whenThereIsNeitherSecretNorKeySet() {
+        // ACT & ASSERT
+        assertThatThrownBy(() -> new JwtUtils("", 3_600_000, 0, new JwtKeySet(""))).isInstanceOf(IllegalStateException.class);
+    }
+
+    @Test
+    public void validateAndGetUserName_shouldAgreeWithVerify() {
+        // ACT & ASSERT
+        assertThat(jwtUtils.validateJwtToken(token)).isTrue();
+        assertThat(jwtUtils.getUserNameFromJwtToken(token)).isEqualTo("yoga@studio.com");
+    }
+
+    private static UserDetailsImpl principal() {
+        return UserDetailsImpl.builder().id(1L).username("yoga@studio.com").admin(false).tokenVersion(0).build();
+    }
+}
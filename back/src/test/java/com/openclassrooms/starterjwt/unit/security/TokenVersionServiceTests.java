@@ -0,0 +1,81 @@
+package com.openclassrooms.starterjwt.unit.security;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.Optional;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.cache.caffeine.CaffeineCacheManager;
+
+import com.openclassrooms.starterjwt.repository.UserRepository;
+import com.openclassrooms.starterjwt.security.services.TokenVersionService;
+
+@Tag("unit")
+@ExtendWith(MockitoExtension.class)
+public class TokenVersionServiceTests {
+
+    @Mock
+    UserRepository userRepository;
+
+    private TokenVersionService tokenVersionService;
+
+    @BeforeEach
+    public void init() {
+        tokenVersionService = new TokenVersionService(userRepository, new CaffeineCacheManager(TokenVersionService.TOKEN_VERSIONS_CACHE));
+    }
+
+    @Test
+    public void isCurrent_shouldQueryOnce_whenCheckedTwice() {
+        // ARRANGE
+        when(userRepository.findTokenVersionById(1L)).thenReturn(Optional.of(2));
+
+        // ACT & ASSERT
+        assertThat(tokenVersionService.isCurrent(1L, 2)).isTrue();
+        assertThat(tokenVersionService.isCurrent(1L, 1)).isFalse();
+        verify(userRepository, times(1)).findTokenVersionById(1L);
+    }
+
+    @Test
+    public void isCurrent_shouldReject_whenUserNotExists() {
+        // ARRANGE
+        when(userRepository.findTokenVersionById(1L)).thenReturn(Optional.empty());
+
+        // ACT & ASSERT
+        assertThat(tokenVersionService.isCurrent(1L, 0)).isFalse();
+        assertThat(tokenVersionService.isCurrent(1L, 0)).isFalse();
+        verify(userRepository, times(1)).findTokenVersionById(1L);
+    }
+
+    @Test
+    public void revoke_shouldRejectFormerTokensAtOnce() {
+        // ARRANGE
+        when(userRepository.findTokenVersionById(1L)).thenReturn(Optional.of(0), Optional.of(1));
+        when(userRepository.incrementTokenVersion(1L)).thenReturn(1);
+        assertThat(tokenVersionService.isCurrent(1L, 0)).isTrue();
+
+        // ACT
+        boolean revoked = tokenVersionService.revoke(1L);
+
+        // ASSERT
+        assertThat(revoked).isTrue();
+        assertThat(tokenVersionService.isCurrent(1L, 0)).isFalse();
+        assertThat(tokenVersionService.isCurrent(1L, 1)).isTrue();
+    }
+
+    @Test
+    public void revoke_shouldReturnFalse_whenUserNotExists() {
+        // ARRANGE
+        when(userRepository.incrementTokenVersion(1L)).thenReturn(0);
+
+        // ACT & ASSERT
+        assertThat(tokenVersionService.revoke(1L)).isFalse();
+    }
+}
@@ -0,0 +1,91 @@
+package com.openclassrooms.starterjwt.unit.security;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.Optional;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.cache.caffeine.CaffeineCacheManager;
+import org.springframework.security.core.userdetails.UserDetails;
+import org.springframework.security.core.userdetails.UsernameNotFoundException;
+
+import com.openclassrooms.starterjwt.models.User;
+import com.openclassrooms.starterjwt.repository.UserRepository;
+import com.openclassrooms.starterjwt.security.services.UserDetailsImpl;
+import com.openclassrooms.starterjwt.security.services.UserDetailsServiceImpl;
+
+@Tag("unit")
+@ExtendWith(MockitoExtension.class)
+public class UserDetailsServiceImplTests {
+
+    @Mock
+    UserRepository userRepository;
+
+    private UserDetailsServiceImpl userDetailsService;
+    private User user;
+
+    @BeforeEach
+    public void init() {
+        userDetailsService = new UserDetailsServiceImpl(userRepository, new CaffeineCacheManager(UserDetailsServiceImpl.USERS_CACHE));
+
+        user = User.builder()
+                .id(1L)
+                .email("yoga@studio.com")
+                .lastName("lastName")
+                .firstName("firstName")
+                .password("encoded")
+                .admin(false)
+                .build();
+    }
+
+    @Test
+    public void loadUserByUsername_shouldQueryOnce_whenUserLoadedTwice() {
+        // ARRANGE
+        when(userRepository.findByEmail(user.getEmail())).thenReturn(Optional.of(user));
+
+        // ACT
+        UserDetails first = userDetailsService.loadUserByUsername(user.getEmail());
+        UserDetails second = userDetailsService.loadUserByUsername(user.getEmail());
+
+        // ASSERT
+        assertThat(((UserDetailsImpl) first).getId()).isEqualTo(user.getId());
+        assertThat(first.getPassword()).isEqualTo("encoded");
+        assertThat(second).isSameAs(first);
+        verify(userRepository, times(1)).findByEmail(user.getEmail());
+    }
+
+    @Test
+    public void loadUserByUsername_shouldCacheUnknownEmails() {
+        // ARRANGE
+        when(userRepository.findByEmail("unknown@studio.com")).thenReturn(Optional.empty());
+
+        // ACT & ASSERT
+        assertThrows(UsernameNotFoundException.class, () -> userDetailsService.loadUserByUsername("unknown@studio.com"));
+        assertThrows(UsernameNotFoundException.class, () -> userDetailsService.loadUserByUsername("unknown@studio.com"));
+        verify(userRepository, times(1)).findByEmail("unknown@studio.com");
+    }
+
+    @Test
+    public void loadUserByUsername_shouldQueryAgain_whenEvicted() {
+        // ARRANGE
+        when(userRepository.findByEmail(user.getEmail())).thenReturn(Optional.empty(), Optional.of(user));
+        assertThrows(UsernameNotFoundException.class, () -> userDetailsService.loadUserByUsername(user.getEmail()));
+
+        // ACT
+        userDetailsService.evict(user.getEmail());
+        UserDetails userDetails = userDetailsService.loadUserByUsername(user.getEmail());
+
+        // ASSERT
+        assertThat(userDetails.getUsername()).isEqualTo(user.getEmail());
+        verify(userRepository, times(2)).findByEmail(user.getEmail());
+    }
+}
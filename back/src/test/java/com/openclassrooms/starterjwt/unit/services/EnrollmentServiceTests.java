@@ -0,0 +1,196 @@
+package com.openclassrooms.starterjwt.unit.services;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.Assert.assertThrows;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.dao.DuplicateKeyException;
+
+import com.openclassrooms.starterjwt.exception.BadRequestException;
+import com.openclassrooms.starterjwt.exception.ConflictException;
+import com.openclassrooms.starterjwt.exception.NotFoundException;
+import com.openclassrooms.starterjwt.outbox.OutboxEventType;
+import com.openclassrooms.starterjwt.outbox.OutboxWriter;
+import com.openclassrooms.starterjwt.repository.ParticipationBatchRepository;
+import com.openclassrooms.starterjwt.repository.ParticipationKey;
+import com.openclassrooms.starterjwt.repository.UserRepository;
+import com.openclassrooms.starterjwt.services.EnrollmentService;
+import com.openclassrooms.starterjwt.services.EnrollmentStatus;
+
+@Tag("unit")
+@ExtendWith(MockitoExtension.class)
+public class EnrollmentServiceTests {
+
+    @Mock
+    ParticipationBatchRepository participationBatchRepository;
+
+    @Mock
+    UserRepository userRepository;
+
+    @Mock
+    OutboxWriter outboxWriter;
+
+    @InjectMocks
+    EnrollmentService enrollmentService;
+
+    @Test
+    public void enrollUsers_shouldSeatInRequestOrderThenWaitlist_whenSessionFillsUp() {
+        // ARRANGE
+        when(participationBatchRepository.lockSessions(List.of(1L))).thenReturn(Map.of(1L, 2));
+        when(userRepository.findIdsByIdIn(List.of(10L, 11L, 12L, 13L, 14L, 15L))).thenReturn(Set.of(10L, 11L, 12L, 13L, 14L));
+        when(participationBatchRepository.findParticipations(anyList())).thenReturn(Set.of(new ParticipationKey(1L, 11L)));
+        when(participationBatchRepository.findWaitlisted(anyList())).thenReturn(Set.of(new ParticipationKey(1L, 12L)));
+
+        // ACT
+        Map<ParticipationKey, EnrollmentStatus> report = enrollmentService.enrollUsers(1L, List.of(10L, 11L, 12L, 13L, 10L, 14L, 15L));
+
+        // ASSERT
+        assertThat(report).containsExactly(
+                Map.entry(new ParticipationKey(1L, 10L), EnrollmentStatus.PARTICIPATING),
+                Map.entry(new ParticipationKey(1L, 11L), EnrollmentStatus.ALREADY_PARTICIPATING),
+                Map.entry(new ParticipationKey(1L, 12L), EnrollmentStatus.ALREADY_WAITLISTED),
+                Map.entry(new ParticipationKey(1L, 13L), EnrollmentStatus.PARTICIPATING),
+                Map.entry(new ParticipationKey(1L, 14L), EnrollmentStatus.WAITLISTED),
+                Map.entry(new ParticipationKey(1L, 15L), EnrollmentStatus.UNKNOWN_USER));
+        verify(participationBatchRepository).insertParticipations(List.of(new ParticipationKey(1L, 10L), new ParticipationKey(1L, 13L)));
+        verify(participationBatchRepository).enqueue(List.of(new ParticipationKey(1L, 14L)));
+        verify(outboxWriter).appendAll(OutboxEventType.PARTICIPANT_JOINED, List.of(new ParticipationKey(1L, 10L), new ParticipationKey(1L, 13L)));
+        verify(outboxWriter).appendAll(OutboxEventType.PARTICIPANT_WAITLISTED, List.of(new ParticipationKey(1L, 14L)));
+        verify(participationBatchRepository).addParticipants(any(), any());
+    }
+
+    @Test
+    public void enrollUsers_shouldThrowNotFound_whenSessionNotExists() {
+        // ARRANGE
+        when(participationBatchRepository.lockSessions(List.of(1L))).thenReturn(Map.of());
+
+        // ACT & ASSERT
+        assertThrows(NotFoundException.class, () -> enrollmentService.enrollUsers(1L, List.of(10L)));
+        verify(participationBatchRepository, never()).insertParticipations(anyList());
+    }
+
+    @Test
+    public void enrollUsers_shouldThrowBadRequest_whenTooManyIds() {
+        // ARRANGE
+        List<Long> userIds = new ArrayList<>(Collections.nCopies(EnrollmentService.MAX_IDS + 1, 10L));
+
+        // ACT & ASSERT
+        assertThrows(BadRequestException.class, () -> enrollmentService.enrollUsers(1L, userIds));
+        assertThrows(BadRequestException.class, () -> enrollmentService.enrollUsers(1L, List.of()));
+    }
+
+    @Test
+    public void enrollInSessions_shouldReportUnknownAndFullSessions() {
+        // ARRANGE
+        when(participationBatchRepository.lockSessions(List.of(1L, 2L, 3L))).thenReturn(Map.of(1L, Integer.MAX_VALUE, 2L, 0));
+        when(userRepository.existsById(10L)).thenReturn(true);
+
+        // ACT
+        Map<ParticipationKey, EnrollmentStatus> report = enrollmentService.enrollInSessions(10L, List.of(1L, 2L, 3L));
+
+        // ASSERT
+        assertThat(report).containsExactly(
+                Map.entry(new ParticipationKey(1L, 10L), EnrollmentStatus.PARTICIPATING),
+                Map.entry(new ParticipationKey(2L, 10L), EnrollmentStatus.WAITLISTED),
+                Map.entry(new ParticipationKey(3L, 10L), EnrollmentStatus.UNKNOWN_SESSION));
+        verify(participationBatchRepository).addParticipants(any(), any());
+    }
+
+    @Test
+    public void enrollInSessions_shouldThrowNotFound_whenUserNotExists() {
+        // ARRANGE
+        when(participationBatchRepository.lockSessions(List.of(1L))).thenReturn(Map.of(1L, 1));
+        when(userRepository.existsById(10L)).thenReturn(false);
+
+        // ACT & ASSERT
+        assertThrows(NotFoundException.class, () -> enrollmentService.enrollInSessions(10L, List.of(1L)));
+    }
+
+    @Test
+    public void enrollInSessions_shouldThrowConflict_whenParticipantInsertedConcurrently() {
+        // ARRANGE
+        when(participationBatchRepository.lockSessions(List.of(1L))).thenReturn(Map.of(1L, 1));
+        when(userRepository.existsById(10L)).thenReturn(true);
+        doThrow(new DuplicateKeyException("duplicate")).when(participationBatchRepository).insertParticipations(anyList());
+
+        // ACT & ASSERT
+        assertThrows(ConflictException.class, () -> enrollmentService.enrollInSessions(10L, List.of(1L)));
+        verify(participationBatchRepository, never()).addParticipants(any(), any());
+    }
+
+    @Test
+    public void unenrollUsers_shouldHandFreedSeatsToWaitlistHeads() {
+        // ARRANGE
+        when(participationBatchRepository.lockSessions(List.of(1L))).thenReturn(Map.of(1L, 0));
+        when(participationBatchRepository.findParticipations(anyList()))
+                .thenReturn(Set.of(new ParticipationKey(1L, 10L), new ParticipationKey(1L, 11L)));
+        when(participationBatchRepository.findWaitlisted(anyList())).thenReturn(Set.of(new ParticipationKey(1L, 12L)));
+        when(participationBatchRepository.findWaitlistHeads(1L, 2)).thenReturn(List.of(20L));
+
+        // ACT
+        Map<ParticipationKey, EnrollmentStatus> report = enrollmentService.unenrollUsers(1L, List.of(10L, 12L, 13L, 11L));
+
+        // ASSERT
+        assertThat(report).containsExactly(
+                Map.entry(new ParticipationKey(1L, 10L), EnrollmentStatus.LEFT),
+                Map.entry(new ParticipationKey(1L, 12L), EnrollmentStatus.LEFT_WAITLIST),
+                Map.entry(new ParticipationKey(1L, 13L), EnrollmentStatus.NOT_ENROLLED),
+                Map.entry(new ParticipationKey(1L, 11L), EnrollmentStatus.LEFT));
+        verify(participationBatchRepository).deleteParticipations(List.of(new ParticipationKey(1L, 10L), new ParticipationKey(1L, 11L)));
+        verify(participationBatchRepository).dequeue(List.of(new ParticipationKey(1L, 12L)));
+        verify(participationBatchRepository).dequeue(List.of(new ParticipationKey(1L, 20L)));
+        verify(participationBatchRepository).insertParticipations(List.of(new ParticipationKey(1L, 20L)));
+        verify(participationBatchRepository).addParticipants(eq(Map.of(1L, -1)), any());
+        verify(outboxWriter).appendAll(OutboxEventType.PARTICIPANT_PROMOTED, List.of(new ParticipationKey(1L, 20L)));
+    }
+
+    @Test
+    public void unenrollUsers_shouldDequeueHeadsAlreadyParticipating_withoutGivingThemASeat() {
+        // ARRANGE: head 20 was also added as participant by a session update
+        ParticipationKey leaving = new ParticipationKey(1L, 10L);
+        ParticipationKey alreadyIn = new ParticipationKey(1L, 20L);
+        ParticipationKey next = new ParticipationKey(1L, 21L);
+        when(participationBatchRepository.lockSessions(List.of(1L))).thenReturn(Map.of(1L, 0));
+        when(participationBatchRepository.findParticipations(List.of(leaving))).thenReturn(Set.of(leaving));
+        when(participationBatchRepository.findWaitlistHeads(1L, 1)).thenReturn(List.of(20L), List.of(21L));
+        when(participationBatchRepository.findParticipations(List.of(alreadyIn))).thenReturn(Set.of(alreadyIn));
+        when(participationBatchRepository.findParticipations(List.of(next))).thenReturn(Set.of());
+
+        // ACT
+        enrollmentService.unenrollUsers(1L, List.of(10L));
+
+        // ASSERT: the seat goes to the next head, both heads leave the waitlist
+        verify(participationBatchRepository).dequeue(List.of(alreadyIn));
+        verify(participationBatchRepository).dequeue(List.of(next));
+        verify(participationBatchRepository).insertParticipations(List.of(next));
+        verify(participationBatchRepository).addParticipants(eq(Map.of(1L, 0)), any());
+        verify(outboxWriter).appendAll(OutboxEventType.PARTICIPANT_PROMOTED, List.of(next));
+    }
+
+    @Test
+    public void unenrollUsers_shouldThrowNotFound_whenSessionNotExists() {
+        // ARRANGE
+        when(participationBatchRepository.lockSessions(List.of(1L))).thenReturn(Map.of());
+
+        // ACT & ASSERT
+        assertThrows(NotFoundException.class, () -> enrollmentService.unenrollUsers(1L, List.of(10L)));
+    }
+}
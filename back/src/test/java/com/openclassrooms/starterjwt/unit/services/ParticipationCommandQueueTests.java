@@ -0,0 +1,315 @@
+package com.openclassrooms.starterjwt.unit.services;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.Assert.assertThrows;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.inOrder;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.stream.Collectors;
+import java.util.stream.LongStream;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InOrder;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import com.openclassrooms.starterjwt.exception.BadRequestException;
+import com.openclassrooms.starterjwt.exception.NotFoundException;
+import com.openclassrooms.starterjwt.exception.ServiceUnavailableException;
+import com.openclassrooms.starterjwt.repository.ParticipationBatchRepository;
+import com.openclassrooms.starterjwt.repository.ParticipationKey;
+import com.openclassrooms.starterjwt.services.EnrollmentService;
+import com.openclassrooms.starterjwt.services.EnrollmentStatus;
+import com.openclassrooms.starterjwt.services.ParticipationCommand;
+import com.openclassrooms.starterjwt.services.ParticipationCommandQueue;
+
+@Tag("unit")
+@ExtendWith(MockitoExtension.class)
+public class ParticipationCommandQueueTests {
+
+    private static final int QUEUE_SIZE = 5;
+
+    private static final int MAX_ATTEMPTS = 3;
+
+    @Mock
+    EnrollmentService enrollmentService;
+
+    @Mock
+    ParticipationBatchRepository participationBatchRepository;
+
+    ParticipationCommandQueue participationCommandQueue;
+
+    @BeforeEach
+    public void init() {
+        // the writer thread is not started: the tests flush by hand, retries are due at once
+        participationCommandQueue = new ParticipationCommandQueue(enrollmentService, participationBatchRepository,
+                true, QUEUE_SIZE, 100, 50, 100, MAX_ATTEMPTS, 0);
+    }
+
+    private void givenSessionsWithoutMembers() {
+        when(participationBatchRepository.findMembers(anyLong())).thenAnswer(invocation -> Optional.of(new HashSet<Long>()));
+    }
+
+    @Test
+    public void submit_shouldRejectJoin_whenUserAlreadyMember() {
+        // ARRANGE
+        when(participationBatchRepository.findMembers(1L)).thenReturn(Optional.of(new HashSet<>(Set.of(10L))));
+
+        // ACT & ASSERT
+        assertThrows(BadRequestException.class, () -> participationCommandQueue.submit(ParticipationCommand.join(1L, 10L)));
+        assertThrows(BadRequestException.class, () -> participationCommandQueue.submit(ParticipationCommand.leave(1L, 11L)));
+    }
+
+    @Test
+    public void submit_shouldThrowNotFound_whenSessionNotExists() {
+        // ARRANGE
+        when(participationBatchRepository.findMembers(1L)).thenReturn(Optional.empty());
+
+        // ACT & ASSERT
+        assertThrows(NotFoundException.class, () -> participationCommandQueue.submit(ParticipationCommand.join(1L, 10L)));
+    }
+
+    @Test
+    public void submit_shouldCheckAcceptedCommandsInMemory_whenSameSessionAgain() {
+        // ARRANGE
+        givenSessionsWithoutMembers();
+        participationCommandQueue.submit(ParticipationCommand.join(1L, 10L));
+
+        // ACT & ASSERT
+        assertThrows(BadRequestException.class, () -> participationCommandQueue.submit(ParticipationCommand.join(1L, 10L)));
+        participationCommandQueue.submit(ParticipationCommand.leave(1L, 10L));
+        verify(participationBatchRepository, times(1)).findMembers(1L);
+    }
+
+    @Test
+    public void submit_shouldThrowServiceUnavailable_whenQueueFull() {
+        // ARRANGE
+        givenSessionsWithoutMembers();
+        for (long userId = 0; userId < QUEUE_SIZE; userId++) {
+            participationCommandQueue.submit(ParticipationCommand.join(1L, userId));
+        }
+
+        // ACT & ASSERT
+        assertThrows(ServiceUnavailableException.class, () -> participationCommandQueue.submit(ParticipationCommand.join(1L, 99L)));
+        participationCommandQueue.flush();
+        participationCommandQueue.submit(ParticipationCommand.join(1L, 99L));
+    }
+
+    @Test
+    public void flush_shouldBatchConsecutiveCommandsOfASessionInQueueOrder() {
+        // ARRANGE
+        givenSessionsWithoutMembers();
+        participationCommandQueue.submit(ParticipationCommand.join(1L, 10L));
+        participationCommandQueue.submit(ParticipationCommand.join(2L, 10L));
+        participationCommandQueue.submit(ParticipationCommand.join(1L, 11L));
+        participationCommandQueue.submit(ParticipationCommand.leave(1L, 10L));
+        participationCommandQueue.submit(ParticipationCommand.join(1L, 12L));
+        when(enrollmentService.enrollUsers(anyLong(), anyList())).thenReturn(Map.of());
+        when(enrollmentService.unenrollUsers(anyLong(), anyList())).thenReturn(Map.of());
+
+        // ACT
+        int written = participationCommandQueue.flush();
+
+        // ASSERT
+        assertThat(written).isEqualTo(5);
+        InOrder inOrder = inOrder(enrollmentService);
+        inOrder.verify(enrollmentService).enrollUsers(1L, List.of(10L, 11L));
+        inOrder.verify(enrollmentService).unenrollUsers(1L, List.of(10L));
+        inOrder.verify(enrollmentService).enrollUsers(1L, List.of(12L));
+        inOrder.verify(enrollmentService).enrollUsers(2L, List.of(10L));
+        assertThat(participationCommandQueue.flush()).isZero();
+    }
+
+    @Test
+    public void flush_shouldForgetUnknownUsers() {
+        // ARRANGE
+        givenSessionsWithoutMembers();
+        participationCommandQueue.submit(ParticipationCommand.join(1L, 10L));
+        when(enrollmentService.enrollUsers(1L, List.of(10L)))
+                .thenReturn(Map.of(new ParticipationKey(1L, 10L), EnrollmentStatus.UNKNOWN_USER));
+
+        // ACT
+        participationCommandQueue.flush();
+
+        // ASSERT
+        participationCommandQueue.submit(ParticipationCommand.join(1L, 10L));
+        verify(participationBatchRepository, times(1)).findMembers(1L);
+    }
+
+    @Test
+    public void flush_shouldRetryAFailedBatch_beforeTheLaterCommandsOfItsSession() {
+        // ARRANGE
+        givenSessionsWithoutMembers();
+        participationCommandQueue.submit(ParticipationCommand.join(1L, 10L));
+        participationCommandQueue.submit(ParticipationCommand.join(2L, 10L));
+        when(enrollmentService.enrollUsers(1L, List.of(10L)))
+                .thenThrow(new IllegalStateException("deadlock"))
+                .thenReturn(Map.of());
+        when(enrollmentService.enrollUsers(2L, List.of(10L))).thenReturn(Map.of());
+        when(enrollmentService.unenrollUsers(1L, List.of(10L))).thenReturn(Map.of());
+
+        // ACT: the first attempt fails, the user cancels before the retry
+        participationCommandQueue.flush();
+        participationCommandQueue.submit(ParticipationCommand.leave(1L, 10L));
+        participationCommandQueue.flush();
+
+        // ASSERT: the acknowledged join is written, then the cancellation
+        InOrder inOrder = inOrder(enrollmentService);
+        inOrder.verify(enrollmentService, times(2)).enrollUsers(1L, List.of(10L));
+        inOrder.verify(enrollmentService).unenrollUsers(1L, List.of(10L));
+        verify(enrollmentService, times(1)).enrollUsers(2L, List.of(10L));
+        assertThat(participationCommandQueue.flush()).isZero();
+        verify(enrollmentService, times(2)).enrollUsers(1L, List.of(10L));
+        // the view still holds the accepted commands
+        verify(participationBatchRepository, times(1)).findMembers(1L);
+    }
+
+    @Test
+    public void flush_shouldHoldTheLaterCommandsOfASession_untilItsRetryIsDue() {
+        // ARRANGE
+        ParticipationCommandQueue slowRetries = new ParticipationCommandQueue(enrollmentService, participationBatchRepository,
+                true, QUEUE_SIZE, 100, 50, 100, MAX_ATTEMPTS, 60_000);
+        givenSessionsWithoutMembers();
+        slowRetries.submit(ParticipationCommand.join(1L, 10L));
+        when(enrollmentService.enrollUsers(1L, List.of(10L))).thenThrow(new IllegalStateException("deadlock"));
+        slowRetries.flush();
+
+        // ACT
+        slowRetries.submit(ParticipationCommand.join(1L, 11L));
+        slowRetries.flush();
+
+        // ASSERT
+        verify(enrollmentService, times(1)).enrollUsers(anyLong(), anyList());
+    }
+
+    @Test
+    public void submit_shouldThrowServiceUnavailable_whenCommandsHeldForARetryFillTheQueue() {
+        // ARRANGE
+        ParticipationCommandQueue slowRetries = new ParticipationCommandQueue(enrollmentService, participationBatchRepository,
+                true, QUEUE_SIZE, 100, 50, 100, MAX_ATTEMPTS, 60_000);
+        givenSessionsWithoutMembers();
+        slowRetries.submit(ParticipationCommand.join(1L, 0L));
+        when(enrollmentService.enrollUsers(1L, List.of(0L))).thenThrow(new IllegalStateException("deadlock"));
+        slowRetries.flush();
+        for (long userId = 1; userId < QUEUE_SIZE; userId++) {
+            slowRetries.submit(ParticipationCommand.join(1L, userId));
+        }
+
+        // ACT
+        slowRetries.flush();
+
+        // ASSERT: the queue is empty, the retry holds as many commands as it could
+        assertThrows(ServiceUnavailableException.class, () -> slowRetries.submit(ParticipationCommand.join(2L, 10L)));
+    }
+
+    @Test
+    public void flush_shouldDropTheBatchAndReloadView_afterMaxAttempts() {
+        // ARRANGE
+        givenSessionsWithoutMembers();
+        participationCommandQueue.submit(ParticipationCommand.join(1L, 10L));
+        when(enrollmentService.enrollUsers(1L, List.of(10L))).thenThrow(new IllegalStateException("deadlock"));
+
+        // ACT
+        for (int attempt = 0; attempt < MAX_ATTEMPTS + 1; attempt++) {
+            participationCommandQueue.flush();
+        }
+
+        // ASSERT
+        verify(enrollmentService, times(MAX_ATTEMPTS)).enrollUsers(1L, List.of(10L));
+        participationCommandQueue.submit(ParticipationCommand.join(1L, 10L));
+        verify(participationBatchRepository, times(2)).findMembers(1L);
+    }
+
+    @Test
+    public void flush_shouldDropOnlyTheRejectedCommand_withoutRetryingTheOthers() {
+        // ARRANGE
+        givenSessionsWithoutMembers();
+        participationCommandQueue.submit(ParticipationCommand.join(1L, 10L));
+        participationCommandQueue.submit(ParticipationCommand.join(1L, 11L));
+        participationCommandQueue.submit(ParticipationCommand.join(1L, 12L));
+        when(enrollmentService.enrollUsers(1L, List.of(10L, 11L, 12L))).thenThrow(new BadRequestException());
+        when(enrollmentService.enrollUsers(1L, List.of(10L))).thenReturn(Map.of());
+        when(enrollmentService.enrollUsers(1L, List.of(11L))).thenThrow(new BadRequestException());
+        when(enrollmentService.enrollUsers(1L, List.of(12L))).thenReturn(Map.of());
+
+        // ACT
+        participationCommandQueue.flush();
+        participationCommandQueue.flush();
+
+        // ASSERT
+        verify(enrollmentService, times(1)).enrollUsers(1L, List.of(10L, 11L, 12L));
+        verify(enrollmentService, times(1)).enrollUsers(1L, List.of(11L));
+        verify(enrollmentService, times(1)).enrollUsers(1L, List.of(12L));
+        // the view held the dropped join
+        participationCommandQueue.submit(ParticipationCommand.join(1L, 13L));
+        verify(participationBatchRepository, times(2)).findMembers(1L);
+    }
+
+    @Test
+    public void flush_shouldDropTheCommandsOfASession_whenItNoLongerExists() {
+        // ARRANGE
+        givenSessionsWithoutMembers();
+        participationCommandQueue.submit(ParticipationCommand.join(1L, 10L));
+        participationCommandQueue.submit(ParticipationCommand.leave(1L, 10L));
+        when(enrollmentService.enrollUsers(1L, List.of(10L))).thenThrow(new NotFoundException());
+
+        // ACT
+        participationCommandQueue.flush();
+        participationCommandQueue.flush();
+
+        // ASSERT
+        verify(enrollmentService, times(1)).enrollUsers(1L, List.of(10L));
+        verify(enrollmentService, never()).unenrollUsers(anyLong(), anyList());
+    }
+
+    @Test
+    public void flush_shouldWriteARetryBacklogByBatches_ofAtMostBatchSizeIds() throws InterruptedException {
+        // ARRANGE
+        int joins = EnrollmentService.MAX_IDS + 100;
+        ParticipationCommandQueue backlog = new ParticipationCommandQueue(enrollmentService, participationBatchRepository,
+                true, 1000, EnrollmentService.MAX_IDS, 50, 100, MAX_ATTEMPTS, 100);
+        givenSessionsWithoutMembers();
+        backlog.submit(ParticipationCommand.join(1L, 0L));
+        when(enrollmentService.enrollUsers(eq(1L), anyList()))
+                .thenThrow(new IllegalStateException("deadlock"))
+                .thenReturn(Map.of());
+        backlog.flush();
+
+        // ACT: the joins queued while the retry backs off are held with it, then written once it is due
+        for (long userId = 1; userId <= joins; userId++) {
+            backlog.submit(ParticipationCommand.join(1L, userId));
+        }
+        while (backlog.flush() > 0) {
+            // drain the queue into the retry
+        }
+        Thread.sleep(150);
+        backlog.flush();
+
+        // ASSERT
+        ArgumentCaptor<List<Long>> userIds = ArgumentCaptor.forClass(List.class);
+        verify(enrollmentService, times(3)).enrollUsers(eq(1L), userIds.capture());
+        List<List<Long>> batches = userIds.getAllValues();
+        assertThat(batches.get(1)).hasSize(EnrollmentService.MAX_IDS);
+        assertThat(batches.get(2)).hasSize(joins + 1 - EnrollmentService.MAX_IDS);
+        List<Long> written = new ArrayList<>(batches.get(1));
+        written.addAll(batches.get(2));
+        assertThat(written).isEqualTo(LongStream.rangeClosed(0, joins).boxed().collect(Collectors.toList()));
+        assertThat(backlog.flush()).isZero();
+    }
+}
@@ -0,0 +1,190 @@
+package com.openclassrooms.starterjwt.unit.services;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.time.LocalDateTime;
+import java.util.Date;
+import java.util.HashSet;
+import java.util.Optional;
+
+import javax.persistence.EntityManager;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.cache.CacheManager;
+import org.springframework.cache.annotation.EnableCaching;
+import org.springframework.cache.caffeine.CaffeineCacheManager;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Import;
+import org.springframework.test.context.junit.jupiter.SpringJUnitConfig;
+
+import com.openclassrooms.starterjwt.models.Session;
+import com.openclassrooms.starterjwt.models.User;
+import com.openclassrooms.starterjwt.outbox.OutboxWriter;
+import com.openclassrooms.starterjwt.repository.SessionRepository;
+import com.openclassrooms.starterjwt.repository.UserRepository;
+import com.openclassrooms.starterjwt.repository.WaitlistRepository;
+import com.openclassrooms.starterjwt.search.SessionSearchIndex;
+import com.openclassrooms.starterjwt.services.SessionService;
+
+@Tag("unit")
+@SpringJUnitConfig(SessionServiceCacheTests.CacheConfig.class)
+public class SessionServiceCacheTests {
+
+    @Configuration
+    @EnableCaching
+    @Import(SessionService.class)
+    static class CacheConfig {
+        @Bean
+        public CacheManager cacheManager() {
+            return new CaffeineCacheManager(SessionService.SESSIONS_CACHE);
+        }
+    }
+
+    @MockBean
+    SessionRepository sessionRepository;
+
+    @MockBean
+    UserRepository userRepository;
+
+    @MockBean
+    WaitlistRepository waitlistRepository;
+
+    @MockBean
+    EntityManager entityManager;
+
+    @MockBean
+    SessionSearchIndex sessionSearchIndex;
+
+    @MockBean
+    OutboxWriter outboxWriter;
+
+    @Autowired
+    SessionService sessionService;
+
+    @Autowired
+    CacheManager cacheManager;
+
+    private Session session;
+    private User user;
+
+    @BeforeEach
+    public void init() {
+        cacheManager.getCache(SessionService.SESSIONS_CACHE).clear();
+
+        user = User.builder()
+                .id(1L)
+                .email("user@email.com")
+                .lastName("lastName")
+                .firstName("firstName")
+                .password("1234")
+                .admin(false)
+                .build();
+
+        session = Session.builder()
+                .id(1L)
+                .name("a session")
+                .date(new Date())
+                .description("description")
+                .users(new HashSet<User>())
+                .build();
+    }
+
+    @Test
+    public void shouldHitRepositoryOnce_whenSessionReadTwice() {
+        // ARRANGE
+        when(sessionRepository.findWithParticipantsById(session.getId())).thenReturn(Optional.of(session));
+
+        // ACT
+        Session first = sessionService.getById(session.getId());
+        Session second = sessionService.getById(session.getId());
+
+        // ASSERT
+        assertThat(second).isSameAs(first);
+        verify(sessionRepository, times(1)).findWithParticipantsById(session.getId());
+    }
+
+    @Test
+    public void shouldNotCacheMissingSession_whenSessionNotFound() {
+        // ARRANGE
+        when(sessionRepository.findWithParticipantsById(session.getId())).thenReturn(Optional.empty());
+
+        // ACT
+        sessionService.getById(session.getId());
+        sessionService.getById(session.getId());
+
+        // ASSERT
+        verify(sessionRepository, times(2)).findWithParticipantsById(session.getId());
+    }
+
+    @Test
+    public void shouldReloadSession_whenUserParticipates() {
+        // ARRANGE
+        when(sessionRepository.findWithParticipantsById(session.getId())).thenReturn(Optional.of(session));
+        when(sessionRepository.existsById(session.getId())).thenReturn(true);
+        when(userRepository.existsById(user.getId())).thenReturn(true);
+        when(sessionRepository.reserveSeat(eq(session.getId()), any(LocalDateTime.class))).thenReturn(1);
+        when(sessionRepository.addParticipant(session.getId(), user.getId())).thenReturn(1);
+        sessionService.getById(session.getId());
+
+        // ACT
+        sessionService.participate(session.getId(), user.getId());
+        sessionService.getById(session.getId());
+
+        // ASSERT
+        verify(sessionRepository, times(2)).findWithParticipantsById(session.getId());
+    }
+
+    @Test
+    public void shouldReloadSession_whenSessionUpdated() {
+        // ARRANGE
+        when(sessionRepository.findWithParticipantsById(session.getId())).thenReturn(Optional.of(session));
+        sessionService.getById(session.getId());
+
+        // ACT
+        sessionService.update(session.getId(), session);
+        sessionService.getById(session.getId());
+
+        // ASSERT
+        // loaded by the first getById, by update itself, then again once evicted
+        verify(sessionRepository, times(3)).findWithParticipantsById(session.getId());
+    }
+
+    @Test
+    public void shouldReloadSession_whenSessionDeleted() {
+        // ARRANGE
+        when(sessionRepository.findWithParticipantsById(session.getId())).thenReturn(Optional.of(session));
+        sessionService.getById(session.getId());
+
+        // ACT
+        sessionService.delete(session.getId());
+        sessionService.getById(session.getId());
+
+        // ASSERT
+        verify(sessionRepository, times(2)).findWithParticipantsById(session.getId());
+    }
+
+    @Test
+    public void shouldKeepOtherSessionsCached_whenOneSessionChanges() {
+        // ARRANGE
+        Session other = Session.builder().id(2L).name("other").users(new HashSet<User>()).build();
+        when(sessionRepository.findWithParticipantsById(other.getId())).thenReturn(Optional.of(other));
+        sessionService.getById(other.getId());
+
+        // ACT
+        sessionService.delete(session.getId());
+        sessionService.getById(other.getId());
+
+        // ASSERT
+        verify(sessionRepository, times(1)).findWithParticipantsById(other.getId());
+    }
+}
@@ -4,15 +4,25 @@ import static org.assertj.core.api.Assertions.assertThat;
 import static org.junit.Assert.assertThrows;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.doNothing;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
+import java.time.LocalDateTime;
 import java.util.ArrayList;
+import java.util.HashSet;
 import java.util.Date;
 import java.util.List;
 import java.util.Optional;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+import java.util.stream.LongStream;
+
+import javax.persistence.EntityManager;
 
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Tag;
@@ -21,13 +31,27 @@ import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 
 import com.openclassrooms.starterjwt.exception.BadRequestException;
+import com.openclassrooms.starterjwt.exception.ConflictException;
 import com.openclassrooms.starterjwt.exception.NotFoundException;
 import com.openclassrooms.starterjwt.models.Session;
 import com.openclassrooms.starterjwt.models.User;
+import com.openclassrooms.starterjwt.outbox.OutboxEventType;
+import com.openclassrooms.starterjwt.outbox.OutboxWriter;
+import com.openclassrooms.starterjwt.models.WaitlistEntry;
+import com.openclassrooms.starterjwt.pagination.KeysetCursor;
+import com.openclassrooms.starterjwt.pagination.KeysetPage;
 import com.openclassrooms.starterjwt.repository.SessionRepository;
 import com.openclassrooms.starterjwt.repository.UserRepository;
+import com.openclassrooms.starterjwt.repository.WaitlistRepository;
+import com.openclassrooms.starterjwt.repository.projection.SessionSummaryView;
+import com.openclassrooms.starterjwt.search.SessionSearchIndex;
+import com.openclassrooms.starterjwt.services.ParticipationStatus;
 import com.openclassrooms.starterjwt.services.SessionService;
 
 @Tag("unit")
@@ -40,6 +64,18 @@ public class SessionServiceTests {
     @Mock
     UserRepository userRepository;
 
+    @Mock
+    WaitlistRepository waitlistRepository;
+
+    @Mock
+    EntityManager entityManager;
+
+    @Mock
+    SessionSearchIndex sessionSearchIndex;
+
+    @Mock
+    OutboxWriter outboxWriter;
+
     @InjectMocks
     SessionService sessionService;
 
@@ -66,7 +102,7 @@ public class SessionServiceTests {
                 .name("a session")
                 .date(new Date())
                 .description("description")
-                .users(new ArrayList<User>())
+                .users(new HashSet<User>())
                 .build();
 
         // create a session with a user
@@ -75,7 +111,7 @@ public class SessionServiceTests {
                 .name("a session")
                 .date(new Date())
                 .description("description")
-                .users(new ArrayList<User>(List.of(user)))
+                .users(new HashSet<User>(List.of(user)))
                 .build();
 
         // Create a list of session
@@ -83,14 +119,14 @@ public class SessionServiceTests {
                 .name("a session")
                 .date(new Date())
                 .description("description")
-                .users(new ArrayList<User>())
+                .users(new HashSet<User>())
                 .build();
 
         Session session2 = Session.builder()
                 .name("a session")
                 .date(new Date())
                 .description("description")
-                .users(new ArrayList<User>())
+                .users(new HashSet<User>())
                 .build();
 
         sessions = List.of(session1, session2);
@@ -106,10 +142,51 @@ public class SessionServiceTests {
 
         // ASSERT
         verify(sessionRepository).save(any(Session.class));
+        verify(sessionSearchIndex).index(session);
+        verify(outboxWriter).appendSession(OutboxEventType.SESSION_CREATED, session);
         assertThat(sessionCreated.getName()).isEqualTo(session.getName());
         assertThat(sessionCreated.getDescription()).isEqualTo(session.getDescription());
     }
 
+    @Test
+    public void shouldIndexTheSessionOnlyOnCommit_whenCreatedInATransaction() {
+        // ARRANGE
+        when(sessionRepository.save(any(Session.class))).thenReturn(session);
+        TransactionSynchronizationManager.initSynchronization();
+        try {
+            // ACT
+            sessionService.create(session);
+            List<TransactionSynchronization> synchronizations = TransactionSynchronizationManager.getSynchronizations();
+
+            // ASSERT: a rollback leaves the index untouched
+            verify(sessionSearchIndex, times(0)).index(any(Session.class));
+            synchronizations.forEach(synchronization -> synchronization.afterCompletion(TransactionSynchronization.STATUS_ROLLED_BACK));
+            verify(sessionSearchIndex, times(0)).index(any(Session.class));
+
+            // ASSERT: a commit indexes the session
+            synchronizations.forEach(TransactionSynchronization::afterCommit);
+            verify(sessionSearchIndex).index(session);
+        } finally {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+    }
+
+    @Test
+    public void shouldReturnAConflict_whenCreatedWithMoreParticipantsThanCapacity() {
+        // ARRANGE
+        sessionWithUser.setCapacity(1);
+        sessionWithUser.getUsers().add(User.builder().id(2L).email("new@email.com").lastName("lastName")
+                .firstName("firstName").password("1234").admin(false).build());
+
+        // ACT & ASSERT
+        assertThrows(ConflictException.class, () -> {
+            sessionService.create(sessionWithUser);
+        });
+
+        // ASSERT
+        verify(sessionRepository, times(0)).save(any(Session.class));
+    }
+
     @Test
     public void shouldDeleteASession_whenSessionExits() {
         // ARRANGE
@@ -120,85 +197,405 @@ public class SessionServiceTests {
 
         // ASSERT
         verify(sessionRepository).deleteById(anyLong());
+        verify(sessionSearchIndex).remove(session.getId());
+        verify(outboxWriter).append(OutboxEventType.SESSION_DELETED, session.getId(), null);
     }
 
     @Test
     public void shouldReturnAListOfSession_whenFindAll() {
         // ARRANGE
-        when(sessionRepository.findAll()).thenReturn(sessions);
+        when(sessionRepository.findAllWithParticipants()).thenReturn(sessions);
 
         // ACT
         List<Session> sessionsAll = sessionService.findAll();
 
         // ASSERT
-        verify(sessionRepository).findAll();
+        verify(sessionRepository).findAllWithParticipants();
         assertThat(sessionsAll.size()).isEqualTo(sessions.size());
     }
 
+    @Test
+    public void shouldReturnSessionsInRelevanceOrder_whenSearch() {
+        // ARRANGE
+        Session first = Session.builder().id(1L).build();
+        Session second = Session.builder().id(2L).build();
+        when(sessionSearchIndex.search("yoga", SessionService.DEFAULT_PAGE_SIZE)).thenReturn(List.of(2L, 1L));
+        when(sessionRepository.findAllWithParticipantsByIdIn(List.of(2L, 1L))).thenReturn(List.of(first, second));
+
+        // ACT
+        List<Session> found = sessionService.search("yoga", null);
+
+        // ASSERT
+        assertThat(found).containsExactly(second, first);
+    }
+
+    @Test
+    public void shouldNotQueryRepository_whenSearchMatchesNothing() {
+        // ARRANGE
+        when(sessionSearchIndex.search("yoga", SessionService.DEFAULT_PAGE_SIZE)).thenReturn(List.of());
+
+        // ACT
+        List<Session> found = sessionService.search("yoga", null);
+
+        // ASSERT
+        assertThat(found).isEmpty();
+        verify(sessionRepository, times(0)).findAllWithParticipantsByIdIn(any());
+    }
+
+    @Test
+    public void shouldHandSessionsByChunksAndClearContext_whenForEachChunk() {
+        // ARRANGE
+        List<Session> allSessions = LongStream.rangeClosed(1, SessionService.EXPORT_CHUNK_SIZE + 1)
+                .mapToObj(id -> Session.builder().id(id).build())
+                .collect(Collectors.toList());
+        when(sessionRepository.streamAll()).thenReturn(allSessions.stream());
+        List<Integer> chunkSizes = new ArrayList<>();
+        Consumer<List<Session>> consumer = chunk -> chunkSizes.add(chunk.size());
+
+        // ACT
+        sessionService.forEachChunk(consumer);
+
+        // ASSERT
+        assertThat(chunkSizes).containsExactly(SessionService.EXPORT_CHUNK_SIZE, 1);
+        verify(sessionRepository, times(2)).fetchParticipants(any());
+        verify(sessionRepository).fetchParticipants(List.of((long) SessionService.EXPORT_CHUNK_SIZE + 1));
+        verify(entityManager, times(2)).clear();
+    }
+
+    @Test
+    public void shouldNotFetchParticipants_whenForEachChunkWithoutParticipants() {
+        // ARRANGE
+        List<Session> allSessions = LongStream.rangeClosed(1, SessionService.EXPORT_CHUNK_SIZE + 1)
+                .mapToObj(id -> Session.builder().id(id).build())
+                .collect(Collectors.toList());
+        when(sessionRepository.streamAll()).thenReturn(allSessions.stream());
+        List<Integer> chunkSizes = new ArrayList<>();
+
+        // ACT
+        sessionService.forEachChunkWithoutParticipants(chunk -> chunkSizes.add(chunk.size()));
+
+        // ASSERT
+        assertThat(chunkSizes).containsExactly(SessionService.EXPORT_CHUNK_SIZE, 1);
+        verify(sessionRepository, never()).fetchParticipants(any());
+        verify(entityManager, times(2)).clear();
+    }
+
+    @Test
+    public void shouldReturnFirstPageWithNextCursor_whenMoreSessionsThanPageSize() {
+        // ARRANGE
+        Session first = Session.builder().id(1L).date(new Date(1000L)).build();
+        Session second = Session.builder().id(2L).date(new Date(2000L)).build();
+        when(sessionRepository.findFirstPage(any(Date.class), any(Date.class), eq(PageRequest.of(0, 2)))).thenReturn(List.of(first, second));
+
+        // ACT
+        KeysetPage<Session> page = sessionService.findPage(null, 1, null, null);
+
+        // ASSERT
+        verify(sessionRepository).fetchParticipants(List.of(first.getId()));
+        assertThat(page.getItems()).containsExactly(first);
+        assertThat(KeysetCursor.decode(page.getNextCursor())).isEqualTo(new KeysetCursor(first.getDate(), first.getId()));
+    }
+
+    @Test
+    public void shouldReturnPageAfterCursor_whenCursorGiven() {
+        // ARRANGE
+        KeysetCursor cursor = new KeysetCursor(new Date(1000L), 1L);
+        when(sessionRepository.findPageAfter(any(Date.class), any(Date.class), eq(cursor.getDate()), eq(cursor.getId()), eq(PageRequest.of(0, SessionService.DEFAULT_PAGE_SIZE + 1))))
+                .thenReturn(sessions);
+
+        // ACT
+        KeysetPage<Session> page = sessionService.findPage(cursor.encode(), null, null, null);
+
+        // ASSERT
+        assertThat(page.getItems()).hasSize(sessions.size());
+        assertThat(page.getNextCursor()).isNull();
+    }
+
+    @Test
+    public void shouldCapPageSize_whenRequestedSizeTooLarge() {
+        // ARRANGE
+        when(sessionRepository.findFirstPage(any(Date.class), any(Date.class), eq(PageRequest.of(0, SessionService.MAX_PAGE_SIZE + 1)))).thenReturn(sessions);
+
+        // ACT
+        KeysetPage<Session> page = sessionService.findPage(null, 10_000, null, null);
+
+        // ASSERT
+        verify(sessionRepository).findFirstPage(any(Date.class), any(Date.class), eq(PageRequest.of(0, SessionService.MAX_PAGE_SIZE + 1)));
+        assertThat(page.getItems()).hasSize(sessions.size());
+    }
+
+    @Test
+    public void shouldThrowBadRequest_whenPageSizeNotPositive() {
+        // ACT & ASSERT
+        assertThrows(BadRequestException.class, () -> sessionService.findPage(null, 0, null, null));
+    }
+
+    @Test
+    public void shouldQueryDateRange_whenFromAndToGiven() {
+        // ARRANGE
+        Date from = new Date(1000L);
+        Date to = new Date(5000L);
+        when(sessionRepository.findFirstPage(from, to, PageRequest.of(0, SessionService.DEFAULT_PAGE_SIZE + 1))).thenReturn(sessions);
+
+        // ACT
+        KeysetPage<Session> page = sessionService.findPage(null, null, from, to);
+
+        // ASSERT
+        verify(sessionRepository).findFirstPage(from, to, PageRequest.of(0, SessionService.DEFAULT_PAGE_SIZE + 1));
+        assertThat(page.getItems()).hasSize(sessions.size());
+    }
+
+    @Test
+    public void findBookedPage_shouldReturnUserSessionsWithNextCursor() {
+        // ARRANGE
+        SessionSummaryView first = mock(SessionSummaryView.class);
+        when(first.getId()).thenReturn(1L);
+        when(first.getDate()).thenReturn(new Date(1000L));
+        SessionSummaryView second = mock(SessionSummaryView.class);
+        when(userRepository.existsById(user.getId())).thenReturn(true);
+        when(sessionRepository.findBookedFirstPage(eq(user.getId()), any(Date.class), any(Date.class), eq(PageRequest.of(0, 2))))
+                .thenReturn(List.of(first, second));
+
+        // ACT
+        KeysetPage<SessionSummaryView> page = sessionService.findBookedPage(user.getId(), null, 1, null, null);
+
+        // ASSERT
+        assertThat(page.getItems()).containsExactly(first);
+        assertThat(KeysetCursor.decode(page.getNextCursor())).isEqualTo(new KeysetCursor(new Date(1000L), 1L));
+    }
+
+    @Test
+    public void findBookedPage_shouldReadAfterCursor_whenCursorGiven() {
+        // ARRANGE
+        Date from = new Date(500L);
+        KeysetCursor cursor = new KeysetCursor(new Date(1000L), 1L);
+        when(userRepository.existsById(user.getId())).thenReturn(true);
+
+        // ACT
+        KeysetPage<SessionSummaryView> page = sessionService.findBookedPage(user.getId(), cursor.encode(), null, from, null);
+
+        // ASSERT
+        verify(sessionRepository).findBookedPageAfter(eq(user.getId()), eq(from), any(Date.class), eq(cursor.getDate()), eq(cursor.getId()),
+                eq(PageRequest.of(0, SessionService.DEFAULT_PAGE_SIZE + 1)));
+        assertThat(page.getItems()).isEmpty();
+        assertThat(page.getNextCursor()).isNull();
+    }
+
+    @Test
+    public void findBookedPage_shouldThrowNotFound_whenUserNotExists() {
+        // ARRANGE
+        when(userRepository.existsById(user.getId())).thenReturn(false);
+
+        // ACT & ASSERT
+        assertThrows(NotFoundException.class, () -> sessionService.findBookedPage(user.getId(), null, null, null, null));
+        verify(sessionRepository, times(0)).findBookedFirstPage(any(), any(), any(), any());
+    }
+
+    @Test
+    public void shouldThrowBadRequest_whenFromNotBeforeTo() {
+        // ACT & ASSERT
+        assertThrows(BadRequestException.class, () -> sessionService.findPage(null, null, new Date(5000L), new Date(5000L)));
+        verify(sessionRepository, times(0)).findFirstPage(any(Date.class), any(Date.class), any());
+    }
+
+    @Test
+    public void shouldReturnSummariesOfUser_whenFindAllSummaries() {
+        // ARRANGE
+        when(sessionRepository.findAllSummaries(user.getId())).thenReturn(List.of());
+
+        // ACT
+        sessionService.findAllSummaries(user.getId());
+
+        // ASSERT
+        verify(sessionRepository).findAllSummaries(user.getId());
+    }
+
     @Test
     public void shouldReturnASession_whenSessionExists() {
         // ARRANGE
-        when(sessionRepository.findById(anyLong())).thenReturn(Optional.of(session));
+        when(sessionRepository.findWithParticipantsById(anyLong())).thenReturn(Optional.of(session));
 
         // ACT
         Session sessionFound = sessionService.getById(session.getId());
 
         // ASSERT
-        verify(sessionRepository).findById(session.getId());
+        verify(sessionRepository).findWithParticipantsById(session.getId());
         assertThat(sessionFound.getName()).isEqualTo(session.getName());
     }
 
     @Test
     public void shouldReturnNull_whenSessionNotFound() {
         // ARRANGE
-        when(sessionRepository.findById(anyLong())).thenReturn(Optional.empty());
+        when(sessionRepository.findWithParticipantsById(anyLong())).thenReturn(Optional.empty());
 
         // ACT
         Session sessionFound = sessionService.getById(session.getId());
 
         // ASSERT
-        verify(sessionRepository).findById(session.getId());
+        verify(sessionRepository).findWithParticipantsById(session.getId());
         assertThat(sessionFound).isNull();
     }
 
     @Test
-    public void shouldReturnAnUpdatedSession_whenUpdatedSuccessfull() {
+    public void shouldMergeIntoTheManagedSession_whenUpdatedSuccessfull() {
         // ARRANGE
-        Long sessionId = 2L;
-        when(sessionRepository.save(any(Session.class))).thenReturn(session);
+        User newUser = User.builder()
+                .id(2L)
+                .email("new@email.com")
+                .lastName("lastName")
+                .firstName("firstName")
+                .password("1234")
+                .admin(false)
+                .build();
+        Session changes = Session.builder()
+                .name("a new name")
+                .date(sessionWithUser.getDate())
+                .description("a new description")
+                .users(new HashSet<User>(List.of(newUser)))
+                .build();
+        when(sessionRepository.findWithParticipantsById(sessionWithUser.getId())).thenReturn(Optional.of(sessionWithUser));
 
         // ACT
-        Session sessionUpdated = sessionService.update(sessionId, session);
+        Session sessionUpdated = sessionService.update(sessionWithUser.getId(), changes);
+
+        // ASSERT
+        verify(sessionRepository, times(0)).save(any(Session.class));
+        verify(sessionSearchIndex).index(sessionWithUser);
+        assertThat(sessionUpdated).isSameAs(sessionWithUser);
+        assertThat(sessionUpdated.getName()).isEqualTo("a new name");
+        assertThat(sessionUpdated.getDescription()).isEqualTo("a new description");
+        assertThat(sessionUpdated.getUsers()).containsExactly(newUser);
+        verify(sessionRepository).recountParticipants(sessionWithUser.getId());
+    }
+
+    @Test
+    public void shouldPromoteTheWaitlist_whenUpdateRaisesCapacity() {
+        // ARRANGE
+        sessionWithUser.setCapacity(1);
+        WaitlistEntry first = WaitlistEntry.builder().id(7L).sessionId(sessionWithUser.getId()).userId(2L).build();
+        WaitlistEntry second = WaitlistEntry.builder().id(8L).sessionId(sessionWithUser.getId()).userId(3L).build();
+        Session changes = Session.builder()
+                .name("a session")
+                .date(sessionWithUser.getDate())
+                .description("description")
+                .capacity(2)
+                .users(new HashSet<User>(List.of(user)))
+                .build();
+        when(sessionRepository.findWithParticipantsById(sessionWithUser.getId())).thenReturn(Optional.of(sessionWithUser));
+        when(waitlistRepository.findFirstBySessionIdOrderByIdAsc(sessionWithUser.getId()))
+                .thenReturn(Optional.of(first), Optional.of(first), Optional.of(second));
+        // one seat freed by the new capacity
+        when(sessionRepository.reserveSeat(eq(sessionWithUser.getId()), any(LocalDateTime.class))).thenReturn(1, 0);
+        when(sessionRepository.addParticipant(sessionWithUser.getId(), 2L)).thenReturn(1);
+
+        // ACT
+        sessionService.update(sessionWithUser.getId(), changes);
+
+        // ASSERT: the head gets the seat, the next user keeps waiting
+        verify(waitlistRepository).dequeue(sessionWithUser.getId(), 2L);
+        verify(waitlistRepository, times(0)).dequeue(sessionWithUser.getId(), 3L);
+        verify(outboxWriter).append(OutboxEventType.PARTICIPANT_PROMOTED, sessionWithUser.getId(), 2L);
+        verify(sessionRepository, times(0)).releaseSeat(anyLong(), any(LocalDateTime.class));
+        verify(entityManager).refresh(sessionWithUser);
+    }
+
+    @Test
+    public void shouldNotLookAtTheWaitlist_whenUpdateFreesNoSeat() {
+        // ARRANGE
+        Session changes = Session.builder()
+                .name("a new name")
+                .date(sessionWithUser.getDate())
+                .description("description")
+                .users(new HashSet<User>(List.of(user)))
+                .build();
+        when(sessionRepository.findWithParticipantsById(sessionWithUser.getId())).thenReturn(Optional.of(sessionWithUser));
+
+        // ACT
+        sessionService.update(sessionWithUser.getId(), changes);
+
+        // ASSERT
+        verify(waitlistRepository, times(0)).findFirstBySessionIdOrderByIdAsc(anyLong());
+        verify(sessionRepository, times(0)).reserveSeat(anyLong(), any(LocalDateTime.class));
+    }
+
+    @Test
+    public void shouldReturnAConflict_whenUpdatedParticipantsExceedCapacity() {
+        // ARRANGE
+        Session changes = Session.builder()
+                .name("a session")
+                .date(sessionWithUser.getDate())
+                .description("description")
+                .capacity(1)
+                .users(new HashSet<User>(List.of(user, User.builder().id(2L).email("new@email.com").lastName("lastName")
+                        .firstName("firstName").password("1234").admin(false).build())))
+                .build();
+        when(sessionRepository.findWithParticipantsById(sessionWithUser.getId())).thenReturn(Optional.of(sessionWithUser));
+
+        // ACT & ASSERT
+        assertThrows(ConflictException.class, () -> {
+            sessionService.update(sessionWithUser.getId(), changes);
+        });
 
         // ASSERT
-        verify(sessionRepository).save(session);
-        assertThat(sessionUpdated).isNotNull();
-        assertThat(sessionUpdated.getId()).isEqualTo(sessionId);
+        assertThat(sessionWithUser.getUsers()).containsExactly(user);
+        verify(sessionRepository, times(0)).recountParticipants(anyLong());
+    }
+
+    @Test
+    public void shouldReturnNotFoundException_whenUpdatedSessionDoesntExists() {
+        // ARRANGE
+        when(sessionRepository.findWithParticipantsById(anyLong())).thenReturn(Optional.empty());
+
+        // ACT
+        assertThrows(NotFoundException.class, () -> {
+            sessionService.update(2L, session);
+        });
+
+        // ASSERT
+        verify(sessionRepository, times(0)).save(any(Session.class));
+        verify(sessionSearchIndex, times(0)).index(any(Session.class));
     }
 
     @Test
     public void shouldRegisterAUserToASession_whenUserParticipate() {
         // ARRANGE
-        when(sessionRepository.findById(anyLong())).thenReturn(Optional.of(session));
-        when(userRepository.findById(anyLong())).thenReturn(Optional.of(user));
-        when(sessionRepository.save(any(Session.class))).thenReturn(session);
-        int userListSize = session.getUsers().size();
+        when(sessionRepository.existsById(session.getId())).thenReturn(true);
+        when(userRepository.existsById(user.getId())).thenReturn(true);
+        when(sessionRepository.reserveSeat(eq(session.getId()), any(LocalDateTime.class))).thenReturn(1);
+        when(sessionRepository.addParticipant(session.getId(), user.getId())).thenReturn(1);
 
         // ACT
-        sessionService.participate(session.getId(), user.getId());
+        ParticipationStatus status = sessionService.participate(session.getId(), user.getId());
 
         // ASSERT
-        verify(sessionRepository).findById(session.getId());
-        verify(userRepository).findById(user.getId());
-        verify(sessionRepository).save(session);
-        assertThat(session.getUsers().size()).isGreaterThan(userListSize);
+        assertThat(status).isEqualTo(ParticipationStatus.PARTICIPATING);
+        verify(sessionRepository).reserveSeat(eq(session.getId()), any(LocalDateTime.class));
+        verify(sessionRepository).addParticipant(session.getId(), user.getId());
+        verify(outboxWriter).append(OutboxEventType.PARTICIPANT_JOINED, session.getId(), user.getId());
+        verify(sessionRepository, times(0)).findById(anyLong());
+        verify(sessionRepository, times(0)).save(any(Session.class));
     }
 
     @Test
     public void shouldReturnNotFoundException_whenUserOrSessionDoesntExists() {
-        // ARRANGE : user empty, session empty
-        when(sessionRepository.findById(anyLong())).thenReturn(Optional.empty());
-        when(userRepository.findById(anyLong())).thenReturn(Optional.empty());
+        // ARRANGE : session does not exist
+        when(sessionRepository.existsById(anyLong())).thenReturn(false);
+
+        // ACT & ASSERT
+        assertThrows(NotFoundException.class, () -> {
+            sessionService.participate(session.getId(), user.getId());
+        });
+
+        // ASSERT
+        verify(sessionRepository).existsById(session.getId());
+        verify(sessionRepository, times(0)).addParticipant(anyLong(), anyLong());
+    }
+
+    @Test
+    public void shouldReturnNotFoundException_whenUserDoesntExists() {
+        // ARRANGE
+        when(sessionRepository.existsById(session.getId())).thenReturn(true);
+        when(userRepository.existsById(user.getId())).thenReturn(false);
 
         // ACT & ASSERT
         assertThrows(NotFoundException.class, () -> {
@@ -206,16 +603,16 @@ public class SessionServiceTests {
         });
 
         // ASSERT
-        verify(sessionRepository).findById(session.getId());
-        verify(userRepository).findById(user.getId());
-        verify(sessionRepository, times(0)).save(session);
+        verify(sessionRepository, times(0)).addParticipant(anyLong(), anyLong());
     }
 
     @Test
     public void shouldReturnABadRequest_whenUserAlreadyParticipate() {
         // ARRANGE
-        when(sessionRepository.findById(anyLong())).thenReturn(Optional.of(sessionWithUser));
-        when(userRepository.findById(anyLong())).thenReturn(Optional.of(user));
+        when(sessionRepository.existsById(sessionWithUser.getId())).thenReturn(true);
+        when(userRepository.existsById(user.getId())).thenReturn(true);
+        when(sessionRepository.reserveSeat(eq(sessionWithUser.getId()), any(LocalDateTime.class))).thenReturn(1);
+        when(sessionRepository.addParticipant(sessionWithUser.getId(), user.getId())).thenReturn(0);
 
         // ACT & ASSERT
         assertThrows(BadRequestException.class, () -> {
@@ -223,31 +620,151 @@ public class SessionServiceTests {
         });
 
         // ASSERT
-        verify(sessionRepository).findById(sessionWithUser.getId());
-        verify(userRepository).findById(user.getId());
-        verify(sessionRepository, times(0)).save(sessionWithUser);
+        verify(sessionRepository).addParticipant(sessionWithUser.getId(), user.getId());
+    }
+
+    @Test
+    public void shouldReturnABadRequest_whenSameParticipationInsertedConcurrently() {
+        // ARRANGE
+        when(sessionRepository.existsById(sessionWithUser.getId())).thenReturn(true);
+        when(userRepository.existsById(user.getId())).thenReturn(true);
+        when(sessionRepository.reserveSeat(eq(sessionWithUser.getId()), any(LocalDateTime.class))).thenReturn(1);
+        when(sessionRepository.addParticipant(sessionWithUser.getId(), user.getId()))
+                .thenThrow(new DuplicateKeyException("Duplicate entry '1-1' for key 'PRIMARY'"));
+
+        // ACT & ASSERT
+        assertThrows(BadRequestException.class, () -> {
+            sessionService.participate(sessionWithUser.getId(), user.getId());
+        });
     }
 
     @Test
-    public void shouldUnsubscribeUserOfSession_whenUserNoLongerParticipate() {
+    public void shouldWaitlistTheUser_whenSessionIsFull() {
         // ARRANGE
-        when(sessionRepository.findById(anyLong())).thenReturn(Optional.of(sessionWithUser));
-        when(sessionRepository.save(any(Session.class))).thenReturn(sessionWithUser);
-        int userListSize = sessionWithUser.getUsers().size();
+        when(sessionRepository.existsById(session.getId())).thenReturn(true);
+        when(userRepository.existsById(user.getId())).thenReturn(true);
+        when(sessionRepository.reserveSeat(eq(session.getId()), any(LocalDateTime.class))).thenReturn(0);
+        when(waitlistRepository.enqueue(session.getId(), user.getId())).thenReturn(1);
+
+        // ACT
+        ParticipationStatus status = sessionService.participate(session.getId(), user.getId());
+
+        // ASSERT
+        assertThat(status).isEqualTo(ParticipationStatus.WAITLISTED);
+        // second attempt once the session row is held
+        verify(sessionRepository).touch(eq(session.getId()), any(LocalDateTime.class));
+        verify(sessionRepository, times(2)).reserveSeat(eq(session.getId()), any(LocalDateTime.class));
+        verify(sessionRepository, times(0)).addParticipant(anyLong(), anyLong());
+    }
+
+    @Test
+    public void shouldTakeTheSeat_whenFreedBeforeTheSessionRowIsHeld() {
+        // ARRANGE
+        when(sessionRepository.existsById(session.getId())).thenReturn(true);
+        when(userRepository.existsById(user.getId())).thenReturn(true);
+        when(sessionRepository.reserveSeat(eq(session.getId()), any(LocalDateTime.class))).thenReturn(0, 1);
+        when(sessionRepository.addParticipant(session.getId(), user.getId())).thenReturn(1);
+
+        // ACT
+        ParticipationStatus status = sessionService.participate(session.getId(), user.getId());
+
+        // ASSERT
+        assertThat(status).isEqualTo(ParticipationStatus.PARTICIPATING);
+        verify(waitlistRepository, times(0)).enqueue(anyLong(), anyLong());
+    }
+
+    @Test
+    public void shouldReturnABadRequest_whenUserAlreadyWaitlisted() {
+        // ARRANGE
+        when(sessionRepository.existsById(session.getId())).thenReturn(true);
+        when(userRepository.existsById(user.getId())).thenReturn(true);
+        when(sessionRepository.reserveSeat(eq(session.getId()), any(LocalDateTime.class))).thenReturn(0);
+        when(waitlistRepository.enqueue(session.getId(), user.getId())).thenReturn(0);
+
+        // ACT & ASSERT
+        assertThrows(BadRequestException.class, () -> {
+            sessionService.participate(session.getId(), user.getId());
+        });
+    }
+
+    @Test
+    public void shouldReleaseTheSeat_whenUserNoLongerParticipateAndNobodyWaits() {
+        // ARRANGE
+        when(sessionRepository.touch(eq(sessionWithUser.getId()), any(LocalDateTime.class))).thenReturn(1);
+        when(sessionRepository.removeParticipant(sessionWithUser.getId(), user.getId())).thenReturn(1);
+        when(waitlistRepository.findFirstBySessionIdOrderByIdAsc(sessionWithUser.getId())).thenReturn(Optional.empty());
+
+        // ACT
+        sessionService.noLongerParticipate(sessionWithUser.getId(), user.getId());
+
+        // ASSERT
+        verify(sessionRepository).removeParticipant(sessionWithUser.getId(), user.getId());
+        verify(sessionRepository).releaseSeat(eq(sessionWithUser.getId()), any(LocalDateTime.class));
+        verify(sessionRepository, times(0)).save(any(Session.class));
+    }
+
+    @Test
+    public void shouldPromoteTheHeadOfTheWaitlist_whenUserNoLongerParticipate() {
+        // ARRANGE
+        WaitlistEntry head = WaitlistEntry.builder().id(7L).sessionId(sessionWithUser.getId()).userId(2L).build();
+        when(sessionRepository.touch(eq(sessionWithUser.getId()), any(LocalDateTime.class))).thenReturn(1);
+        when(sessionRepository.removeParticipant(sessionWithUser.getId(), user.getId())).thenReturn(1);
+        when(waitlistRepository.findFirstBySessionIdOrderByIdAsc(sessionWithUser.getId())).thenReturn(Optional.of(head));
+        when(sessionRepository.addParticipant(sessionWithUser.getId(), 2L)).thenReturn(1);
+
+        // ACT
+        sessionService.noLongerParticipate(sessionWithUser.getId(), user.getId());
+
+        // ASSERT
+        verify(waitlistRepository).dequeue(sessionWithUser.getId(), 2L);
+        verify(sessionRepository).addParticipant(sessionWithUser.getId(), 2L);
+        verify(outboxWriter).append(OutboxEventType.PARTICIPANT_LEFT, sessionWithUser.getId(), user.getId());
+        verify(outboxWriter).append(OutboxEventType.PARTICIPANT_PROMOTED, sessionWithUser.getId(), 2L);
+        // the seat changed hands
+        verify(sessionRepository, times(0)).releaseSeat(anyLong(), any(LocalDateTime.class));
+    }
+
+    @Test
+    public void shouldSkipHeadsAlreadyParticipating_whenPromoting() {
+        // ARRANGE
+        WaitlistEntry alreadyIn = WaitlistEntry.builder().id(7L).sessionId(sessionWithUser.getId()).userId(2L).build();
+        WaitlistEntry next = WaitlistEntry.builder().id(8L).sessionId(sessionWithUser.getId()).userId(3L).build();
+        when(sessionRepository.touch(eq(sessionWithUser.getId()), any(LocalDateTime.class))).thenReturn(1);
+        when(sessionRepository.removeParticipant(sessionWithUser.getId(), user.getId())).thenReturn(1);
+        when(waitlistRepository.findFirstBySessionIdOrderByIdAsc(sessionWithUser.getId()))
+                .thenReturn(Optional.of(alreadyIn), Optional.of(next));
+        when(sessionRepository.addParticipant(sessionWithUser.getId(), 2L)).thenReturn(0);
+        when(sessionRepository.addParticipant(sessionWithUser.getId(), 3L)).thenReturn(1);
 
         // ACT
         sessionService.noLongerParticipate(sessionWithUser.getId(), user.getId());
 
         // ASSERT
-        verify(sessionRepository).findById(sessionWithUser.getId());
-        verify(sessionRepository).save(sessionWithUser);
-        assertThat(sessionWithUser.getUsers().size()).isLessThan(userListSize);
+        verify(waitlistRepository).dequeue(sessionWithUser.getId(), 2L);
+        verify(waitlistRepository).dequeue(sessionWithUser.getId(), 3L);
+        verify(sessionRepository, times(0)).releaseSeat(anyLong(), any(LocalDateTime.class));
+    }
+
+    @Test
+    public void shouldLeaveTheWaitlist_whenWaitlistedUserNoLongerParticipate() {
+        // ARRANGE
+        when(sessionRepository.touch(eq(session.getId()), any(LocalDateTime.class))).thenReturn(1);
+        when(sessionRepository.removeParticipant(session.getId(), user.getId())).thenReturn(0);
+        when(waitlistRepository.dequeue(session.getId(), user.getId())).thenReturn(1);
+
+        // ACT
+        sessionService.noLongerParticipate(session.getId(), user.getId());
+
+        // ASSERT
+        verify(sessionRepository, times(0)).releaseSeat(anyLong(), any(LocalDateTime.class));
+        verify(waitlistRepository, times(0)).findFirstBySessionIdOrderByIdAsc(anyLong());
+        verify(outboxWriter).append(OutboxEventType.WAITLIST_LEFT, session.getId(), user.getId());
     }
 
     @Test
     public void shouldReturnNotFoundException_whenSessionNotExits() {
-        // ARRANGE : session empty
-        when(sessionRepository.findById(anyLong())).thenReturn(Optional.empty());
+        // ARRANGE : session does not exist
+        when(sessionRepository.touch(anyLong(), any(LocalDateTime.class))).thenReturn(0);
 
         // ACT & ASSERT
         assertThrows(NotFoundException.class, () -> {
@@ -255,20 +772,42 @@ public class SessionServiceTests {
         });
 
         // ASSERT
-        verify(sessionRepository, times(0)).save(session);
+        verify(sessionRepository, times(0)).removeParticipant(anyLong(), anyLong());
     }
 
     @Test
     public void shouldReturnBadRequestException_whenUserAlreadyNotParticipate() {
         // ARRANGE
-        when(sessionRepository.findById(anyLong())).thenReturn(Optional.of(session));
+        when(sessionRepository.touch(eq(session.getId()), any(LocalDateTime.class))).thenReturn(1);
+        when(sessionRepository.removeParticipant(session.getId(), user.getId())).thenReturn(0);
+        when(waitlistRepository.dequeue(session.getId(), user.getId())).thenReturn(0);
 
         // ACT & ASSERT
         assertThrows(BadRequestException.class, () -> {
             sessionService.noLongerParticipate(session.getId(), user.getId());
         });
+    }
+
+    @Test
+    public void shouldReturnWaitlistPosition_whenUserIsWaiting() {
+        // ARRANGE
+        when(waitlistRepository.findPosition(session.getId(), user.getId())).thenReturn(4L);
+
+        // ACT
+        long position = sessionService.getWaitlistPosition(session.getId(), user.getId());
 
         // ASSERT
-        verify(sessionRepository, times(0)).save(session);
+        assertThat(position).isEqualTo(4L);
+    }
+
+    @Test
+    public void shouldReturnNotFoundException_whenUserIsNotWaiting() {
+        // ARRANGE
+        when(waitlistRepository.findPosition(session.getId(), user.getId())).thenReturn(0L);
+
+        // ACT & ASSERT
+        assertThrows(NotFoundException.class, () -> {
+            sessionService.getWaitlistPosition(session.getId(), user.getId());
+        });
     }
 }
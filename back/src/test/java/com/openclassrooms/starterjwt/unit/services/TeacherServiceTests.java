@@ -95,4 +95,17 @@ public class TeacherServiceTests {
         assertThat(teacherFound).isNull();
     }
 
+    @Test
+    public void shouldReturnTeachers_whenFindAllById() {
+        // ARRANGE
+        when(teacherRepository.findAllById(List.of(teacher.getId()))).thenReturn(teachers);
+
+        // ACT
+        List<Teacher> teachersFound = teacherService.findAllById(List.of(teacher.getId()));
+
+        // ASSERT
+        verify(teacherRepository).findAllById(List.of(teacher.getId()));
+        assertThat(teachersFound).isEqualTo(teachers);
+    }
+
 }
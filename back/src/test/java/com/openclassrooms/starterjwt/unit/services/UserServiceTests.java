@@ -1,12 +1,17 @@
 package com.openclassrooms.starterjwt.unit.services;
 
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.anyList;
 import static org.mockito.Mockito.doNothing;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
+import java.util.List;
 import java.util.Optional;
+import java.util.stream.Collectors;
+import java.util.stream.LongStream;
 
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Tag;
@@ -16,8 +21,12 @@ import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
 
+import com.openclassrooms.starterjwt.exception.BadRequestException;
+import com.openclassrooms.starterjwt.exception.NotFoundException;
 import com.openclassrooms.starterjwt.models.User;
 import com.openclassrooms.starterjwt.repository.UserRepository;
+import com.openclassrooms.starterjwt.security.services.TokenVersionService;
+import com.openclassrooms.starterjwt.security.services.UserDetailsServiceImpl;
 import com.openclassrooms.starterjwt.services.UserService;
 
 @Tag("unit")
@@ -27,6 +36,12 @@ public class UserServiceTests {
     @Mock
     private UserRepository userRepository;
 
+    @Mock
+    private UserDetailsServiceImpl userDetailsService;
+
+    @Mock
+    private TokenVersionService tokenVersionService;
+
     @InjectMocks
     private UserService userService;
 
@@ -48,6 +63,7 @@ public class UserServiceTests {
     @Test
     public void shouldDeleteUser_whenUserExists() {
         // ARANGE
+        when(userRepository.findEmailById(user.getId())).thenReturn(Optional.of(user.getEmail()));
         doNothing().when(userRepository).deleteById(user.getId());
 
         // ACT
@@ -55,6 +71,30 @@ public class UserServiceTests {
 
         // ASSERT
         verify(userRepository, times(1)).deleteById(user.getId());
+        verify(userDetailsService).evict(user.getEmail());
+        verify(tokenVersionService).evict(user.getId());
+    }
+
+    @Test
+    public void revokeTokens_shouldRaiseVersionAndForgetCachedPrincipal() {
+        // ARRANGE
+        when(tokenVersionService.revoke(user.getId())).thenReturn(true);
+        when(userRepository.findEmailById(user.getId())).thenReturn(Optional.of(user.getEmail()));
+
+        // ACT
+        userService.revokeTokens(user.getId());
+
+        // ASSERT: the next login must not stamp the former version from the users cache
+        verify(userDetailsService).evict(user.getEmail());
+    }
+
+    @Test
+    public void revokeTokens_shouldThrowNotFound_whenUserNotExists() {
+        // ARRANGE
+        when(tokenVersionService.revoke(user.getId())).thenReturn(false);
+
+        // ACT & ASSERT
+        assertThrows(NotFoundException.class, () -> userService.revokeTokens(user.getId()));
     }
 
     @Test
@@ -83,4 +123,59 @@ public class UserServiceTests {
         assertThat(userFound).isNull();
     }
 
+    @Test
+    public void shouldReturnUsersInRequestedOrder_whenFindAllById() {
+        // ARRANGE
+        User otherUser = createUser(2L);
+        when(userRepository.findAllById(List.of(2L, 1L))).thenReturn(List.of(user, otherUser));
+
+        // ACT
+        List<User> usersFound = userService.findAllById(List.of(2L, 1L));
+
+        // ASSERT
+        verify(userRepository, times(1)).findAllById(anyList());
+        assertThat(usersFound).containsExactly(otherUser, user);
+    }
+
+    @Test
+    public void shouldQueryByBatches_whenFindAllByIdWithManyIds() {
+        // ARRANGE
+        List<Long> ids = LongStream.rangeClosed(1, UserService.ID_BATCH_SIZE + 1).boxed().collect(Collectors.toList());
+        when(userRepository.findAllById(anyList())).thenAnswer(invocation -> {
+            List<Long> batch = invocation.getArgument(0);
+            return batch.stream().map(UserServiceTests::createUser).collect(Collectors.toList());
+        });
+
+        // ACT
+        List<User> usersFound = userService.findAllById(ids);
+
+        // ASSERT
+        verify(userRepository, times(2)).findAllById(anyList());
+        assertThat(usersFound).extracting(User::getId).isEqualTo(ids);
+    }
+
+    @Test
+    public void shouldThrowBadRequestListingMissingIds_whenFindAllByIdWithUnknownIds() {
+        // ARRANGE
+        when(userRepository.findAllById(List.of(1L, 2L, 3L))).thenReturn(List.of(user));
+
+        // ACT
+        BadRequestException exception = assertThrows(BadRequestException.class,
+                () -> userService.findAllById(List.of(1L, 2L, 3L)));
+
+        // ASSERT
+        assertThat(exception.getMessage()).contains("[2, 3]");
+    }
+
+    private static User createUser(Long id) {
+        return User.builder()
+                .id(id)
+                .email("user" + id + "@email.com")
+                .lastName("lastName")
+                .firstName("firstName")
+                .password("1234")
+                .admin(false)
+                .build();
+    }
+
 }
@@ -3,7 +3,7 @@ CREATE TABLE IF NOT EXISTS `TEACHERS` (
   `last_name` VARCHAR(40),
   `first_name` VARCHAR(40),
   `created_at` TIMESTAMP DEFAULT CURRENT_TIMESTAMP,
-  `updated_at` DATETIME DEFAULT CURRENT_TIMESTAMP ON UPDATE CURRENT_TIMESTAMP
+  `updated_at` DATETIME(3) DEFAULT CURRENT_TIMESTAMP(3) ON UPDATE CURRENT_TIMESTAMP(3)
 );
 
 CREATE TABLE IF NOT EXISTS `SESSIONS` (
@@ -12,8 +12,11 @@ CREATE TABLE IF NOT EXISTS `SESSIONS` (
   `description` VARCHAR(2000),
   `date` TIMESTAMP,
   `teacher_id` int,
+  `capacity` INT,
+  `participant_count` INT NOT NULL DEFAULT 0,
   `created_at` TIMESTAMP DEFAULT CURRENT_TIMESTAMP,
-  `updated_at` DATETIME DEFAULT CURRENT_TIMESTAMP ON UPDATE CURRENT_TIMESTAMP
+  `updated_at` DATETIME(3) DEFAULT CURRENT_TIMESTAMP(3) ON UPDATE CURRENT_TIMESTAMP(3),
+  INDEX `idx_sessions_date_id` (`date`, `id`)
 );
 
 CREATE TABLE IF NOT EXISTS `USERS` (
@@ -23,15 +26,43 @@ CREATE TABLE IF NOT EXISTS `USERS` (
   `admin` BOOLEAN NOT NULL DEFAULT false,
   `email` VARCHAR(255),
   `password` VARCHAR(255),
+  `token_version` INT NOT NULL DEFAULT 0,
   `created_at` TIMESTAMP DEFAULT CURRENT_TIMESTAMP,
-  `updated_at` DATETIME DEFAULT CURRENT_TIMESTAMP ON UPDATE CURRENT_TIMESTAMP
+  `updated_at` DATETIME(3) DEFAULT CURRENT_TIMESTAMP(3) ON UPDATE CURRENT_TIMESTAMP(3)
 );
 
 CREATE TABLE IF NOT EXISTS `PARTICIPATE` (
-  `user_id` INT, 
-  `session_id` INT
+  `user_id` INT NOT NULL,
+  `session_id` INT NOT NULL,
+  PRIMARY KEY (`session_id`, `user_id`),
+  INDEX `idx_participate_user_session` (`user_id`, `session_id`)
+);
+
+CREATE TABLE IF NOT EXISTS `WAITLIST` (
+  `id` INT PRIMARY KEY AUTO_INCREMENT,
+  `session_id` INT NOT NULL,
+  `user_id` INT NOT NULL,
+  `created_at` TIMESTAMP DEFAULT CURRENT_TIMESTAMP,
+  UNIQUE INDEX `uk_waitlist_session_user` (`session_id`, `user_id`),
+  INDEX `idx_waitlist_session_id` (`session_id`, `id`)
+);
+
+CREATE TABLE IF NOT EXISTS `OUTBOX` (
+  `id` BIGINT PRIMARY KEY AUTO_INCREMENT,
+  `type` VARCHAR(40) NOT NULL,
+  `session_id` INT NOT NULL,
+  `user_id` INT,
+  `payload` TEXT,
+  `created_at` TIMESTAMP DEFAULT CURRENT_TIMESTAMP
+);
+
+CREATE TABLE IF NOT EXISTS `OUTBOX_OFFSETS` (
+  `sink` VARCHAR(50) PRIMARY KEY,
+  `last_id` BIGINT NOT NULL
 );
 
 ALTER TABLE `SESSIONS` ADD FOREIGN KEY (`teacher_id`) REFERENCES `TEACHERS` (`id`);
 ALTER TABLE `PARTICIPATE` ADD FOREIGN KEY (`user_id`) REFERENCES `USERS` (`id`);
-ALTER TABLE `PARTICIPATE` ADD FOREIGN KEY (`session_id`) REFERENCES `SESSIONS` (`id`);
\ No newline at end of file
+ALTER TABLE `PARTICIPATE` ADD FOREIGN KEY (`session_id`) REFERENCES `SESSIONS` (`id`);
+ALTER TABLE `WAITLIST` ADD FOREIGN KEY (`session_id`) REFERENCES `SESSIONS` (`id`) ON DELETE CASCADE;
+ALTER TABLE `WAITLIST` ADD FOREIGN KEY (`user_id`) REFERENCES `USERS` (`id`) ON DELETE CASCADE;
\ No newline at end of file
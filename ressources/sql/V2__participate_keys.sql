@@ -0,0 +1,20 @@
+-- Keys PARTICIPATE on (session_id, user_id) and adds the reverse (user_id, session_id) index.
+-- For databases created from script.sql before this change; new databases already have both.
+
+-- keep one row per participation, and drop rows that reference nothing
+CREATE TABLE `PARTICIPATE_DEDUP` AS
+  SELECT DISTINCT `session_id`, `user_id` FROM `PARTICIPATE`
+  WHERE `session_id` IS NOT NULL AND `user_id` IS NOT NULL;
+
+DELETE FROM `PARTICIPATE`;
+
+INSERT INTO `PARTICIPATE` (`session_id`, `user_id`)
+  SELECT `session_id`, `user_id` FROM `PARTICIPATE_DEDUP`;
+
+DROP TABLE `PARTICIPATE_DEDUP`;
+
+ALTER TABLE `PARTICIPATE`
+  MODIFY `user_id` INT NOT NULL,
+  MODIFY `session_id` INT NOT NULL,
+  ADD PRIMARY KEY (`session_id`, `user_id`),
+  ADD INDEX `idx_participate_user_session` (`user_id`, `session_id`);
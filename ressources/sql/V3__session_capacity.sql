@@ -0,0 +1,8 @@
+-- Adds the optional capacity of a session and the participant counter that enforces it.
+
+ALTER TABLE `SESSIONS`
+  ADD COLUMN `capacity` INT AFTER `teacher_id`,
+  ADD COLUMN `participant_count` INT NOT NULL DEFAULT 0 AFTER `capacity`;
+
+UPDATE `SESSIONS` s
+  SET s.`participant_count` = (SELECT COUNT(*) FROM `PARTICIPATE` p WHERE p.`session_id` = s.`id`);
@@ -0,0 +1,13 @@
+-- Adds the FIFO waitlist of full sessions. Entries are served in id order.
+
+CREATE TABLE `WAITLIST` (
+  `id` INT PRIMARY KEY AUTO_INCREMENT,
+  `session_id` INT NOT NULL,
+  `user_id` INT NOT NULL,
+  `created_at` TIMESTAMP DEFAULT CURRENT_TIMESTAMP,
+  UNIQUE INDEX `uk_waitlist_session_user` (`session_id`, `user_id`),
+  INDEX `idx_waitlist_session_id` (`session_id`, `id`)
+);
+
+ALTER TABLE `WAITLIST` ADD FOREIGN KEY (`session_id`) REFERENCES `SESSIONS` (`id`) ON DELETE CASCADE;
+ALTER TABLE `WAITLIST` ADD FOREIGN KEY (`user_id`) REFERENCES `USERS` (`id`) ON DELETE CASCADE;
@@ -0,0 +1,16 @@
+-- Adds the transactional outbox of session and participation events, and the offset of each relay sink.
+-- Events are relayed in id order. They keep no foreign key: a deleted session still has its events.
+
+CREATE TABLE `OUTBOX` (
+  `id` BIGINT PRIMARY KEY AUTO_INCREMENT,
+  `type` VARCHAR(40) NOT NULL,
+  `session_id` INT NOT NULL,
+  `user_id` INT,
+  `payload` TEXT,
+  `created_at` TIMESTAMP DEFAULT CURRENT_TIMESTAMP
+);
+
+CREATE TABLE `OUTBOX_OFFSETS` (
+  `sink` VARCHAR(50) PRIMARY KEY,
+  `last_id` BIGINT NOT NULL
+);
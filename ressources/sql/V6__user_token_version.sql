@@ -0,0 +1,4 @@
+-- Adds the version stamped in the user's tokens: raising it revokes every token issued before.
+
+ALTER TABLE `USERS`
+  ADD COLUMN `token_version` INT NOT NULL DEFAULT 0 AFTER `password`;
@@ -0,0 +1,5 @@
+-- Adds the (date, id) index read by the keyset pagination and the date-range filters of the session listing.
+-- For databases created from script.sql before this change; new databases already have it.
+
+ALTER TABLE `SESSIONS`
+  ADD INDEX `idx_sessions_date_id` (`date`, `id`);
@@ -0,0 +1,11 @@
+-- Stores updated_at with milliseconds: ETags are derived from it, and two edits within the same second
+-- must not share a tag. For databases created from script.sql before this change.
+
+ALTER TABLE `TEACHERS`
+  MODIFY `updated_at` DATETIME(3) DEFAULT CURRENT_TIMESTAMP(3) ON UPDATE CURRENT_TIMESTAMP(3);
+
+ALTER TABLE `SESSIONS`
+  MODIFY `updated_at` DATETIME(3) DEFAULT CURRENT_TIMESTAMP(3) ON UPDATE CURRENT_TIMESTAMP(3);
+
+ALTER TABLE `USERS`
+  MODIFY `updated_at` DATETIME(3) DEFAULT CURRENT_TIMESTAMP(3) ON UPDATE CURRENT_TIMESTAMP(3);